@@ -0,0 +1,448 @@
+import status.TransactionStatus;
+
+import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static status.TransactionStatus.*;
+
+/**
+ * A seeded ledger and the operations that are benchmarked against it. Every
+ * {@link Chainblock} method has an operation of the same name, which maps to
+ * a {@link LongSupplier} that calls the method once and folds the result
+ * into a long, so that lazy results are consumed as well.
+ *
+ * <p>The ledger is meant to look like real traffic rather than uniform noise:
+ * senders and receivers are drawn from a Zipf distribution over one party
+ * per {@value #TRANSACTIONS_PER_PARTY} transactions, {@link TransactionStatus#SUCCESSFUL}
+ * dominates the statuses, and amounts are log-normal and rounded to cents.
+ * The arguments of the operations are drawn from the same distributions,
+ * so a popular sender is queried as often as it sends.
+ *
+ * <p>Operations keep the ledger at its size: {@code addThenRemove} and
+ * {@code addAllThenRemove} remove what they added, which also covers
+ * {@link Chainblock#removeTransactionById}, and status changes draw the new
+ * status from the initial skew.
+ *
+ * <p>Every {@code stream*} query has an operation of the same name that
+ * consumes the first {@value #PAGE} elements, the case the lazy streams are
+ * for. {@code changes} and {@code changesAddThenRemove} repeat
+ * {@code changeTransactionStatus} and {@code addThenRemove} while a
+ * subscriber drains {@link Chainblock#changes()}, so comparing them shows
+ * the cost of publishing. The subscriber is attached only when one of them
+ * is requested, so the other operations run on a ledger nobody listens to.
+ *
+ * <p>This class lives in the default package next to the ledgers, which the
+ * benchmarks cannot import. They create it by name and only see it as a
+ * {@link Function} from operation names to operations.
+ */
+public class LedgerWorkload implements Function<String, LongSupplier> {
+
+    private static final TransactionStatus[] STATUSES = {SUCCESSFUL, FAILED, ABORTED, UNAUTHORIZED};
+    private static final double[] STATUS_WEIGHTS = {0.90, 0.06, 0.03, 0.01};
+    private static final double ZIPF_EXPONENT = 1.1;
+    private static final int TRANSACTIONS_PER_PARTY = 20;
+    private static final double MEDIAN_AMOUNT = 50.00;
+    private static final double AMOUNT_SPREAD = 1.2;
+    private static final int LOAD_BATCH = 1 << 16;
+    private static final int PICKS = 1 << 12;
+    private static final int BATCH = 64;
+    private static final int PAGE = 50;
+    private static final int MAX_OFFSET = 1000;
+    private static final Set<String> SUBSCRIBED = Set.of("changes", "changesAddThenRemove");
+
+    private static final Map<String, Supplier<Chainblock>> LEDGERS = new LinkedHashMap<>();
+
+    static {
+        LEDGERS.put("ChainblockImpl", ChainblockImpl::new);
+        LEDGERS.put("ConcurrentChainblock", ConcurrentChainblock::new);
+        LEDGERS.put("ColumnarChainblock", ColumnarChainblock::new);
+        LEDGERS.put("OffHeapChainblock", OffHeapChainblock::new);
+        LEDGERS.put("ParallelColumnarChainblock", () -> new ColumnarChainblock(ForkJoinPool.commonPool()));
+        LEDGERS.put("ParallelOffHeapChainblock", () -> new OffHeapChainblock(ForkJoinPool.commonPool()));
+        LEDGERS.put("ShardedChainblock", ShardedChainblock::new);
+        LEDGERS.put("FixedPointChainblockImpl", () -> new ChainblockImpl(2));
+    }
+
+    private final Chainblock ledger;
+    private final Map<String, LongSupplier> operations;
+    private final Random random;
+    private final String[] parties;
+    private final double[] partyDistribution;
+    private final Transaction[] picks;
+    private final Transaction[] changeable;
+    private final TransactionStatus[] statuses;
+    private final List<Transaction> fresh;
+    private final Map<Integer, TransactionStatus> newStatuses;
+    private final int[] ids;
+    private long nextFresh;
+    private int cursor;
+    private Draining subscriber;
+
+    /**
+     * @param implementation the simple name of the {@link Chainblock} to benchmark
+     * @param size           the number of transactions in the ledger
+     * @param seed           the seed of everything random, so equal arguments build equal ledgers
+     */
+    public LedgerWorkload(String implementation, int size, long seed) {
+        Supplier<Chainblock> factory = LEDGERS.get(implementation);
+
+        if(factory == null) {
+            throw new IllegalArgumentException("Unknown ledger " + implementation + ", expected one of " + LEDGERS.keySet());
+        }
+
+        this.ledger = factory.get();
+        this.random = new Random(seed);
+        this.parties = new String[Math.max(2, size / TRANSACTIONS_PER_PARTY)];
+        this.partyDistribution = zipf(parties.length);
+
+        for (int i = 0; i < parties.length; i++) {
+            parties[i] = "party-" + i;
+        }
+
+        this.picks = new Transaction[PICKS];
+        this.changeable = new Transaction[PICKS];
+        this.statuses = new TransactionStatus[PICKS];
+        load(size);
+
+        this.fresh = new ArrayList<>(BATCH);
+
+        for (int i = 0; i < BATCH; i++) {
+            fresh.add(transaction(0));
+        }
+
+        this.newStatuses = new LinkedHashMap<>();
+        this.ids = new int[BATCH];
+        this.nextFresh = size;
+        this.operations = operations();
+    }
+
+    public static Set<String> implementations() {
+        return Collections.unmodifiableSet(LEDGERS.keySet());
+    }
+
+    @Override
+    public LongSupplier apply(String operation) {
+        LongSupplier supplier = operations.get(operation);
+
+        if(supplier == null) {
+            throw new IllegalArgumentException("Unknown operation " + operation + ", expected one of " + operations.keySet());
+        }
+
+        if(SUBSCRIBED.contains(operation) && subscriber == null) {
+            subscriber = new Draining();
+            ledger.changes().subscribe(subscriber);
+        }
+
+        return supplier;
+    }
+
+    public Set<String> operationNames() {
+        return Collections.unmodifiableSet(operations.keySet());
+    }
+
+    /**
+     * Adds the ledger in batches and samples the transactions that the
+     * operations draw their arguments from. The first transaction of every
+     * status is never changed, so no status runs out and the queries by
+     * status keep returning results instead of throwing.
+     */
+    private void load(int size) {
+        List<Transaction> batch = new ArrayList<>(Math.min(size, LOAD_BATCH));
+        Map<TransactionStatus, Transaction> anchors = new EnumMap<>(TransactionStatus.class);
+
+        for (int i = 0; i < size; i++) {
+            Transaction transaction = transaction(id(i));
+            batch.add(transaction);
+            anchors.putIfAbsent(transaction.getStatus(), transaction);
+
+            int slot = i < PICKS ? i : random.nextInt(i + 1);
+
+            if(slot < PICKS) {
+                picks[slot] = transaction;
+            }
+
+            if(batch.size() == LOAD_BATCH) {
+                ledger.addAll(batch);
+                batch.clear();
+            }
+        }
+
+        ledger.addAll(batch);
+
+        for (int i = 0; i < PICKS; i++) {
+            if(picks[i] == null) {
+                picks[i] = picks[random.nextInt(size)];
+            }
+
+            statuses[i] = status();
+        }
+
+        Set<Transaction> anchored = Collections.newSetFromMap(new IdentityHashMap<>());
+        anchored.addAll(anchors.values());
+
+        for (int i = 0, next = 0; i < PICKS; i++) {
+            while (anchored.contains(picks[next % PICKS])) {
+                next++;
+            }
+
+            changeable[i] = picks[next++ % PICKS];
+        }
+    }
+
+    /**
+     * Spreads consecutive indexes over the positive ints. Multiplying by an
+     * odd constant is a bijection modulo 2^31, so no two indexes collide.
+     */
+    private static int id(long index) {
+        return (int) ((index * 0x9E3779B1L) & Integer.MAX_VALUE);
+    }
+
+    private Transaction transaction(int id) {
+        double amount = Math.round(MEDIAN_AMOUNT * Math.exp(AMOUNT_SPREAD * random.nextGaussian()) * 100) / 100.0;
+
+        return new TransactionImpl(id, status(), party(), party(), Math.max(0.01, amount));
+    }
+
+    private TransactionStatus status() {
+        double draw = random.nextDouble();
+        int i = 0;
+
+        while (i < STATUSES.length - 1 && draw >= STATUS_WEIGHTS[i]) {
+            draw -= STATUS_WEIGHTS[i++];
+        }
+
+        return STATUSES[i];
+    }
+
+    private String party() {
+        int index = Arrays.binarySearch(partyDistribution, random.nextDouble());
+
+        return parties[Math.min(parties.length - 1, index < 0 ? -index - 1 : index)];
+    }
+
+    private static double[] zipf(int parties) {
+        double[] cumulative = new double[parties];
+        double total = 0;
+
+        for (int rank = 0; rank < parties; rank++) {
+            total += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = total;
+        }
+
+        for (int rank = 0; rank < parties; rank++) {
+            cumulative[rank] /= total;
+        }
+
+        return cumulative;
+    }
+
+    private int next() {
+        return cursor++ & (PICKS - 1);
+    }
+
+    private Transaction pick() {
+        return picks[next()];
+    }
+
+    private Transaction pickChangeable() {
+        return changeable[next()];
+    }
+
+    private TransactionStatus pickStatus() {
+        return statuses[next()];
+    }
+
+    private int offset() {
+        return next() % MAX_OFFSET;
+    }
+
+    private List<Transaction> fresh(int count) {
+        List<Transaction> batch = fresh.subList(0, count);
+
+        for (Transaction transaction : batch) {
+            transaction.setId(id(nextFresh++));
+        }
+
+        return batch;
+    }
+
+    private int[] pickIds() {
+        for (int i = 0; i < BATCH; i++) {
+            ids[i] = pickChangeable().getId();
+        }
+
+        return ids;
+    }
+
+    private static long sumOfIds(Iterable<Transaction> transactions) {
+        long sum = 0;
+
+        for (Transaction transaction : transactions) {
+            sum += transaction.getId();
+        }
+
+        return sum;
+    }
+
+    private static long sumOfLengths(Iterable<String> names) {
+        long sum = 0;
+
+        for (String name : names) {
+            sum += name.length();
+        }
+
+        return sum;
+    }
+
+    private static long sumOfIds(Stream<Transaction> transactions) {
+        return transactions.limit(PAGE).mapToLong(Transaction::getId).sum();
+    }
+
+    private static long sumOfLengths(Stream<String> names) {
+        return names.limit(PAGE).mapToLong(String::length).sum();
+    }
+
+    /**
+     * Requests and discards every change. A feed drops a subscriber that
+     * falls too far behind, so it subscribes again rather than leave the
+     * ledger publishing to nobody.
+     */
+    private final class Draining implements Flow.Subscriber<List<ChangeEvent>> {
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ChangeEvent> batch) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            ledger.changes().subscribe(this);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private Map<String, LongSupplier> operations() {
+        Map<String, LongSupplier> operations = new LinkedHashMap<>();
+
+        operations.put("getCount", ledger::getCount);
+        operations.put("addThenRemove", () -> {
+            Transaction transaction = fresh(1).get(0);
+            ledger.add(transaction);
+            ledger.removeTransactionById(transaction.getId());
+
+            return transaction.getId();
+        });
+        operations.put("addAllThenRemove", () -> {
+            List<Transaction> batch = fresh(BATCH);
+            int added = ledger.addAll(batch);
+
+            for (Transaction transaction : batch) {
+                ledger.removeTransactionById(transaction.getId());
+            }
+
+            return added;
+        });
+        operations.put("containsTransaction", () -> ledger.contains(pick()) ? 1 : 0);
+        operations.put("containsId", () -> ledger.contains(pick().getId()) ? 1 : 0);
+        operations.put("changeTransactionStatus", () -> {
+            Transaction transaction = pickChangeable();
+            ledger.changeTransactionStatus(transaction.getId(), pickStatus());
+
+            return transaction.getId();
+        });
+        operations.put("changeTransactionStatusesMap", () -> {
+            newStatuses.clear();
+
+            for (int i = 0; i < BATCH; i++) {
+                newStatuses.put(pickChangeable().getId(), pickStatus());
+            }
+
+            return ledger.changeTransactionStatuses(newStatuses).size();
+        });
+        operations.put("changeTransactionStatusesArray", () -> ledger.changeTransactionStatuses(pickIds(), pickStatus()).size());
+        operations.put("getById", () -> ledger.getById(pick().getId()).getId());
+        operations.put("getByTransactionStatus", () -> sumOfIds(ledger.getByTransactionStatus(pickStatus())));
+        operations.put("getAllSendersWithTransactionStatus", () -> sumOfLengths(ledger.getAllSendersWithTransactionStatus(pickStatus())));
+        operations.put("getAllReceiversWithTransactionStatus", () -> sumOfLengths(ledger.getAllReceiversWithTransactionStatus(pickStatus())));
+        operations.put("getAllOrderedByAmountDescendingThenById", () -> sumOfIds(ledger.getAllOrderedByAmountDescendingThenById()));
+        operations.put("getBySenderOrderedByAmountDescending", () -> sumOfIds(ledger.getBySenderOrderedByAmountDescending(pick().getFrom())));
+        operations.put("getByReceiverOrderedByAmountThenById", () -> sumOfIds(ledger.getByReceiverOrderedByAmountThenById(pick().getTo())));
+        operations.put("getByTransactionStatusAndMaximumAmount", () ->
+                sumOfIds(ledger.getByTransactionStatusAndMaximumAmount(pickStatus(), pick().getAmount())));
+        operations.put("getBySenderAndMinimumAmountDescending", () -> {
+            Transaction transaction = pick();
+
+            return sumOfIds(ledger.getBySenderAndMinimumAmountDescending(transaction.getFrom(), transaction.getAmount() / 2));
+        });
+        operations.put("getByReceiverAndAmountRange", () -> {
+            Transaction transaction = pick();
+
+            return sumOfIds(ledger.getByReceiverAndAmountRange(transaction.getTo(), transaction.getAmount(), transaction.getAmount() * 2));
+        });
+        operations.put("getAllInAmountRange", () -> {
+            double amount = pick().getAmount();
+
+            return sumOfIds(ledger.getAllInAmountRange(amount, amount * 1.01));
+        });
+        operations.put("getPageOrderedByAmountDescendingThenById", () -> sumOfIds(ledger.getPageOrderedByAmountDescendingThenById(offset(), PAGE)));
+        operations.put("getPageOrderedByAmountDescendingThenByIdAfter", () -> {
+            Transaction transaction = pick();
+
+            return sumOfIds(ledger.getPageOrderedByAmountDescendingThenByIdAfter(transaction.getAmount(), transaction.getId(), PAGE));
+        });
+        operations.put("getPageBySenderOrderedByAmountDescending", () ->
+                sumOfIds(ledger.getPageBySenderOrderedByAmountDescending(pick().getFrom(), offset(), PAGE)));
+        operations.put("getPageBySenderOrderedByAmountDescendingAfter", () -> {
+            Transaction transaction = pick();
+
+            return sumOfIds(ledger.getPageBySenderOrderedByAmountDescendingAfter(transaction.getFrom(), transaction.getAmount(), transaction.getId(), PAGE));
+        });
+        operations.put("aggregateByTransactionStatus", () -> ledger.aggregateByTransactionStatus(pickStatus()).getCount());
+        operations.put("aggregateBySender", () -> ledger.aggregateBySender(pick().getFrom()).getCount());
+        operations.put("aggregateByReceiver", () -> ledger.aggregateByReceiver(pick().getTo()).getCount());
+        operations.put("aggregateBySenderAndTransactionStatus", () ->
+                ledger.aggregateBySenderAndTransactionStatus(pick().getFrom(), pickStatus()).getCount());
+        operations.put("streamByTransactionStatus", () -> sumOfIds(ledger.streamByTransactionStatus(pickStatus())));
+        operations.put("streamAllSendersWithTransactionStatus", () -> sumOfLengths(ledger.streamAllSendersWithTransactionStatus(pickStatus())));
+        operations.put("streamAllReceiversWithTransactionStatus", () -> sumOfLengths(ledger.streamAllReceiversWithTransactionStatus(pickStatus())));
+        operations.put("streamAllOrderedByAmountDescendingThenById", () -> sumOfIds(ledger.streamAllOrderedByAmountDescendingThenById()));
+        operations.put("streamBySenderOrderedByAmountDescending", () -> sumOfIds(ledger.streamBySenderOrderedByAmountDescending(pick().getFrom())));
+        operations.put("streamByReceiverOrderedByAmountThenById", () -> sumOfIds(ledger.streamByReceiverOrderedByAmountThenById(pick().getTo())));
+        operations.put("streamByTransactionStatusAndMaximumAmount", () ->
+                sumOfIds(ledger.streamByTransactionStatusAndMaximumAmount(pickStatus(), pick().getAmount())));
+        operations.put("streamBySenderAndMinimumAmountDescending", () -> {
+            Transaction transaction = pick();
+
+            return sumOfIds(ledger.streamBySenderAndMinimumAmountDescending(transaction.getFrom(), transaction.getAmount() / 2));
+        });
+        operations.put("streamByReceiverAndAmountRange", () -> {
+            Transaction transaction = pick();
+
+            return sumOfIds(ledger.streamByReceiverAndAmountRange(transaction.getTo(), transaction.getAmount(), transaction.getAmount() * 2));
+        });
+        operations.put("streamAllInAmountRange", () -> {
+            double amount = pick().getAmount();
+
+            return sumOfIds(ledger.streamAllInAmountRange(amount, amount * 1.01));
+        });
+        operations.put("changes", operations.get("changeTransactionStatus"));
+        operations.put("changesAddThenRemove", operations.get("addThenRemove"));
+        operations.put("snapshot", () -> ledger.snapshot().getCount());
+        operations.put("iterator", () -> sumOfIds(ledger));
+
+        return operations;
+    }
+
+}
@@ -0,0 +1,99 @@
+package chainblock.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Throughput of every {@code Chainblock} operation, for every ledger and at
+ * every size. Each combination of parameters runs in its own fork, on a
+ * ledger that is built from the same seed, so runs on different machines
+ * or commits measure the same work.
+ *
+ * <p>JMH refuses benchmarks in the default package, where the ledgers are,
+ * so the ledger and its operations are built by {@code LedgerWorkload},
+ * which is looked up by name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms12g", "-Xmx12g", "-XX:MaxDirectMemorySize=4g", "-XX:+AlwaysPreTouch"})
+public class ChainblockBenchmark {
+
+    public static final long SEED = 20_200_518L;
+
+    @Param({"ChainblockImpl", "ConcurrentChainblock", "ColumnarChainblock", "OffHeapChainblock",
+            "ParallelColumnarChainblock", "ParallelOffHeapChainblock", "ShardedChainblock",
+            "FixedPointChainblockImpl"})
+    public String implementation;
+
+    @Param({"1000", "1000000", "10000000"})
+    public int size;
+
+    @Param({
+            "getCount",
+            "addThenRemove",
+            "addAllThenRemove",
+            "containsTransaction",
+            "containsId",
+            "changeTransactionStatus",
+            "changeTransactionStatusesMap",
+            "changeTransactionStatusesArray",
+            "getById",
+            "getByTransactionStatus",
+            "getAllSendersWithTransactionStatus",
+            "getAllReceiversWithTransactionStatus",
+            "getAllOrderedByAmountDescendingThenById",
+            "getBySenderOrderedByAmountDescending",
+            "getByReceiverOrderedByAmountThenById",
+            "getByTransactionStatusAndMaximumAmount",
+            "getBySenderAndMinimumAmountDescending",
+            "getByReceiverAndAmountRange",
+            "getAllInAmountRange",
+            "getPageOrderedByAmountDescendingThenById",
+            "getPageOrderedByAmountDescendingThenByIdAfter",
+            "getPageBySenderOrderedByAmountDescending",
+            "getPageBySenderOrderedByAmountDescendingAfter",
+            "aggregateByTransactionStatus",
+            "aggregateBySender",
+            "aggregateByReceiver",
+            "aggregateBySenderAndTransactionStatus",
+            "streamByTransactionStatus",
+            "streamAllSendersWithTransactionStatus",
+            "streamAllReceiversWithTransactionStatus",
+            "streamAllOrderedByAmountDescendingThenById",
+            "streamBySenderOrderedByAmountDescending",
+            "streamByReceiverOrderedByAmountThenById",
+            "streamByTransactionStatusAndMaximumAmount",
+            "streamBySenderAndMinimumAmountDescending",
+            "streamByReceiverAndAmountRange",
+            "streamAllInAmountRange",
+            "changes",
+            "changesAddThenRemove",
+            "snapshot",
+            "iterator"
+    })
+    public String operation;
+
+    private LongSupplier supplier;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws ReflectiveOperationException {
+        Function<String, LongSupplier> workload = (Function<String, LongSupplier>) Class.forName("LedgerWorkload")
+                .getConstructor(String.class, int.class, long.class)
+                .newInstance(implementation, size, SEED);
+
+        supplier = workload.apply(operation);
+    }
+
+    @Benchmark
+    public long operation() {
+        return supplier.getAsLong();
+    }
+
+}
@@ -0,0 +1,79 @@
+import java.util.DoubleSummaryStatistics;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Count, sum, minimum and maximum of the amounts of a group of transactions.
+ * The minimum and maximum of an empty group are {@code NaN}.
+ */
+public final class Aggregate {
+
+    public static final Aggregate EMPTY = new Aggregate(0, 0, Double.NaN, Double.NaN);
+
+    private final long count;
+    private final double sum;
+    private final double min;
+    private final double max;
+
+    Aggregate(long count, double sum, double min, double max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Scans the transactions and aggregates the ones accepted by the filter.
+     */
+    static Aggregate of(Iterable<Transaction> transactions, Predicate<Transaction> filter) {
+        DoubleSummaryStatistics statistics = new DoubleSummaryStatistics();
+
+        for (Transaction transaction : transactions) {
+            if(filter.test(transaction)) {
+                statistics.accept(transaction.getAmount());
+            }
+        }
+
+        return statistics.getCount() == 0
+                ? EMPTY
+                : new Aggregate(statistics.getCount(), statistics.getSum(), statistics.getMin(), statistics.getMax());
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count: %d, sum: %.2f, min: %.2f, max: %.2f", count, sum, min, max);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (!(o instanceof Aggregate)) return false;
+
+        Aggregate that = (Aggregate) o;
+
+        return count == that.count && Double.compare(that.sum, sum) == 0 && Double.compare(that.min, min) == 0 && Double.compare(that.max, max) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(count, sum, min, max);
+    }
+
+}
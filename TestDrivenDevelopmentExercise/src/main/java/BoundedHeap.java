@@ -0,0 +1,44 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the {@code capacity} smallest elements offered to it under a
+ * comparator, so picking the top of an unsorted sequence costs O(n log k)
+ * instead of a full sort.
+ */
+final class BoundedHeap<E> {
+
+    private static final int MAX_INITIAL_CAPACITY = 256;
+
+    private final int capacity;
+    private final Comparator<? super E> comparator;
+    private final PriorityQueue<E> largestOnTop;
+
+    BoundedHeap(int capacity, Comparator<? super E> comparator) {
+        this.capacity = capacity;
+        this.comparator = comparator;
+        this.largestOnTop = new PriorityQueue<>(Math.max(1, Math.min(capacity, MAX_INITIAL_CAPACITY)), comparator.reversed());
+    }
+
+    public void offer(E element) {
+        if(largestOnTop.size() < capacity) {
+            largestOnTop.add(element);
+        } else if(capacity > 0 && comparator.compare(element, largestOnTop.peek()) < 0) {
+            largestOnTop.poll();
+            largestOnTop.add(element);
+        }
+    }
+
+    /**
+     * @return the kept elements in ascending order
+     */
+    public List<E> toSortedList() {
+        List<E> sorted = new ArrayList<>(largestOnTop);
+        sorted.sort(comparator);
+
+        return sorted;
+    }
+
+}
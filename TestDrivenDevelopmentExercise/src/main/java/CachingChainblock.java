@@ -0,0 +1,460 @@
+import status.TransactionStatus;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * {@link Chainblock} that remembers the results of queries until a mutation
+ * touches what they depend on. Results live in a bounded cache that evicts
+ * the least recently used entry first.
+ *
+ * <p>Invalidation is driven by version stamps. The ledger is split into
+ * buckets: one per status, one per sender, one per receiver, one per
+ * power-of-two band of amounts, and one for queries over the whole ledger.
+ * A mutation stamps the buckets of every transaction it touches with the
+ * next value of a clock, and a cached result is only served while none of
+ * the buckets it depends on has been stamped since it was computed. A
+ * status change therefore only drops the results for the old and the new
+ * status, for the sender, the receiver and the amount band of the
+ * transaction, and for the whole ledger. The results of other statuses,
+ * parties and amounts stay cached.
+ *
+ * <p>Results are computed outside of any lock and stamped with the clock as
+ * it was before the query started, so a result that raced with a mutation
+ * is never served after it. The ledger must be safe to use from as many
+ * threads as the cache is. Cached results are unmodifiable and shared by
+ * every caller. Lookups, point queries, aggregates (which the ledgers keep
+ * running), snapshots and streams are forwarded without caching.
+ */
+public class CachingChainblock implements Chainblock {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int STATUSES = TransactionStatus.values().length;
+    private static final int BANDS = 4096;
+    private static final int NEGATIVE_BANDS = BANDS / 2;
+    private static final int EXPONENT_BIAS = 1023;
+
+    private static final class CachedResult {
+
+        private final Object result;
+        private final long stamp;
+        private final LongSupplier dependencies;
+
+        CachedResult(Object result, long stamp, LongSupplier dependencies) {
+            this.result = result;
+            this.stamp = stamp;
+            this.dependencies = dependencies;
+        }
+
+        boolean isValid() {
+            return dependencies.getAsLong() <= stamp;
+        }
+    }
+
+    private final Chainblock ledger;
+    private final Map<List<Object>, CachedResult> entries;
+    private final AtomicLong clock;
+    private final AtomicLong everything;
+    private final AtomicLongArray statuses;
+    private final AtomicLongArray bands;
+    private final ConcurrentMap<String, Long> senders;
+    private final ConcurrentMap<String, Long> receivers;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    public CachingChainblock(Chainblock ledger) {
+        this(ledger, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the most results kept at once
+     */
+    public CachingChainblock(Chainblock ledger, int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.ledger = ledger;
+        this.entries = new LinkedHashMap<List<Object>, CachedResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedResult> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.clock = new AtomicLong();
+        this.everything = new AtomicLong();
+        this.statuses = new AtomicLongArray(STATUSES);
+        this.bands = new AtomicLongArray(BANDS);
+        this.senders = new ConcurrentHashMap<>();
+        this.receivers = new ConcurrentHashMap<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of cached results, including ones that are no longer valid but not yet evicted
+     */
+    public int getCachedResults() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clearCache() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Maps amounts to bands in amount order: the negative amounts by
+     * decreasing binary exponent, then the others by increasing exponent.
+     */
+    private static int band(double amount) {
+        int exponent = Math.getExponent(amount) + EXPONENT_BIAS;
+
+        return amount < 0 ? NEGATIVE_BANDS - 1 - exponent : NEGATIVE_BANDS + exponent;
+    }
+
+    private long statusVersion(TransactionStatus status) {
+        return statuses.get(status.ordinal());
+    }
+
+    private static long partyVersion(ConcurrentMap<String, Long> parties, String party) {
+        return parties.getOrDefault(party, 0L);
+    }
+
+    private long bandVersion(double lo, double hi) {
+        if(!(lo <= hi)) {
+            return 0;
+        }
+
+        long version = 0;
+
+        for (int band = band(lo), last = band(hi); band <= last; band++) {
+            version = Math.max(version, bands.get(band));
+        }
+
+        return version;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(List<Object> key, LongSupplier dependencies, Supplier<T> query) {
+        CachedResult entry;
+
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        if(entry != null && entry.isValid()) {
+            hits.increment();
+
+            return (T) entry.result;
+        }
+
+        misses.increment();
+
+        long stamp = clock.get();
+        T result = query.get();
+
+        synchronized (entries) {
+            entries.put(key, new CachedResult(result, stamp, dependencies));
+        }
+
+        return result;
+    }
+
+    private Iterable<Transaction> cachedTransactions(List<Object> key, LongSupplier dependencies, Supplier<Iterable<Transaction>> query) {
+        return cached(key, dependencies, () -> unmodifiable(query.get()));
+    }
+
+    private static <T> Iterable<T> unmodifiable(Iterable<T> result) {
+        if(result instanceof List) {
+            return Collections.unmodifiableList((List<T>) result);
+        }
+
+        List<T> copy = new ArrayList<>();
+        result.forEach(copy::add);
+
+        return Collections.unmodifiableList(copy);
+    }
+
+    /**
+     * Stamps the buckets a transaction belongs to. Called after the mutation,
+     * so that a query which read the ledger before it cannot be cached with
+     * a later stamp.
+     */
+    private void touch(Collection<Transaction> transactions) {
+        long version = clock.incrementAndGet();
+
+        everything.accumulateAndGet(version, Math::max);
+
+        for (Transaction transaction : transactions) {
+            statuses.accumulateAndGet(transaction.getStatus().ordinal(), version, Math::max);
+            bands.accumulateAndGet(band(transaction.getAmount()), version, Math::max);
+            senders.merge(transaction.getFrom(), version, Math::max);
+            receivers.merge(transaction.getTo(), version, Math::max);
+        }
+    }
+
+    private void touch(Collection<Transaction> transactions, TransactionStatus newStatus) {
+        touch(transactions);
+
+        statuses.accumulateAndGet(newStatus.ordinal(), clock.get(), Math::max);
+    }
+
+    /**
+     * Copies what the cache needs to know about a transaction before it is
+     * changed, since stored transactions may be views that change with it or
+     * stop working once it is removed.
+     *
+     * @return the copy, or {@code null} if the ledger has no such transaction
+     */
+    private Transaction find(int id) {
+        if(!ledger.contains(id)) {
+            return null;
+        }
+
+        Transaction transaction = ledger.getById(id);
+
+        return new TransactionImpl(id, transaction.getStatus(), transaction.getFrom(), transaction.getTo(), transaction.getAmount());
+    }
+
+    private List<Transaction> findAll(Iterable<Integer> ids) {
+        List<Transaction> found = new ArrayList<>();
+
+        for (int id : ids) {
+            Transaction transaction = find(id);
+
+            if(transaction != null) {
+                found.add(transaction);
+            }
+        }
+
+        return found;
+    }
+
+    public int getCount() {
+        return ledger.getCount();
+    }
+
+    public void add(Transaction transaction) {
+        ledger.add(transaction);
+        touch(Collections.singletonList(transaction));
+    }
+
+    public int addAll(Collection<? extends Transaction> transactions) {
+        int added = ledger.addAll(transactions);
+        touch(new ArrayList<>(transactions));
+
+        return added;
+    }
+
+    public boolean contains(Transaction transaction) {
+        return ledger.contains(transaction);
+    }
+
+    public boolean contains(int id) {
+        return ledger.contains(id);
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        Transaction before = find(id);
+        ledger.changeTransactionStatus(id, newStatus);
+        touch(Collections.singletonList(before), newStatus);
+    }
+
+    public List<Integer> changeTransactionStatuses(Map<Integer, TransactionStatus> newStatuses) {
+        List<Transaction> before = findAll(newStatuses.keySet());
+        List<Integer> missing = ledger.changeTransactionStatuses(newStatuses);
+
+        touch(before);
+
+        for (TransactionStatus newStatus : new HashSet<>(newStatuses.values())) {
+            statuses.accumulateAndGet(newStatus.ordinal(), clock.get(), Math::max);
+        }
+
+        return missing;
+    }
+
+    public List<Integer> changeTransactionStatuses(int[] ids, TransactionStatus newStatus) {
+        List<Integer> boxed = new ArrayList<>(ids.length);
+
+        for (int id : ids) {
+            boxed.add(id);
+        }
+
+        List<Transaction> before = findAll(boxed);
+        List<Integer> missing = ledger.changeTransactionStatuses(ids, newStatus);
+        touch(before, newStatus);
+
+        return missing;
+    }
+
+    public void removeTransactionById(int id) {
+        Transaction before = find(id);
+        ledger.removeTransactionById(id);
+        touch(Collections.singletonList(before));
+    }
+
+    public Transaction getById(int id) {
+        return ledger.getById(id);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return cachedTransactions(Arrays.asList("getByTransactionStatus", status), () -> statusVersion(status),
+                () -> ledger.getByTransactionStatus(status));
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return cached(Arrays.asList("getAllSendersWithTransactionStatus", status), () -> statusVersion(status),
+                () -> unmodifiable(ledger.getAllSendersWithTransactionStatus(status)));
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return cached(Arrays.asList("getAllReceiversWithTransactionStatus", status), () -> statusVersion(status),
+                () -> unmodifiable(ledger.getAllReceiversWithTransactionStatus(status)));
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return cachedTransactions(Collections.singletonList("getAllOrderedByAmountDescendingThenById"), everything::get,
+                ledger::getAllOrderedByAmountDescendingThenById);
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return cachedTransactions(Arrays.asList("getBySenderOrderedByAmountDescending", sender), () -> partyVersion(senders, sender),
+                () -> ledger.getBySenderOrderedByAmountDescending(sender));
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return cachedTransactions(Arrays.asList("getByReceiverOrderedByAmountThenById", receiver), () -> partyVersion(receivers, receiver),
+                () -> ledger.getByReceiverOrderedByAmountThenById(receiver));
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return cachedTransactions(Arrays.asList("getByTransactionStatusAndMaximumAmount", status, amount), () -> statusVersion(status),
+                () -> ledger.getByTransactionStatusAndMaximumAmount(status, amount));
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return cachedTransactions(Arrays.asList("getBySenderAndMinimumAmountDescending", sender, amount), () -> partyVersion(senders, sender),
+                () -> ledger.getBySenderAndMinimumAmountDescending(sender, amount));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return cachedTransactions(Arrays.asList("getByReceiverAndAmountRange", receiver, lo, hi), () -> partyVersion(receivers, receiver),
+                () -> ledger.getByReceiverAndAmountRange(receiver, lo, hi));
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return cachedTransactions(Arrays.asList("getAllInAmountRange", lo, hi), () -> bandVersion(lo, hi),
+                () -> ledger.getAllInAmountRange(lo, hi));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(int offset, int limit) {
+        return cachedTransactions(Arrays.asList("getPageOrderedByAmountDescendingThenById", offset, limit), everything::get,
+                () -> ledger.getPageOrderedByAmountDescendingThenById(offset, limit));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenByIdAfter(double amount, int id, int limit) {
+        return cachedTransactions(Arrays.asList("getPageOrderedByAmountDescendingThenByIdAfter", amount, id, limit), everything::get,
+                () -> ledger.getPageOrderedByAmountDescendingThenByIdAfter(amount, id, limit));
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescending(String sender, int offset, int limit) {
+        return cachedTransactions(Arrays.asList("getPageBySenderOrderedByAmountDescending", sender, offset, limit), () -> partyVersion(senders, sender),
+                () -> ledger.getPageBySenderOrderedByAmountDescending(sender, offset, limit));
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescendingAfter(String sender, double amount, int id, int limit) {
+        return cachedTransactions(Arrays.asList("getPageBySenderOrderedByAmountDescendingAfter", sender, amount, id, limit),
+                () -> partyVersion(senders, sender),
+                () -> ledger.getPageBySenderOrderedByAmountDescendingAfter(sender, amount, id, limit));
+    }
+
+    public Aggregate aggregateByTransactionStatus(TransactionStatus status) {
+        return ledger.aggregateByTransactionStatus(status);
+    }
+
+    public Aggregate aggregateBySender(String sender) {
+        return ledger.aggregateBySender(sender);
+    }
+
+    public Aggregate aggregateByReceiver(String receiver) {
+        return ledger.aggregateByReceiver(receiver);
+    }
+
+    public Aggregate aggregateBySenderAndTransactionStatus(String sender, TransactionStatus status) {
+        return ledger.aggregateBySenderAndTransactionStatus(sender, status);
+    }
+
+    public Stream<Transaction> streamByTransactionStatus(TransactionStatus status) {
+        return ledger.streamByTransactionStatus(status);
+    }
+
+    public Stream<String> streamAllSendersWithTransactionStatus(TransactionStatus status) {
+        return ledger.streamAllSendersWithTransactionStatus(status);
+    }
+
+    public Stream<String> streamAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return ledger.streamAllReceiversWithTransactionStatus(status);
+    }
+
+    public Stream<Transaction> streamAllOrderedByAmountDescendingThenById() {
+        return ledger.streamAllOrderedByAmountDescendingThenById();
+    }
+
+    public Stream<Transaction> streamBySenderOrderedByAmountDescending(String sender) {
+        return ledger.streamBySenderOrderedByAmountDescending(sender);
+    }
+
+    public Stream<Transaction> streamByReceiverOrderedByAmountThenById(String receiver) {
+        return ledger.streamByReceiverOrderedByAmountThenById(receiver);
+    }
+
+    public Stream<Transaction> streamByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return ledger.streamByTransactionStatusAndMaximumAmount(status, amount);
+    }
+
+    public Stream<Transaction> streamBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return ledger.streamBySenderAndMinimumAmountDescending(sender, amount);
+    }
+
+    public Stream<Transaction> streamByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return ledger.streamByReceiverAndAmountRange(receiver, lo, hi);
+    }
+
+    public Stream<Transaction> streamAllInAmountRange(double lo, double hi) {
+        return ledger.streamAllInAmountRange(lo, hi);
+    }
+
+    public Flow.Publisher<List<ChangeEvent>> changes() {
+        return ledger.changes();
+    }
+
+    public Chainblock snapshot() {
+        return ledger.snapshot();
+    }
+
+    public Iterator<Transaction> iterator() {
+        return ledger.iterator();
+    }
+
+}
@@ -1,17 +1,85 @@
 import status.TransactionStatus;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 public interface Chainblock extends Iterable<Transaction> {
 
     int getCount();
 
     void add(Transaction transaction);
 
+    /**
+     * Adds every transaction whose id is not taken yet, in iteration order, as
+     * repeated calls to {@link #add} would.
+     *
+     * @return the number of transactions that were added
+     */
+    default int addAll(Collection<? extends Transaction> transactions) {
+        int added = 0;
+
+        for (Transaction transaction : transactions) {
+            if(!contains(transaction.getId())) {
+                add(transaction);
+                added++;
+            }
+        }
+
+        return added;
+    }
+
     boolean contains(Transaction transaction);
 
     boolean contains(int id);
 
     void changeTransactionStatus(int id, TransactionStatus newStatus);
 
+    /**
+     * Moves every listed transaction to its new status. Unknown ids do not
+     * stop the batch; they are collected and returned instead.
+     *
+     * @return the ids that could not be found
+     */
+    default List<Integer> changeTransactionStatuses(Map<Integer, TransactionStatus> newStatuses) {
+        List<Integer> missing = new ArrayList<>();
+
+        newStatuses.forEach((id, newStatus) -> {
+            if(contains(id)) {
+                changeTransactionStatus(id, newStatus);
+            } else {
+                missing.add(id);
+            }
+        });
+
+        return missing;
+    }
+
+    /**
+     * Moves every listed transaction to the same new status, collecting unknown ids like
+     * {@link #changeTransactionStatuses(Map)}.
+     *
+     * @return the ids that could not be found
+     */
+    default List<Integer> changeTransactionStatuses(int[] ids, TransactionStatus newStatus) {
+        List<Integer> missing = new ArrayList<>();
+
+        for (int id : ids) {
+            if(contains(id)) {
+                changeTransactionStatus(id, newStatus);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        return missing;
+    }
+
     void removeTransactionById(int id);
 
     Transaction getById(int id);
@@ -22,6 +90,12 @@ public interface Chainblock extends Iterable<Transaction> {
 
     Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status);
 
+    /**
+     * Returns every transaction by amount ascending, then id descending: the
+     * reverse of {@link TransactionOrder#AMOUNT_THEN_ID}, whatever the name
+     * says, as the original contract has it. The page queries page through
+     * this list backwards.
+     */
     Iterable<Transaction> getAllOrderedByAmountDescendingThenById();
 
     Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender);
@@ -36,4 +110,173 @@ public interface Chainblock extends Iterable<Transaction> {
 
     Iterable<Transaction> getAllInAmountRange(double lo, double hi);
 
+    /*
+     * Paged queries. Pages are in the order their names say, amount
+     * descending, then id ascending (TransactionOrder.AMOUNT_THEN_ID), so the
+     * first page holds the largest transactions. That is the reverse of
+     * getAllOrderedByAmountDescendingThenById: a page is a slice of that list
+     * read from its end. The "After" variants continue strictly after the given
+     * (amount, id) key, which is normally the last transaction of the
+     * previous page. The defaults keep a bounded heap of offset + limit
+     * candidates; indexed implementations seek instead.
+     */
+
+    default Iterable<Transaction> getPageOrderedByAmountDescendingThenById(int offset, int limit) {
+        return page(this, t -> true, offset, limit, null);
+    }
+
+    default Iterable<Transaction> getPageOrderedByAmountDescendingThenByIdAfter(double amount, int id, int limit) {
+        Transaction cursor = TransactionOrder.probe(amount, id);
+
+        return page(this, t -> TransactionOrder.AMOUNT_THEN_ID.compare(t, cursor) > 0, 0, limit, null);
+    }
+
+    default Iterable<Transaction> getPageBySenderOrderedByAmountDescending(String sender, int offset, int limit) {
+        return page(this, t -> t.getFrom().equals(sender), offset, limit, "Sender " + sender + " cannot be found in the database");
+    }
+
+    default Iterable<Transaction> getPageBySenderOrderedByAmountDescendingAfter(String sender, double amount, int id, int limit) {
+        Transaction cursor = TransactionOrder.probe(amount, id);
+
+        return page(this, t -> t.getFrom().equals(sender), 0, limit, "Sender " + sender + " cannot be found in the database",
+                t -> TransactionOrder.AMOUNT_THEN_ID.compare(t, cursor) > 0);
+    }
+
+    static void ensurePage(int offset, int limit) {
+        if(offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit cannot be negative");
+        }
+    }
+
+    private static List<Transaction> page(Iterable<Transaction> transactions, Predicate<Transaction> filter, int offset, int limit, String missingMessage) {
+        return page(transactions, filter, offset, limit, missingMessage, t -> true);
+    }
+
+    /**
+     * @param missingMessage thrown when nothing passes {@code filter}, or {@code null} to allow an empty ledger
+     * @param after further restricts what ends up on the page without counting toward {@code missingMessage}
+     */
+    private static List<Transaction> page(Iterable<Transaction> transactions, Predicate<Transaction> filter, int offset, int limit,
+                                          String missingMessage, Predicate<Transaction> after) {
+        ensurePage(offset, limit);
+
+        BoundedHeap<Transaction> heap = new BoundedHeap<>((int) Math.min(Integer.MAX_VALUE, (long) offset + limit), TransactionOrder.AMOUNT_THEN_ID);
+        boolean found = false;
+        long visited = 0;
+
+        for (Transaction transaction : transactions) {
+            visited++;
+
+            if(filter.test(transaction)) {
+                found = true;
+
+                if(after.test(transaction)) {
+                    heap.offer(transaction);
+                }
+            }
+        }
+
+        ScanCounter.of(transactions).add(visited);
+
+        if(!found && missingMessage != null) {
+            throw new IllegalArgumentException(missingMessage);
+        }
+
+        List<Transaction> top = heap.toSortedList();
+
+        return new ArrayList<>(top.subList(Math.min(offset, top.size()), top.size()));
+    }
+
+    /*
+     * Aggregates of the amounts per status, per party and per sender and
+     * status. An empty group yields Aggregate.EMPTY rather than an exception.
+     * The defaults scan the ledger; implementations that keep running totals
+     * answer in constant time.
+     */
+
+    default Aggregate aggregateByTransactionStatus(TransactionStatus status) {
+        return Aggregate.of(this, t -> t.getStatus() == status);
+    }
+
+    default Aggregate aggregateBySender(String sender) {
+        return Aggregate.of(this, t -> t.getFrom().equals(sender));
+    }
+
+    default Aggregate aggregateByReceiver(String receiver) {
+        return Aggregate.of(this, t -> t.getTo().equals(receiver));
+    }
+
+    default Aggregate aggregateBySenderAndTransactionStatus(String sender, TransactionStatus status) {
+        return Aggregate.of(this, t -> t.getStatus() == status && t.getFrom().equals(sender));
+    }
+
+    /*
+     * Streaming counterparts of the queries above: same arguments, same order,
+     * same exceptions for missing statuses or parties. Implementations that can
+     * walk their indexes lazily override these; the defaults simply stream
+     * the materialized result.
+     */
+
+    default Stream<Transaction> streamByTransactionStatus(TransactionStatus status) {
+        return stream(getByTransactionStatus(status));
+    }
+
+    default Stream<String> streamAllSendersWithTransactionStatus(TransactionStatus status) {
+        return stream(getAllSendersWithTransactionStatus(status));
+    }
+
+    default Stream<String> streamAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return stream(getAllReceiversWithTransactionStatus(status));
+    }
+
+    default Stream<Transaction> streamAllOrderedByAmountDescendingThenById() {
+        return stream(getAllOrderedByAmountDescendingThenById());
+    }
+
+    default Stream<Transaction> streamBySenderOrderedByAmountDescending(String sender) {
+        return stream(getBySenderOrderedByAmountDescending(sender));
+    }
+
+    default Stream<Transaction> streamByReceiverOrderedByAmountThenById(String receiver) {
+        return stream(getByReceiverOrderedByAmountThenById(receiver));
+    }
+
+    default Stream<Transaction> streamByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return stream(getByTransactionStatusAndMaximumAmount(status, amount));
+    }
+
+    default Stream<Transaction> streamBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return stream(getBySenderAndMinimumAmountDescending(sender, amount));
+    }
+
+    default Stream<Transaction> streamByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return stream(getByReceiverAndAmountRange(receiver, lo, hi));
+    }
+
+    default Stream<Transaction> streamAllInAmountRange(double lo, double hi) {
+        return stream(getAllInAmountRange(lo, hi));
+    }
+
+    private static <T> Stream<T> stream(Iterable<T> iterable) {
+        return StreamSupport.stream(iterable.spliterator(), false);
+    }
+
+    /**
+     * Returns an immutable, point-in-time view of this ledger that supports every
+     * query and is unaffected by later mutations. Mutating it throws
+     * {@link UnsupportedOperationException}.
+     */
+    Chainblock snapshot();
+
+    /**
+     * Returns a publisher of every mutation made after a subscriber subscribes,
+     * delivered in batches. Publishing never blocks the writer: a subscriber
+     * that falls too far behind is dropped with {@code onError}. Ledgers that
+     * cannot change, or do not publish their changes, throw
+     * {@link UnsupportedOperationException}.
+     */
+    default Flow.Publisher<List<ChangeEvent>> changes() {
+        throw new UnsupportedOperationException("This ledger does not publish its changes");
+    }
+
 }
@@ -1,15 +1,96 @@
 import status.TransactionStatus;
 
+import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.Flow;
 import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class ChainblockImpl implements Chainblock {
+public class ChainblockImpl implements Chainblock, ScanReporting {
 
     public static final Comparator<Transaction> AMOUNT_COMPARATOR = Comparator.comparingDouble(Transaction::getAmount).reversed();
-    private Map<Integer, Transaction> database;
+
+    private static final int FLOATING_POINT = -1;
+
+    private int fractionDigits;
+    private Comparator<Transaction> order;
+    private TransactionOrder.Amounts amounts;
+    private TransactionStore database;
+    private NavigableSet<Transaction> transactionsByAmount;
+    private Map<TransactionStatus, NavigableSet<Transaction>> transactionsByStatus;
+    private PartyDictionary parties;
+    private List<NavigableSet<Transaction>> transactionsBySender;
+    private List<NavigableSet<Transaction>> transactionsByReceiver;
+    private LedgerVersions versions;
+    private volatile ScanCounter scans;
+    private LedgerAggregates aggregates;
+    private ChangeFeed feed;
 
     public ChainblockImpl() {
-        this.database = new LinkedHashMap<>();
+        this(FLOATING_POINT, TransactionOrder.AMOUNT_THEN_ID, TransactionOrder.DOUBLES);
+    }
+
+    /**
+     * Creates a ledger that stores every amount as a whole number of minor
+     * units with the given number of fraction digits, e.g. cents for 2. Added
+     * transactions are stored as {@link FixedPointTransaction} copies with
+     * their amounts rounded to the nearest minor unit, the indexes compare
+     * the minor units as longs, and the bounds of amount queries are rounded
+     * the same way, so a bound equal to a stored amount always matches it.
+     * Since the ledger keeps copies, later changes to an added transaction
+     * object are not seen by the ledger, and the other way round.
+     */
+    public ChainblockImpl(int fractionDigits) {
+        this(FixedPointTransaction.checkFractionDigits(fractionDigits), FixedPointTransaction.MINOR_UNITS_THEN_ID_COMPARATOR,
+                FixedPointTransaction.amounts(fractionDigits));
+    }
+
+    private ChainblockImpl(int fractionDigits, Comparator<Transaction> order, TransactionOrder.Amounts amounts) {
+        this.fractionDigits = fractionDigits;
+        this.order = order;
+        this.amounts = amounts;
+        this.database = new TransactionStore();
+        this.transactionsByAmount = new TreeSet<>(order);
+        this.transactionsByStatus = new EnumMap<>(TransactionStatus.class);
+
+        for (TransactionStatus status : TransactionStatus.values()) {
+            this.transactionsByStatus.put(status, new TreeSet<>(order));
+        }
+
+        this.parties = new PartyDictionary();
+        this.transactionsBySender = new ArrayList<>();
+        this.transactionsByReceiver = new ArrayList<>();
+        this.versions = new LedgerVersions(amounts);
+        this.scans = ScanCounter.NONE;
+        this.aggregates = new LedgerAggregates();
+        this.feed = new ChangeFeed();
+    }
+
+    /**
+     * Returns the transaction itself, or its fixed-point copy if this ledger
+     * stores minor units. Converting is the only step of adding that can
+     * reject a transaction, so it comes before anything is changed.
+     * The caller's transaction is never changed.
+     *
+     * @throws IllegalArgumentException if the amount cannot be stored in minor units
+     */
+    private Transaction toStored(Transaction transaction) {
+        return fractionDigits == FLOATING_POINT
+                ? transaction
+                : FixedPointTransaction.of(transaction, fractionDigits);
+    }
+
+    /**
+     * Points a fixed-point copy at the dictionary's copy of each party name,
+     * so a party that appears in many transactions is held in memory once.
+     */
+    private void shareParties(Transaction stored, int sender, int receiver) {
+        if(fractionDigits != FLOATING_POINT) {
+            stored.setFrom(parties.decode(sender));
+            stored.setTo(parties.decode(receiver));
+        }
     }
 
     private void ensureId(int id, String message) {
@@ -18,17 +99,116 @@ public class ChainblockImpl implements Chainblock {
         }
     }
 
-    private List<Transaction> getFilteredTransactionsByStatus(TransactionStatus status) {
-        return database.values()
-                .stream()
-                .filter(t -> t.getStatus().equals(status))
-                .collect(Collectors.toList());
+    /**
+     * @return the index entry of the party code, or {@code null} if the party has no transactions in that role
+     */
+    private static NavigableSet<Transaction> findInIndex(List<NavigableSet<Transaction>> index, int code) {
+        return code == PartyDictionary.UNKNOWN || code >= index.size() ? null : index.get(code);
+    }
+
+    private NavigableSet<Transaction> getOrCreateInIndex(List<NavigableSet<Transaction>> index, int code) {
+        while (index.size() <= code) {
+            index.add(null);
+        }
+
+        NavigableSet<Transaction> transactions = index.get(code);
+
+        if(transactions == null) {
+            transactions = new TreeSet<>(order);
+            index.set(code, transactions);
+        }
+
+        return transactions;
+    }
+
+    private static void removeFromIndex(List<NavigableSet<Transaction>> index, int code, Transaction transaction) {
+        NavigableSet<Transaction> transactions = index.get(code);
+        transactions.remove(transaction);
+
+        if(transactions.isEmpty()) {
+            index.set(code, null);
+        }
+    }
+
+    /**
+     * Adds transactions already sorted in index order to an
+     * index. A batch that is small next to the index is inserted one by one;
+     * otherwise both runs are merged and the tree is rebuilt from the result
+     * in linear time.
+     */
+    private void addSorted(NavigableSet<Transaction> index, List<Transaction> sorted) {
+        if(sorted.size() < index.size() / 16) {
+            index.addAll(sorted);
+            return;
+        }
+
+        List<Transaction> merged = new ArrayList<>(index.size() + sorted.size());
+        Iterator<Transaction> existing = index.iterator();
+        Transaction next = existing.hasNext() ? existing.next() : null;
+
+        for (Transaction transaction : sorted) {
+            while (next != null && order.compare(next, transaction) < 0) {
+                merged.add(next);
+                next = existing.hasNext() ? existing.next() : null;
+            }
+
+            merged.add(transaction);
+        }
+
+        while (next != null) {
+            merged.add(next);
+            next = existing.hasNext() ? existing.next() : null;
+        }
+
+        index.clear();
+        index.addAll(new SortedListView<>(merged, order));
     }
 
-    private void ensureExistingTransactionsBySenderOrReceiver(String prefix, String senderOrReceiver) {
-        if(database.values().stream().noneMatch(t -> t.getFrom().equals(senderOrReceiver))) {
-            throw new IllegalArgumentException(prefix + senderOrReceiver + " cannot be found in the database");
+    /**
+     * Removes the given transactions from an index. A batch that is small next
+     * to the index is removed one by one; otherwise the tree is rebuilt in
+     * linear time from the transactions that stay.
+     */
+    private void removeAll(NavigableSet<Transaction> index, Set<Transaction> leaving) {
+        if(leaving.size() < index.size() / 16) {
+            leaving.forEach(index::remove);
+            return;
+        }
+
+        List<Transaction> staying = new ArrayList<>(index.size());
+
+        for (Transaction transaction : index) {
+            if(!leaving.contains(transaction)) {
+                staying.add(transaction);
+            }
         }
+
+        index.clear();
+        index.addAll(new SortedListView<>(staying, order));
+    }
+
+    private NavigableSet<Transaction> getFilteredTransactionsByStatus(TransactionStatus status) {
+        return transactionsByStatus.get(status);
+    }
+
+    private NavigableSet<Transaction> getFilteredTransactionsBySender(String sender) {
+        NavigableSet<Transaction> transactions = findInIndex(transactionsBySender, parties.find(sender));
+
+        if(transactions == null) {
+            throw new IllegalArgumentException("Sender " + sender + " cannot be found in the database");
+        }
+
+        return transactions;
+    }
+
+    private NavigableSet<Transaction> getFilteredTransactionsByReceiver(String receiver) {
+        NavigableSet<Transaction> transactions = findInIndex(transactionsByReceiver, parties.find(receiver));
+
+        if(transactions == null) {
+            throw new IllegalArgumentException("Receiver " + receiver + " cannot be found in the database");
+        }
+
+        return transactions;
     }
 
     public int getCount() {
@@ -36,11 +216,78 @@ public class ChainblockImpl implements Chainblock {
     }
 
     public void add(Transaction transaction) {
-        database.putIfAbsent(transaction.getId(), transaction);
+        Transaction stored = toStored(transaction);
+        int sender = parties.encode(stored.getFrom());
+        int receiver = parties.encode(stored.getTo());
+        shareParties(stored, sender, receiver);
+
+        if(database.putIfAbsent(stored) == null) {
+            aggregates.add(sender, receiver, stored.getStatus(), stored.getAmount());
+            transactionsByAmount.add(stored);
+            getFilteredTransactionsByStatus(stored.getStatus()).add(stored);
+            getOrCreateInIndex(transactionsBySender, sender).add(stored);
+            getOrCreateInIndex(transactionsByReceiver, receiver).add(stored);
+            versions.record(stored);
+            feed.added(stored);
+        }
+    }
+
+    /**
+     * Bulk variant of {@link #add}: the store is sized once, duplicates are
+     * skipped in a single pass, and the accepted transactions are sorted once
+     * and then split per status, sender and receiver, so every index receives
+     * an already ordered run instead of individual insertions. Every
+     * transaction is converted before the first is stored, so a batch that
+     * is rejected leaves the ledger as it was.
+     */
+    public int addAll(Collection<? extends Transaction> transactions) {
+        List<Transaction> candidates = new ArrayList<>(transactions.size());
+
+        for (Transaction candidate : transactions) {
+            candidates.add(toStored(candidate));
+        }
+
+        database.ensureCapacity(database.size() + candidates.size());
+
+        List<Transaction> added = new ArrayList<>(candidates.size());
+
+        for (Transaction transaction : candidates) {
+            int sender = parties.encode(transaction.getFrom());
+            int receiver = parties.encode(transaction.getTo());
+            shareParties(transaction, sender, receiver);
+
+            if(database.putIfAbsent(transaction) == null) {
+                aggregates.add(sender, receiver, transaction.getStatus(), transaction.getAmount());
+                added.add(transaction);
+                versions.record(transaction);
+                feed.added(transaction);
+            }
+        }
+
+        added.sort(order);
+
+        Map<TransactionStatus, List<Transaction>> byStatus = new EnumMap<>(TransactionStatus.class);
+        Map<Integer, List<Transaction>> bySender = new HashMap<>();
+        Map<Integer, List<Transaction>> byReceiver = new HashMap<>();
+
+        for (Transaction transaction : added) {
+            byStatus.computeIfAbsent(transaction.getStatus(), k -> new ArrayList<>()).add(transaction);
+            bySender.computeIfAbsent(parties.find(transaction.getFrom()), k -> new ArrayList<>()).add(transaction);
+            byReceiver.computeIfAbsent(parties.find(transaction.getTo()), k -> new ArrayList<>()).add(transaction);
+        }
+
+        addSorted(transactionsByAmount, added);
+        byStatus.forEach((status, sorted) -> addSorted(getFilteredTransactionsByStatus(status), sorted));
+        bySender.forEach((sender, sorted) -> addSorted(getOrCreateInIndex(transactionsBySender, sender), sorted));
+        byReceiver.forEach((receiver, sorted) -> addSorted(getOrCreateInIndex(transactionsByReceiver, receiver), sorted));
+
+        return added.size();
     }
 
     public boolean contains(Transaction transaction) {
-        return database.containsValue(transaction);
+        Transaction stored = database.get(transaction.getId());
+
+        return stored != null && stored.equals(amounts.toComparable(transaction));
     }
 
     public boolean contains(int id) {
@@ -50,14 +297,94 @@ public class ChainblockImpl implements Chainblock {
     public void changeTransactionStatus(int id, TransactionStatus newStatus) {
         ensureId(id, "Cannot change status of non-existing transaction");
 
-        Transaction transaction = getById(id);
+        Transaction transaction = database.get(id);
+        TransactionStatus previousStatus = transaction.getStatus();
+
+        getFilteredTransactionsByStatus(previousStatus).remove(transaction);
+        aggregates.changeStatus(parties.find(transaction.getFrom()), previousStatus, newStatus, transaction.getAmount());
         transaction.setStatus(newStatus);
+        getFilteredTransactionsByStatus(newStatus).add(transaction);
+        versions.record(transaction);
+        feed.statusChanged(transaction, previousStatus);
+    }
+
+    /**
+     * Batch variant of {@link #changeTransactionStatus}: every id is looked up
+     * once, and each status group is then updated in a single pass.
+     */
+    public List<Integer> changeTransactionStatuses(Map<Integer, TransactionStatus> newStatuses) {
+        StatusTransitions transitions = new StatusTransitions();
+        newStatuses.forEach(transitions::move);
+        transitions.apply();
+
+        return transitions.missing;
+    }
+
+    public List<Integer> changeTransactionStatuses(int[] ids, TransactionStatus newStatus) {
+        StatusTransitions transitions = new StatusTransitions();
+
+        for (int id : ids) {
+            transitions.move(id, newStatus);
+        }
+
+        transitions.apply();
+
+        return transitions.missing;
+    }
+
+    /**
+     * Collects the moves of one batch per old and new status, so each status
+     * index is touched once no matter how many transactions it gains or loses.
+     */
+    private class StatusTransitions {
+
+        private final Map<TransactionStatus, Set<Transaction>> leaving = new EnumMap<>(TransactionStatus.class);
+        private final Map<TransactionStatus, List<Transaction>> entering = new EnumMap<>(TransactionStatus.class);
+        private final List<Integer> missing = new ArrayList<>();
+
+        void move(int id, TransactionStatus newStatus) {
+            Transaction transaction = database.get(id);
+
+            if(transaction == null) {
+                missing.add(id);
+                return;
+            }
+
+            if(transaction.getStatus() == newStatus) {
+                return;
+            }
+
+            leaving.computeIfAbsent(transaction.getStatus(), k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(transaction);
+            entering.computeIfAbsent(newStatus, k -> new ArrayList<>()).add(transaction);
+            TransactionStatus previousStatus = transaction.getStatus();
+
+            aggregates.changeStatus(parties.find(transaction.getFrom()), previousStatus, newStatus, transaction.getAmount());
+            transaction.setStatus(newStatus);
+            feed.statusChanged(transaction, previousStatus);
+        }
+
+        void apply() {
+            leaving.forEach((status, transactions) -> removeAll(getFilteredTransactionsByStatus(status), transactions));
+
+            entering.forEach((status, transactions) -> {
+                transactions.sort(order);
+                addSorted(getFilteredTransactionsByStatus(status), transactions);
+                transactions.forEach(versions::record);
+            });
+        }
     }
 
     public void removeTransactionById(int id) {
         ensureId(id, "Cannot remove transaction that does not exits");
 
-        database.remove(id);
+        Transaction transaction = database.remove(id);
+        transactionsByAmount.remove(transaction);
+        getFilteredTransactionsByStatus(transaction.getStatus()).remove(transaction);
+        removeFromIndex(transactionsBySender, parties.find(transaction.getFrom()), transaction);
+        removeFromIndex(transactionsByReceiver, parties.find(transaction.getTo()), transaction);
+        aggregates.remove(parties.find(transaction.getFrom()), parties.find(transaction.getTo()), transaction.getStatus(), transaction.getAmount());
+        versions.recordRemoval(id);
+        feed.removed(transaction);
     }
 
     public Transaction getById(int id) {
@@ -66,103 +393,233 @@ public class ChainblockImpl implements Chainblock {
         return database.get(id);
     }
 
-    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
-        List<Transaction> filteredTransactions = getFilteredTransactionsByStatus(status);
+    private NavigableSet<Transaction> getExistingTransactionsByStatus(TransactionStatus status, String messageFormat) {
+        NavigableSet<Transaction> filteredTransactions = getFilteredTransactionsByStatus(status);
 
-        if(filteredTransactions.size() == 0) {
-            throw new IllegalArgumentException("Transactions with status " + status + " are not present");
+        if(filteredTransactions.isEmpty()) {
+            throw new IllegalArgumentException(String.format(messageFormat, status));
         }
 
-        filteredTransactions.sort(AMOUNT_COMPARATOR);
-
         return filteredTransactions;
     }
 
-    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
-        List<Transaction> filteredTransactions = getFilteredTransactionsByStatus(status);
+    private NavigableSet<Transaction> getByTransactionStatusAndMaximumAmountView(TransactionStatus status, double amount) {
+        return getFilteredTransactionsByStatus(status).tailSet(amounts.key(amount, Integer.MIN_VALUE, RoundingMode.FLOOR), true);
+    }
 
-        if(filteredTransactions.size() == 0) {
-            throw new IllegalArgumentException("There are no senders with status " + status);
+    private NavigableSet<Transaction> getBySenderAndMinimumAmountView(String sender, double amount) {
+        return getFilteredTransactionsBySender(sender).headSet(amounts.key(amount, Integer.MIN_VALUE, RoundingMode.FLOOR), false);
+    }
+
+    private NavigableSet<Transaction> getByReceiverAndAmountRangeView(String receiver, double lo, double hi) {
+        NavigableSet<Transaction> transactions = getFilteredTransactionsByReceiver(receiver);
+
+        if(!(lo < hi)) {
+            return Collections.emptyNavigableSet();
         }
 
-        return filteredTransactions.stream()
-                .sorted(AMOUNT_COMPARATOR)
-                .map(Transaction::getFrom)
-                .collect(Collectors.toList());
+        return transactions.subSet(amounts.key(hi, Integer.MAX_VALUE, RoundingMode.CEILING), false, amounts.key(lo, Integer.MAX_VALUE, RoundingMode.CEILING), true);
     }
 
-    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
-        List<Transaction> filteredTransactions = getFilteredTransactionsByStatus(status);
-
-        if(filteredTransactions.size() == 0) {
-            throw new IllegalArgumentException("There are no receivers with status " + status);
+    private NavigableSet<Transaction> getAllInAmountRangeView(double lo, double hi) {
+        if(!(lo <= hi)) {
+            return Collections.emptyNavigableSet();
         }
 
-        return filteredTransactions.stream()
-                .sorted(AMOUNT_COMPARATOR)
-                .map(Transaction::getTo)
-                .collect(Collectors.toList());
+        return transactionsByAmount.subSet(amounts.key(hi, Integer.MIN_VALUE, RoundingMode.FLOOR), true, amounts.key(lo, Integer.MAX_VALUE, RoundingMode.CEILING), true);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return scans.visited(new ArrayList<>(getExistingTransactionsByStatus(status, "Transactions with status %s are not present")));
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return scans.visited(streamAllSendersWithTransactionStatus(status).collect(Collectors.toList()));
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return scans.visited(streamAllReceiversWithTransactionStatus(status).collect(Collectors.toList()));
     }
 
     public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
-        return database.values().stream()
-                .sorted(AMOUNT_COMPARATOR.thenComparingInt(Transaction::getId).reversed())
-                .collect(Collectors.toList());
+        return scans.visited(new ArrayList<>(transactionsByAmount.descendingSet()));
     }
 
     public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
-        ensureExistingTransactionsBySenderOrReceiver("Sender ", sender);
-
-        return database.values().stream()
-                .filter(t -> t.getFrom().equals(sender))
-                .sorted(AMOUNT_COMPARATOR)
-                .collect(Collectors.toList());
+        return scans.visited(new ArrayList<>(getFilteredTransactionsBySender(sender)));
     }
 
     public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
-        ensureExistingTransactionsBySenderOrReceiver("Receiver ", receiver);
-
-        return database.values().stream()
-                .filter(t -> t.getTo().equals(receiver))
-                .sorted(AMOUNT_COMPARATOR.thenComparingInt(Transaction::getId))
-                .collect(Collectors.toList());
+        return scans.visited(new ArrayList<>(getFilteredTransactionsByReceiver(receiver)));
     }
 
     public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
-        return getFilteredTransactionsByStatus(status).stream()
-                .filter(t -> t.getAmount() <= amount)
-                .sorted(AMOUNT_COMPARATOR)
-                .collect(Collectors.toList());
+        return scans.visited(new ArrayList<>(getByTransactionStatusAndMaximumAmountView(status, amount)));
     }
 
     public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
-        ensureExistingTransactionsBySenderOrReceiver("Sender ", sender);
-
-        return database.values().stream()
-                .filter(t -> t.getFrom().equals(sender))
-                .filter(t -> t.getAmount() > amount)
-                .sorted(AMOUNT_COMPARATOR)
-                .collect(Collectors.toList());
+        return scans.visited(new ArrayList<>(getBySenderAndMinimumAmountView(sender, amount)));
     }
 
     public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
-        ensureExistingTransactionsBySenderOrReceiver("Receiver ", receiver);
-
-        return database.values().stream()
-                .filter(t -> t.getTo().equals(receiver))
-                .filter(t -> t.getAmount() >= lo && t.getAmount() < hi)
-                .sorted(AMOUNT_COMPARATOR.thenComparingInt(Transaction::getId))
-                .collect(Collectors.toList());
+        return scans.visited(new ArrayList<>(getByReceiverAndAmountRangeView(receiver, lo, hi)));
     }
 
+    /**
+     * Returns the matches in the order they were added, like before the
+     * amount index existed: the index finds them, the store orders them, so
+     * the cost is O(log n + k log k) for k matches.
+     */
     public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
-        return database.values().stream()
-                .filter(t -> t.getAmount() >= lo && t.getAmount() <= hi)
-                .collect(Collectors.toList());
+        return scans.visited(database.inInsertionOrder(getAllInAmountRangeView(lo, hi)));
+    }
+
+    private List<Transaction> page(NavigableSet<Transaction> transactions, int offset, int limit) {
+        Chainblock.ensurePage(offset, limit);
+
+        Iterator<Transaction> iterator = transactions.iterator();
+        List<Transaction> page = new ArrayList<>();
+        int skipped = 0;
+
+        for (; skipped < offset && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+
+        scans.add(skipped);
+
+        return scans.visited(page);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(int offset, int limit) {
+        return page(transactionsByAmount, offset, limit);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenByIdAfter(double amount, int id, int limit) {
+        return page(transactionsByAmount.tailSet(amounts.cursor(amount, id), false), 0, limit);
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescending(String sender, int offset, int limit) {
+        return page(getFilteredTransactionsBySender(sender), offset, limit);
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescendingAfter(String sender, double amount, int id, int limit) {
+        return page(getFilteredTransactionsBySender(sender).tailSet(amounts.cursor(amount, id), false), 0, limit);
+    }
+
+    /**
+     * The indexes are ordered by amount, so their ends are all a stale
+     * aggregate needs to recompute its minimum and maximum.
+     */
+    static DoubleStream extremes(NavigableSet<Transaction> transactions) {
+        return DoubleStream.of(transactions.first().getAmount(), transactions.last().getAmount());
+    }
+
+    public Aggregate aggregateByTransactionStatus(TransactionStatus status) {
+        return aggregates.getByStatus(status, () -> extremes(getFilteredTransactionsByStatus(status)));
+    }
+
+    public Aggregate aggregateBySender(String sender) {
+        int code = parties.find(sender);
+
+        return aggregates.getBySender(code, () -> extremes(findInIndex(transactionsBySender, code)));
+    }
+
+    public Aggregate aggregateByReceiver(String receiver) {
+        int code = parties.find(receiver);
+
+        return aggregates.getByReceiver(code, () -> extremes(findInIndex(transactionsByReceiver, code)));
+    }
+
+    public Aggregate aggregateBySenderAndTransactionStatus(String sender, TransactionStatus status) {
+        int code = parties.find(sender);
+
+        return aggregates.getBySenderAndStatus(code, status, () -> findInIndex(transactionsBySender, code)
+                .stream()
+                .filter(t -> t.getStatus() == status)
+                .mapToDouble(Transaction::getAmount));
+    }
+
+    /*
+     * The streams below are lazy views over the live indexes: nothing is
+     * copied or sorted up front, so stopping early costs nothing. They must be
+     * consumed before the ledger is modified again. The amount range is
+     * wanted in insertion order, which no index keeps, so its stream walks
+     * the store and filters by amount instead: stopping early is still cheap,
+     * but reading it to the end visits every transaction.
+     */
+
+    public Stream<Transaction> streamByTransactionStatus(TransactionStatus status) {
+        return getExistingTransactionsByStatus(status, "Transactions with status %s are not present").stream();
+    }
+
+    public Stream<String> streamAllSendersWithTransactionStatus(TransactionStatus status) {
+        return getExistingTransactionsByStatus(status, "There are no senders with status %s").stream()
+                .map(Transaction::getFrom);
+    }
+
+    public Stream<String> streamAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return getExistingTransactionsByStatus(status, "There are no receivers with status %s").stream()
+                .map(Transaction::getTo);
+    }
+
+    public Stream<Transaction> streamAllOrderedByAmountDescendingThenById() {
+        return transactionsByAmount.descendingSet().stream();
+    }
+
+    public Stream<Transaction> streamBySenderOrderedByAmountDescending(String sender) {
+        return getFilteredTransactionsBySender(sender).stream();
+    }
+
+    public Stream<Transaction> streamByReceiverOrderedByAmountThenById(String receiver) {
+        return getFilteredTransactionsByReceiver(receiver).stream();
+    }
+
+    public Stream<Transaction> streamByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return getByTransactionStatusAndMaximumAmountView(status, amount).stream();
+    }
+
+    public Stream<Transaction> streamBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return getBySenderAndMinimumAmountView(sender, amount).stream();
+    }
+
+    public Stream<Transaction> streamByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return getByReceiverAndAmountRangeView(receiver, lo, hi).stream();
+    }
+
+    public Stream<Transaction> streamAllInAmountRange(double lo, double hi) {
+        if(!(lo <= hi)) {
+            return Stream.empty();
+        }
+
+        Transaction highest = amounts.key(hi, Integer.MIN_VALUE, RoundingMode.FLOOR);
+        Transaction lowest = amounts.key(lo, Integer.MAX_VALUE, RoundingMode.CEILING);
+
+        return StreamSupport.stream(database.spliterator(), false)
+                .filter(t -> order.compare(highest, t) <= 0 && order.compare(t, lowest) <= 0);
+    }
+
+    public ScanCounter scans() {
+        return scans;
+    }
+
+    public void reportScansTo(ScanCounter counter) {
+        this.scans = counter;
+    }
+
+    public Flow.Publisher<List<ChangeEvent>> changes() {
+        return feed;
+    }
+
+    public Chainblock snapshot() {
+        return versions.snapshot(database);
     }
 
     public Iterator<Transaction> iterator() {
-        return database.values().iterator();
+        return database.iterator();
     }
 
 }
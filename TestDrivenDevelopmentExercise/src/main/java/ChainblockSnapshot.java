@@ -0,0 +1,346 @@
+import status.TransactionStatus;
+
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable point-in-time view of a ledger, as returned by {@link Chainblock#snapshot()}.
+ *
+ * <p>Transactions are kept in persistent trees: one ordered by id, one by
+ * arrival in the ledger, one by amount descending, then id, and one each
+ * grouped by status, sender and receiver and ordered by amount descending,
+ * then id within a group. Every
+ * query is a tree search over the matching group or amount range, so results
+ * come out already ordered and can be streamed lazily. Every returned
+ * transaction is a fresh copy, and all mutating operations throw
+ * {@link UnsupportedOperationException}.
+ *
+ * <p>The bounds of amount queries, page cursors and {@link #contains(Transaction)}
+ * are rounded with the {@link TransactionOrder.Amounts} of the ledger, so a
+ * snapshot of a ledger in minor units answers like the ledger does.
+ */
+public class ChainblockSnapshot implements Chainblock {
+
+    static final Comparator<Transaction> STATUS_COMPARATOR =
+            Comparator.comparing(Transaction::getStatus).thenComparing(TransactionOrder.AMOUNT_THEN_ID);
+    static final Comparator<Transaction> SENDER_COMPARATOR =
+            Comparator.comparing(Transaction::getFrom).thenComparing(TransactionOrder.AMOUNT_THEN_ID);
+    static final Comparator<Transaction> RECEIVER_COMPARATOR =
+            Comparator.comparing(Transaction::getTo).thenComparing(TransactionOrder.AMOUNT_THEN_ID);
+
+    private final PersistentTree<Transaction> byId;
+    private final PersistentTree<Transaction> byArrival;
+    private final PersistentTree<Transaction> byAmount;
+    private final PersistentTree<Transaction> byStatus;
+    private final PersistentTree<Transaction> bySender;
+    private final PersistentTree<Transaction> byReceiver;
+    private final TransactionOrder.Amounts amounts;
+
+    private ChainblockSnapshot(PersistentTree<Transaction> byId, PersistentTree<Transaction> byArrival,
+                               PersistentTree<Transaction> byAmount, PersistentTree<Transaction> byStatus,
+                               PersistentTree<Transaction> bySender, PersistentTree<Transaction> byReceiver,
+                               TransactionOrder.Amounts amounts) {
+        this.byId = byId;
+        this.byArrival = byArrival;
+        this.byAmount = byAmount;
+        this.byStatus = byStatus;
+        this.bySender = bySender;
+        this.byReceiver = byReceiver;
+        this.amounts = amounts;
+    }
+
+    static ChainblockSnapshot of(List<Transaction> transactions, TransactionOrder.Amounts amounts) {
+        return new ChainblockSnapshot(
+                sortedTree(LedgerVersions.ID_COMPARATOR, transactions),
+                sortedTree(LedgerVersions.ARRIVAL_COMPARATOR, transactions),
+                sortedTree(TransactionOrder.AMOUNT_THEN_ID, transactions),
+                sortedTree(STATUS_COMPARATOR, transactions),
+                sortedTree(SENDER_COMPARATOR, transactions),
+                sortedTree(RECEIVER_COMPARATOR, transactions),
+                amounts);
+    }
+
+    private static PersistentTree<Transaction> sortedTree(Comparator<Transaction> comparator, List<Transaction> transactions) {
+        List<Transaction> sorted = new ArrayList<>(transactions);
+        sorted.sort(comparator);
+
+        return PersistentTree.ofSorted(comparator, sorted);
+    }
+
+    ChainblockSnapshot with(Transaction transaction) {
+        return new ChainblockSnapshot(byId.insert(transaction), byArrival.insert(transaction), byAmount.insert(transaction),
+                byStatus.insert(transaction), bySender.insert(transaction), byReceiver.insert(transaction), amounts);
+    }
+
+    ChainblockSnapshot without(Transaction transaction) {
+        return new ChainblockSnapshot(byId.remove(transaction), byArrival.remove(transaction), byAmount.remove(transaction),
+                byStatus.remove(transaction), bySender.remove(transaction), byReceiver.remove(transaction), amounts);
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Snapshots are read-only");
+    }
+
+    Transaction find(int id) {
+        return byId.find(TransactionOrder.probe(0, id));
+    }
+
+    /**
+     * @return the amount of the ledger's key for the bound, for comparing
+     * with the amounts in the trees
+     */
+    private double bound(double amount, RoundingMode rounding) {
+        return amounts.key(amount, 0, rounding).getAmount();
+    }
+
+    private static Stream<Transaction> stream(Iterator<Transaction> transactions) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(transactions, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Iterates over one group of a grouped tree, from the largest amount down.
+     * {@code NaN} sorts before every other amount, so it bounds the group from above.
+     */
+    private static Iterator<Transaction> group(PersistentTree<Transaction> tree, TransactionStatus status, String from, String to) {
+        return tree.range(new TransactionImpl(Integer.MIN_VALUE, status, from, to, Double.NaN), true,
+                new TransactionImpl(Integer.MAX_VALUE, status, from, to, Double.NEGATIVE_INFINITY), true);
+    }
+
+    private static Stream<Transaction> nonEmpty(Iterator<Transaction> matches, String message) {
+        if(!matches.hasNext()) {
+            throw new IllegalArgumentException(message);
+        }
+
+        return stream(matches);
+    }
+
+    private Stream<Transaction> getFilteredTransactionsByStatus(TransactionStatus status, String messageFormat) {
+        return nonEmpty(group(byStatus, status, null, null), String.format(messageFormat, status));
+    }
+
+    private Stream<Transaction> getFilteredTransactionsBySender(String sender) {
+        return nonEmpty(group(bySender, null, sender, null), "Sender " + sender + " cannot be found in the database");
+    }
+
+    private Stream<Transaction> getFilteredTransactionsByReceiver(String receiver) {
+        return nonEmpty(group(byReceiver, null, null, receiver), "Receiver " + receiver + " cannot be found in the database");
+    }
+
+    public int getCount() {
+        return byId.size();
+    }
+
+    public void add(Transaction transaction) {
+        throw readOnly();
+    }
+
+    public boolean contains(Transaction transaction) {
+        Transaction stored = find(transaction.getId());
+
+        return stored != null && stored.equals(amounts.toComparable(transaction));
+    }
+
+    public boolean contains(int id) {
+        return find(id) != null;
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        throw readOnly();
+    }
+
+    public void removeTransactionById(int id) {
+        throw readOnly();
+    }
+
+    public Transaction getById(int id) {
+        Transaction transaction = find(id);
+
+        if(transaction == null) {
+            throw new IllegalArgumentException("Cannot find transaction that does not exits");
+        }
+
+        return LedgerVersions.freeze(transaction);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return streamByTransactionStatus(status).collect(Collectors.toList());
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return streamAllSendersWithTransactionStatus(status).collect(Collectors.toList());
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return streamAllReceiversWithTransactionStatus(status).collect(Collectors.toList());
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return streamAllOrderedByAmountDescendingThenById().collect(Collectors.toList());
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return streamBySenderOrderedByAmountDescending(sender).collect(Collectors.toList());
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return streamByReceiverOrderedByAmountThenById(receiver).collect(Collectors.toList());
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return streamByTransactionStatusAndMaximumAmount(status, amount).collect(Collectors.toList());
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return streamBySenderAndMinimumAmountDescending(sender, amount).collect(Collectors.toList());
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return streamByReceiverAndAmountRange(receiver, lo, hi).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the matches in the order they were added to the ledger.
+     */
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return streamAllInAmountRange(lo, hi).collect(Collectors.toList());
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(int offset, int limit) {
+        Chainblock.ensurePage(offset, limit);
+
+        return stream(byAmount.iterator())
+                .skip(offset)
+                .limit(limit)
+                .map(LedgerVersions::freeze)
+                .collect(Collectors.toList());
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenByIdAfter(double amount, int id, int limit) {
+        Chainblock.ensurePage(0, limit);
+
+        return stream(byAmount.range(amounts.cursor(amount, id), false, null, true))
+                .limit(limit)
+                .map(LedgerVersions::freeze)
+                .collect(Collectors.toList());
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescending(String sender, int offset, int limit) {
+        Chainblock.ensurePage(offset, limit);
+
+        return getFilteredTransactionsBySender(sender)
+                .skip(offset)
+                .limit(limit)
+                .map(LedgerVersions::freeze)
+                .collect(Collectors.toList());
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescendingAfter(String sender, double amount, int id, int limit) {
+        Chainblock.ensurePage(0, limit);
+
+        Transaction cursor = amounts.cursor(amount, id);
+
+        return getFilteredTransactionsBySender(sender)
+                .dropWhile(t -> TransactionOrder.AMOUNT_THEN_ID.compare(t, cursor) <= 0)
+                .limit(limit)
+                .map(LedgerVersions::freeze)
+                .collect(Collectors.toList());
+    }
+
+    /*
+     * A snapshot never changes, so its streams stay valid for as long as the
+     * caller keeps them, regardless of what happens to the live ledger.
+     */
+
+    public Stream<Transaction> streamByTransactionStatus(TransactionStatus status) {
+        return getFilteredTransactionsByStatus(status, "Transactions with status %s are not present")
+                .map(LedgerVersions::freeze);
+    }
+
+    public Stream<String> streamAllSendersWithTransactionStatus(TransactionStatus status) {
+        return getFilteredTransactionsByStatus(status, "There are no senders with status %s")
+                .map(Transaction::getFrom);
+    }
+
+    public Stream<String> streamAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return getFilteredTransactionsByStatus(status, "There are no receivers with status %s")
+                .map(Transaction::getTo);
+    }
+
+    public Stream<Transaction> streamAllOrderedByAmountDescendingThenById() {
+        return stream(byAmount.descendingIterator())
+                .map(LedgerVersions::freeze);
+    }
+
+    public Stream<Transaction> streamBySenderOrderedByAmountDescending(String sender) {
+        return getFilteredTransactionsBySender(sender)
+                .map(LedgerVersions::freeze);
+    }
+
+    public Stream<Transaction> streamByReceiverOrderedByAmountThenById(String receiver) {
+        return getFilteredTransactionsByReceiver(receiver)
+                .map(LedgerVersions::freeze);
+    }
+
+    public Stream<Transaction> streamByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return stream(byStatus.range(new TransactionImpl(Integer.MIN_VALUE, status, null, null, bound(amount, RoundingMode.FLOOR)), true,
+                new TransactionImpl(Integer.MAX_VALUE, status, null, null, Double.NEGATIVE_INFINITY), true))
+                .map(LedgerVersions::freeze);
+    }
+
+    public Stream<Transaction> streamBySenderAndMinimumAmountDescending(String sender, double amount) {
+        double lowest = bound(amount, RoundingMode.FLOOR);
+
+        return getFilteredTransactionsBySender(sender)
+                .takeWhile(t -> t.getAmount() > lowest)
+                .map(LedgerVersions::freeze);
+    }
+
+    public Stream<Transaction> streamByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        double lowest = bound(lo, RoundingMode.CEILING);
+        double highest = bound(hi, RoundingMode.CEILING);
+
+        return getFilteredTransactionsByReceiver(receiver)
+                .dropWhile(t -> !(t.getAmount() < highest))
+                .takeWhile(t -> t.getAmount() >= lowest)
+                .map(LedgerVersions::freeze);
+    }
+
+    public Stream<Transaction> streamAllInAmountRange(double lo, double hi) {
+        if(!(lo <= hi)) {
+            return Stream.empty();
+        }
+
+        return stream(byAmount.range(amounts.key(hi, Integer.MIN_VALUE, RoundingMode.FLOOR), true,
+                amounts.key(lo, Integer.MAX_VALUE, RoundingMode.CEILING), true))
+                .sorted(LedgerVersions.ARRIVAL_COMPARATOR)
+                .map(LedgerVersions::freeze);
+    }
+
+    public Chainblock snapshot() {
+        return this;
+    }
+
+    /**
+     * Iterates in the order the transactions arrived in the ledger, like the
+     * ledger itself.
+     */
+    public Iterator<Transaction> iterator() {
+        Iterator<Transaction> transactions = byArrival.iterator();
+
+        return new Iterator<Transaction>() {
+            @Override
+            public boolean hasNext() {
+                return transactions.hasNext();
+            }
+
+            @Override
+            public Transaction next() {
+                return LedgerVersions.freeze(transactions.next());
+            }
+        };
+    }
+
+}
@@ -0,0 +1,56 @@
+import status.TransactionStatus;
+
+/**
+ * One mutation of a ledger, as delivered by {@link Chainblock#changes()}.
+ * The transaction is a detached copy of its state right after the mutation;
+ * for a removal it is the state the transaction was removed in.
+ */
+public final class ChangeEvent {
+
+    public enum Type {
+        ADDED,
+        STATUS_CHANGED,
+        REMOVED,
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Transaction transaction;
+    private final TransactionStatus previousStatus;
+
+    ChangeEvent(long sequence, Type type, Transaction transaction, TransactionStatus previousStatus) {
+        this.sequence = sequence;
+        this.type = type;
+        this.transaction = transaction;
+        this.previousStatus = previousStatus;
+    }
+
+    /**
+     * @return the position of the event in the ledger's change history,
+     * starting from 1 and counting the mutations made while nobody was subscribed
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * @return the status before a {@link Type#STATUS_CHANGED} event, otherwise {@code null}
+     */
+    public TransactionStatus getPreviousStatus() {
+        return previousStatus;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%d %s %s", sequence, type.name(), transaction);
+    }
+
+}
@@ -0,0 +1,214 @@
+import status.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the mutations of a ledger to {@link Flow.Subscriber}s in batches
+ * of {@link ChangeEvent}s. Every subscriber has its own bounded buffer and is
+ * served on the executor, honouring its demand: one requested item is one
+ * batch of up to {@code maxBatch} events.
+ *
+ * <p>Publishing never blocks the writer. It only enqueues the event and, if
+ * the subscriber is idle, schedules a delivery. A subscriber whose buffer
+ * overflows because it does not request fast enough is dropped and receives
+ * {@link Flow.Subscriber#onError} with an {@link IllegalStateException}.
+ * Every mutation takes the next sequence number, whether or not anyone is
+ * subscribed, so the numbers count the ledger's whole history. When nobody
+ * subscribes, publishing costs that increment and a single check.
+ */
+class ChangeFeed implements Flow.Publisher<List<ChangeEvent>> {
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+    static final int DEFAULT_MAX_BATCH = 256;
+
+    private final Executor executor;
+    private final int bufferSize;
+    private final int maxBatch;
+    private final List<FeedSubscription> subscriptions;
+    private final AtomicLong sequence;
+
+    ChangeFeed() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BUFFER_SIZE, DEFAULT_MAX_BATCH);
+    }
+
+    ChangeFeed(Executor executor, int bufferSize, int maxBatch) {
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.maxBatch = maxBatch;
+        this.subscriptions = new CopyOnWriteArrayList<>();
+        this.sequence = new AtomicLong();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<ChangeEvent>> subscriber) {
+        FeedSubscription subscription = new FeedSubscription(Objects.requireNonNull(subscriber));
+        subscriptions.add(subscription);
+        subscription.schedule();
+    }
+
+    /**
+     * @return whether anyone is subscribed. An owner that has to build the
+     * transaction it publishes can ask first and call {@link #skip} instead
+     * when nobody is listening.
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Takes the next sequence numbers for mutations that are not published.
+     */
+    public void skip(int mutations) {
+        sequence.addAndGet(mutations);
+    }
+
+    public void added(Transaction transaction) {
+        publish(ChangeEvent.Type.ADDED, transaction, null);
+    }
+
+    public void statusChanged(Transaction transaction, TransactionStatus previousStatus) {
+        publish(ChangeEvent.Type.STATUS_CHANGED, transaction, previousStatus);
+    }
+
+    public void removed(Transaction transaction) {
+        publish(ChangeEvent.Type.REMOVED, transaction, null);
+    }
+
+    private void publish(ChangeEvent.Type type, Transaction transaction, TransactionStatus previousStatus) {
+        long position = sequence.incrementAndGet();
+
+        if(subscriptions.isEmpty()) {
+            return;
+        }
+
+        ChangeEvent event = new ChangeEvent(position, type, LedgerVersions.freeze(transaction), previousStatus);
+
+        for (FeedSubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    private final class FeedSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super List<ChangeEvent>> subscriber;
+        private final Queue<ChangeEvent> buffer;
+        private final AtomicInteger buffered;
+        private final AtomicLong requested;
+        private final AtomicInteger pendingDrains;
+        private volatile Throwable failure;
+        private volatile boolean cancelled;
+        private boolean started;
+
+        FeedSubscription(Flow.Subscriber<? super List<ChangeEvent>> subscriber) {
+            this.subscriber = subscriber;
+            this.buffer = new ConcurrentLinkedQueue<>();
+            this.buffered = new AtomicInteger();
+            this.requested = new AtomicLong();
+            this.pendingDrains = new AtomicInteger();
+        }
+
+        void offer(ChangeEvent event) {
+            if(cancelled || failure != null) {
+                return;
+            }
+
+            if(buffered.incrementAndGet() > bufferSize) {
+                failure = new IllegalStateException("Subscriber fell more than " + bufferSize + " changes behind");
+            } else {
+                buffer.add(event);
+            }
+
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if(n <= 0) {
+                failure = new IllegalArgumentException("Requested " + n + " batches, must be positive");
+            } else {
+                requested.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void schedule() {
+            if(pendingDrains.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Runs on the executor, never concurrently with itself, so the
+         * subscriber is signalled serially as the specification requires.
+         */
+        private void drain() {
+            int missed = 1;
+
+            do {
+                if(!started) {
+                    started = true;
+                    subscriber.onSubscribe(this);
+                }
+
+                deliver();
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            while (!cancelled) {
+                if(failure != null) {
+                    cancel();
+                    buffer.clear();
+                    subscriber.onError(failure);
+                    return;
+                }
+
+                if(requested.get() == 0 || buffer.isEmpty()) {
+                    return;
+                }
+
+                List<ChangeEvent> batch = new ArrayList<>(Math.min(maxBatch, buffered.get()));
+                ChangeEvent event;
+
+                while (batch.size() < maxBatch && (event = buffer.poll()) != null) {
+                    batch.add(event);
+                }
+
+                buffered.addAndGet(-batch.size());
+
+                if(requested.get() != Long.MAX_VALUE) {
+                    requested.decrementAndGet();
+                }
+
+                try {
+                    subscriber.onNext(Collections.unmodifiableList(batch));
+                } catch (RuntimeException e) {
+                    cancel();
+                    return;
+                }
+            }
+
+            buffer.clear();
+        }
+    }
+
+}
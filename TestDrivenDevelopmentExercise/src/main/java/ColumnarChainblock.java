@@ -0,0 +1,605 @@
+import status.TransactionStatus;
+
+import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.stream.DoubleStream;
+
+/**
+ * {@link Chainblock} that keeps the ledger as columns of primitives instead of
+ * transaction objects: ids, amounts, status ordinals and dictionary codes of
+ * the sender and the receiver each live in their own array. Every query is a
+ * scan over those arrays, and a {@link TransactionImpl} is only created for
+ * the rows that end up in a result.
+ *
+ * <p>Given a {@link ForkJoinPool}, scans over at least a threshold of rows
+ * are split into ranges that are scanned and sorted in parallel, then
+ * merged in amount-descending, then id order. Smaller ledgers are scanned
+ * on the calling thread either way.
+ *
+ * <p>The transactions handed to {@link #add} are not retained. Returned
+ * transactions are detached copies, so status changes must go through
+ * {@link #changeTransactionStatus}.
+ */
+public class ColumnarChainblock implements Chainblock, ScanReporting {
+
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final byte REMOVED = -1;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private ForkJoinPool pool;
+    private int parallelThreshold;
+    private PartyDictionary parties;
+    private LedgerVersions versions;
+    private ChangeFeed feed;
+    private volatile ScanCounter scans;
+    private LedgerAggregates aggregates;
+    private int[] sentCounts;
+    private int[] receivedCounts;
+
+    private IdSlots slots;
+    private int[] ids;
+    private double[] amounts;
+    private byte[] statuses;
+    private int[] senders;
+    private int[] receivers;
+    private int count;
+    private int end;
+    private int modCount;
+
+    public ColumnarChainblock() {
+        this(null, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public ColumnarChainblock(ForkJoinPool pool) {
+        this(pool, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param pool              the pool that large scans run on, or {@code null} to scan on the calling thread
+     * @param parallelThreshold the fewest rows that are scanned in parallel
+     */
+    public ColumnarChainblock(ForkJoinPool pool, int parallelThreshold) {
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+        this.parties = new PartyDictionary();
+        this.versions = new LedgerVersions();
+        this.feed = new ChangeFeed();
+        this.scans = ScanCounter.NONE;
+        this.aggregates = new LedgerAggregates();
+        this.sentCounts = new int[MIN_CAPACITY];
+        this.receivedCounts = new int[MIN_CAPACITY];
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        this.slots = new IdSlots(capacity);
+        this.ids = new int[capacity];
+        this.amounts = new double[capacity];
+        this.statuses = new byte[capacity];
+        this.senders = new int[capacity];
+        this.receivers = new int[capacity];
+    }
+
+    /**
+     * Makes room at the end of the columns. Removed rows are squeezed out
+     * first, and the columns only double when at least half of them is live.
+     */
+    private void resize() {
+        relocate(count >= end / 2 ? ids.length << 1 : ids.length);
+    }
+
+    private void relocate(int capacity) {
+        int[] oldIds = ids;
+        double[] oldAmounts = amounts;
+        byte[] oldStatuses = statuses;
+        int[] oldSenders = senders;
+        int[] oldReceivers = receivers;
+        int oldEnd = end;
+
+        allocate(capacity);
+        end = 0;
+
+        for (int row = 0; row < oldEnd; row++) {
+            if(oldStatuses[row] != REMOVED) {
+                ids[end] = oldIds[row];
+                amounts[end] = oldAmounts[row];
+                statuses[end] = oldStatuses[row];
+                senders[end] = oldSenders[row];
+                receivers[end] = oldReceivers[row];
+                slots.set(slots.slotOf(oldIds[row], ids), end++);
+            }
+        }
+    }
+
+    private int encodeParty(String name) {
+        int code = parties.encode(name);
+
+        if(code == sentCounts.length) {
+            sentCounts = Arrays.copyOf(sentCounts, code << 1);
+            receivedCounts = Arrays.copyOf(receivedCounts, code << 1);
+        }
+
+        return code;
+    }
+
+    private int ensureRow(int id, String message) {
+        int row = slots.positionOf(id, ids);
+
+        if(row == IdSlots.EMPTY) {
+            throw new IllegalArgumentException(message);
+        }
+
+        return row;
+    }
+
+    private int ensureSender(String sender) {
+        int code = parties.find(sender);
+
+        if(code == PartyDictionary.UNKNOWN || sentCounts[code] == 0) {
+            throw new IllegalArgumentException("Sender " + sender + " cannot be found in the database");
+        }
+
+        return code;
+    }
+
+    private int ensureReceiver(String receiver) {
+        int code = parties.find(receiver);
+
+        if(code == PartyDictionary.UNKNOWN || receivedCounts[code] == 0) {
+            throw new IllegalArgumentException("Receiver " + receiver + " cannot be found in the database");
+        }
+
+        return code;
+    }
+
+    private Transaction view(int row) {
+        return new TransactionImpl(ids[row], STATUSES[statuses[row]], parties.decode(senders[row]), parties.decode(receivers[row]), amounts[row]);
+    }
+
+    private IntPredicate live(IntPredicate filter) {
+        return row -> statuses[row] != REMOVED && filter.test(row);
+    }
+
+    /**
+     * @return the live rows accepted by the filter, in storage order, which is insertion order
+     */
+    private int[] scan(IntPredicate filter) {
+        scans.add(end);
+
+        return RowScan.sorted(end, live(filter), RowScan.STORAGE_ORDER, Integer.MAX_VALUE, pool, parallelThreshold);
+    }
+
+    /**
+     * @return the first {@code limit} live rows accepted by the filter, in amount-descending, then id order
+     */
+    private int[] sortedRows(IntPredicate filter, int limit) {
+        scans.add(end);
+
+        return RowScan.sorted(end, live(filter), this::compareRows, limit, pool, parallelThreshold);
+    }
+
+    private int[] sortedRows(IntPredicate filter) {
+        return sortedRows(filter, Integer.MAX_VALUE);
+    }
+
+    private boolean isParallel() {
+        return pool != null && end >= parallelThreshold;
+    }
+
+    private int compareRows(int first, int second) {
+        int result = Double.compare(amounts[second], amounts[first]);
+
+        return result != 0 ? result : Integer.compare(ids[first], ids[second]);
+    }
+
+    /**
+     * Sorts rows by amount descending, then id, without boxing them.
+     */
+    private void sortRows(int[] rows) {
+        RowScan.sort(rows, this::compareRows);
+    }
+
+    /**
+     * Picks the first {@code limit} accepted rows in amount-descending, then id
+     * order. Only that many rows are kept, in a max-heap whose root is the row
+     * that would be dropped next, so nothing beyond them is ever sorted.
+     */
+    private int[] topRows(IntPredicate filter, int limit) {
+        int[] heap = new int[Math.min(limit, count)];
+        int size = 0;
+
+        for (int row = 0; row < end; row++) {
+            if(statuses[row] == REMOVED || !filter.test(row)) {
+                continue;
+            }
+
+            if(size < heap.length) {
+                heap[size] = row;
+                siftUp(heap, size++);
+            } else if(size > 0 && compareRows(row, heap[0]) < 0) {
+                heap[0] = row;
+                siftDown(heap, size);
+            }
+        }
+
+        scans.add(end);
+
+        int[] rows = Arrays.copyOf(heap, size);
+        sortRows(rows);
+
+        return rows;
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+
+            if(compareRows(heap[index], heap[parent]) <= 0) {
+                return;
+            }
+
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+
+        while (true) {
+            int child = 2 * index + 1;
+
+            if(child >= size) {
+                return;
+            }
+
+            if(child + 1 < size && compareRows(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+
+            if(compareRows(heap[child], heap[index]) <= 0) {
+                return;
+            }
+
+            swap(heap, index, child);
+            index = child;
+        }
+    }
+
+    private static void swap(int[] rows, int first, int second) {
+        int row = rows[first];
+        rows[first] = rows[second];
+        rows[second] = row;
+    }
+
+    private boolean isAfter(int row, double amount, int id) {
+        int result = Double.compare(amount, amounts[row]);
+
+        return result > 0 || (result == 0 && ids[row] > id);
+    }
+
+    private List<Transaction> page(IntPredicate filter, int offset, int limit) {
+        Chainblock.ensurePage(offset, limit);
+
+        int top = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        int[] rows = isParallel() ? sortedRows(filter, top) : topRows(filter, top);
+        List<Transaction> transactions = new ArrayList<>(Math.max(0, rows.length - offset));
+
+        for (int i = offset; i < rows.length; i++) {
+            transactions.add(view(rows[i]));
+        }
+
+        return transactions;
+    }
+
+    private List<Transaction> views(int[] rows) {
+        List<Transaction> transactions = new ArrayList<>(rows.length);
+
+        for (int row : rows) {
+            transactions.add(view(row));
+        }
+
+        return transactions;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void add(Transaction transaction) {
+        int id = transaction.getId();
+
+        if(slots.positionOf(id, ids) != IdSlots.EMPTY) {
+            return;
+        }
+
+        if(end == ids.length) {
+            resize();
+        }
+
+        int sender = encodeParty(transaction.getFrom());
+        int receiver = encodeParty(transaction.getTo());
+
+        ids[end] = id;
+        amounts[end] = transaction.getAmount();
+        statuses[end] = (byte) transaction.getStatus().ordinal();
+        senders[end] = sender;
+        receivers[end] = receiver;
+        slots.set(slots.slotOf(id, ids), end++);
+
+        sentCounts[sender]++;
+        receivedCounts[receiver]++;
+        aggregates.add(sender, receiver, transaction.getStatus(), transaction.getAmount());
+        count++;
+        modCount++;
+
+        versions.record(transaction);
+        feed.added(transaction);
+    }
+
+    /**
+     * Sizes the columns once for the whole batch before adding it.
+     */
+    public int addAll(Collection<? extends Transaction> transactions) {
+        int expectedSize = count + transactions.size();
+
+        if(end + transactions.size() > ids.length) {
+            relocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize - 1)) << 1));
+        }
+
+        int before = count;
+        transactions.forEach(this::add);
+
+        return count - before;
+    }
+
+    public boolean contains(Transaction transaction) {
+        int row = slots.positionOf(transaction.getId(), ids);
+
+        return row != IdSlots.EMPTY && transaction.equals(view(row));
+    }
+
+    public boolean contains(int id) {
+        return slots.positionOf(id, ids) != IdSlots.EMPTY;
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        int row = ensureRow(id, "Cannot change status of non-existing transaction");
+
+        TransactionStatus previousStatus = STATUSES[statuses[row]];
+
+        aggregates.changeStatus(senders[row], previousStatus, newStatus, amounts[row]);
+        statuses[row] = (byte) newStatus.ordinal();
+
+        if(versions.isRecording() || feed.hasSubscribers()) {
+            Transaction transaction = view(row);
+            versions.record(transaction);
+            feed.statusChanged(transaction, previousStatus);
+        } else {
+            feed.skip(1);
+        }
+    }
+
+    public void removeTransactionById(int id) {
+        int slot = slots.slotOf(id, ids);
+        int row = slots.get(slot);
+
+        if(row == IdSlots.EMPTY) {
+            throw new IllegalArgumentException("Cannot remove transaction that does not exits");
+        }
+
+        Transaction removed = feed.hasSubscribers() ? view(row) : null;
+
+        aggregates.remove(senders[row], receivers[row], STATUSES[statuses[row]], amounts[row]);
+        statuses[row] = REMOVED;
+        sentCounts[senders[row]]--;
+        receivedCounts[receivers[row]]--;
+        slots.delete(slot, ids);
+        count--;
+        modCount++;
+
+        versions.recordRemoval(id);
+
+        if(removed != null) {
+            feed.removed(removed);
+        } else {
+            feed.skip(1);
+        }
+    }
+
+    public Transaction getById(int id) {
+        return view(ensureRow(id, "Cannot find transaction that does not exits"));
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        byte ordinal = (byte) status.ordinal();
+        int[] rows = sortedRows(row -> statuses[row] == ordinal);
+
+        if(rows.length == 0) {
+            throw new IllegalArgumentException("Transactions with status " + status + " are not present");
+        }
+
+        return views(rows);
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        byte ordinal = (byte) status.ordinal();
+        int[] rows = sortedRows(row -> statuses[row] == ordinal);
+
+        if(rows.length == 0) {
+            throw new IllegalArgumentException("There are no senders with status " + status);
+        }
+
+        List<String> senderNames = new ArrayList<>(rows.length);
+
+        for (int row : rows) {
+            senderNames.add(parties.decode(senders[row]));
+        }
+
+        return senderNames;
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        byte ordinal = (byte) status.ordinal();
+        int[] rows = sortedRows(row -> statuses[row] == ordinal);
+
+        if(rows.length == 0) {
+            throw new IllegalArgumentException("There are no receivers with status " + status);
+        }
+
+        List<String> receiverNames = new ArrayList<>(rows.length);
+
+        for (int row : rows) {
+            receiverNames.add(parties.decode(receivers[row]));
+        }
+
+        return receiverNames;
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        List<Transaction> transactions = views(sortedRows(row -> true));
+        Collections.reverse(transactions);
+
+        return transactions;
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        int code = ensureSender(sender);
+
+        return views(sortedRows(row -> senders[row] == code));
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        int code = ensureReceiver(receiver);
+
+        return views(sortedRows(row -> receivers[row] == code));
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        byte ordinal = (byte) status.ordinal();
+
+        return views(sortedRows(row -> statuses[row] == ordinal && amounts[row] <= amount));
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        int code = ensureSender(sender);
+
+        return views(sortedRows(row -> senders[row] == code && amounts[row] > amount));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        int code = ensureReceiver(receiver);
+
+        return views(sortedRows(row -> receivers[row] == code && amounts[row] >= lo && amounts[row] < hi));
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return views(scan(row -> amounts[row] >= lo && amounts[row] <= hi));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(int offset, int limit) {
+        return page(row -> true, offset, limit);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenByIdAfter(double amount, int id, int limit) {
+        return page(row -> isAfter(row, amount, id), 0, limit);
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescending(String sender, int offset, int limit) {
+        int code = ensureSender(sender);
+
+        return page(row -> senders[row] == code, offset, limit);
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescendingAfter(String sender, double amount, int id, int limit) {
+        int code = ensureSender(sender);
+
+        return page(row -> senders[row] == code && isAfter(row, amount, id), 0, limit);
+    }
+
+    private DoubleStream amountsOf(IntPredicate filter) {
+        return Arrays.stream(scan(filter)).mapToDouble(row -> amounts[row]);
+    }
+
+    public Aggregate aggregateByTransactionStatus(TransactionStatus status) {
+        byte ordinal = (byte) status.ordinal();
+
+        return aggregates.getByStatus(status, () -> amountsOf(row -> statuses[row] == ordinal));
+    }
+
+    public Aggregate aggregateBySender(String sender) {
+        int code = parties.find(sender);
+
+        return aggregates.getBySender(code, () -> amountsOf(row -> senders[row] == code));
+    }
+
+    public Aggregate aggregateByReceiver(String receiver) {
+        int code = parties.find(receiver);
+
+        return aggregates.getByReceiver(code, () -> amountsOf(row -> receivers[row] == code));
+    }
+
+    public Aggregate aggregateBySenderAndTransactionStatus(String sender, TransactionStatus status) {
+        int code = parties.find(sender);
+        byte ordinal = (byte) status.ordinal();
+
+        return aggregates.getBySenderAndStatus(code, status, () -> amountsOf(row -> senders[row] == code && statuses[row] == ordinal));
+    }
+
+    public ScanCounter scans() {
+        return scans;
+    }
+
+    public void reportScansTo(ScanCounter counter) {
+        this.scans = counter;
+    }
+
+    public Flow.Publisher<List<ChangeEvent>> changes() {
+        return feed;
+    }
+
+    public Chainblock snapshot() {
+        return versions.snapshot(this);
+    }
+
+    public Iterator<Transaction> iterator() {
+        return new Iterator<Transaction>() {
+            private final int expectedModCount = modCount;
+            private int row = skipRemoved(0);
+
+            private int skipRemoved(int from) {
+                while (from < end && statuses[from] == REMOVED) {
+                    from++;
+                }
+
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return row < end;
+            }
+
+            @Override
+            public Transaction next() {
+                if(modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+
+                if(row >= end) {
+                    throw new NoSuchElementException();
+                }
+
+                Transaction transaction = view(row);
+                row = skipRemoved(row + 1);
+
+                return transaction;
+            }
+        };
+    }
+
+}
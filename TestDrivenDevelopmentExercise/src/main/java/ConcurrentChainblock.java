@@ -0,0 +1,397 @@
+import status.TransactionStatus;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Thread-safe {@link Chainblock} with the same indexes and running aggregates
+ * as {@link ChainblockImpl}, built on concurrent collections.
+ *
+ * <p>Writers lock only the stripe their id hashes to, so writes to different
+ * ids run in parallel. {@link #getById}, {@link #contains} and {@link #getCount}
+ * take no lock at all. Queries that read the indexes wait until no write is
+ * half applied and keep writers out while they copy their result, so every
+ * result reflects one consistent state of the ledger. Queries do not wait
+ * for each other.
+ */
+public class ConcurrentChainblock implements Chainblock, ScanReporting {
+
+    private static final int MIN_STRIPES = 16;
+
+    private final ConcurrentMap<Integer, Transaction> database;
+    private final NavigableSet<Transaction> transactionsByAmount;
+    private final Map<TransactionStatus, NavigableSet<Transaction>> transactionsByStatus;
+    private final ConcurrentMap<String, NavigableSet<Transaction>> transactionsBySender;
+    private final ConcurrentMap<String, NavigableSet<Transaction>> transactionsByReceiver;
+    private final ConcurrentMap<Integer, Long> arrivals;
+    private final AtomicLong arrivalClock;
+    private final ConcurrentLedgerAggregates aggregates;
+    private final LedgerVersions versions;
+    private volatile ScanCounter scans;
+    private final ChangeFeed feed;
+
+    private final Lock[] stripes;
+
+    /**
+     * Shared by writers while they update the indexes and by queries while
+     * they read them, but never by both at once.
+     */
+    private final SharedModeLock indexLock;
+
+    public ConcurrentChainblock() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public ConcurrentChainblock(int concurrencyLevel) {
+        this.database = new ConcurrentHashMap<>();
+        this.transactionsByAmount = new ConcurrentSkipListSet<>(TransactionOrder.AMOUNT_THEN_ID);
+        this.transactionsByStatus = new EnumMap<>(TransactionStatus.class);
+
+        for (TransactionStatus status : TransactionStatus.values()) {
+            this.transactionsByStatus.put(status, new ConcurrentSkipListSet<>(TransactionOrder.AMOUNT_THEN_ID));
+        }
+
+        this.transactionsBySender = new ConcurrentHashMap<>();
+        this.transactionsByReceiver = new ConcurrentHashMap<>();
+        this.arrivals = new ConcurrentHashMap<>();
+        this.arrivalClock = new AtomicLong();
+        this.aggregates = new ConcurrentLedgerAggregates();
+        this.versions = new LedgerVersions();
+        this.scans = ScanCounter.NONE;
+        this.feed = new ChangeFeed();
+
+        this.stripes = new Lock[Math.max(MIN_STRIPES, Integer.highestOneBit(Math.max(1, concurrencyLevel - 1)) << 1)];
+
+        for (int i = 0; i < stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+
+        this.indexLock = new SharedModeLock();
+    }
+
+    private Lock stripeOf(int id) {
+        int h = id * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    private void write(int id, Runnable mutation) {
+        Lock stripe = stripeOf(id);
+
+        indexLock.lock(SharedModeLock.WRITING);
+        stripe.lock();
+        try {
+            mutation.run();
+        } finally {
+            stripe.unlock();
+            indexLock.unlock(SharedModeLock.WRITING);
+        }
+    }
+
+    private <T> T read(Supplier<T> query) {
+        indexLock.lock(SharedModeLock.QUERYING);
+        try {
+            return query.get();
+        } finally {
+            indexLock.unlock(SharedModeLock.QUERYING);
+        }
+    }
+
+    private static void addToIndex(ConcurrentMap<String, NavigableSet<Transaction>> index, String key, Transaction transaction) {
+        index.compute(key, (k, transactions) -> {
+            if(transactions == null) {
+                transactions = new ConcurrentSkipListSet<>(TransactionOrder.AMOUNT_THEN_ID);
+            }
+
+            transactions.add(transaction);
+            return transactions;
+        });
+    }
+
+    private static void removeFromIndex(ConcurrentMap<String, NavigableSet<Transaction>> index, String key, Transaction transaction) {
+        index.computeIfPresent(key, (k, transactions) -> {
+            transactions.remove(transaction);
+            return transactions.isEmpty() ? null : transactions;
+        });
+    }
+
+    /**
+     * Puts transactions of this ledger into the order in which they were
+     * added. Must run while no write is half applied.
+     */
+    private List<Transaction> inArrivalOrder(Collection<Transaction> transactions) {
+        List<Transaction> ordered = new ArrayList<>(transactions);
+        ordered.sort(Comparator.comparingLong(t -> arrivals.get(t.getId())));
+
+        return ordered;
+    }
+
+    private Transaction ensureId(int id, String message) {
+        Transaction transaction = database.get(id);
+
+        if(transaction == null) {
+            throw new IllegalArgumentException(message);
+        }
+
+        return transaction;
+    }
+
+    private NavigableSet<Transaction> getFilteredTransactionsByStatus(TransactionStatus status) {
+        return transactionsByStatus.get(status);
+    }
+
+    private NavigableSet<Transaction> getFilteredTransactionsBySender(String sender) {
+        NavigableSet<Transaction> transactions = transactionsBySender.get(sender);
+
+        if(transactions == null) {
+            throw new IllegalArgumentException("Sender " + sender + " cannot be found in the database");
+        }
+
+        return transactions;
+    }
+
+    private NavigableSet<Transaction> getFilteredTransactionsByReceiver(String receiver) {
+        NavigableSet<Transaction> transactions = transactionsByReceiver.get(receiver);
+
+        if(transactions == null) {
+            throw new IllegalArgumentException("Receiver " + receiver + " cannot be found in the database");
+        }
+
+        return transactions;
+    }
+
+    public int getCount() {
+        return database.size();
+    }
+
+    public void add(Transaction transaction) {
+        write(transaction.getId(), () -> {
+            if(database.putIfAbsent(transaction.getId(), transaction) == null) {
+                arrivals.put(transaction.getId(), arrivalClock.incrementAndGet());
+                aggregates.add(transaction.getFrom(), transaction.getTo(), transaction.getStatus(), transaction.getAmount());
+                transactionsByAmount.add(transaction);
+                getFilteredTransactionsByStatus(transaction.getStatus()).add(transaction);
+                addToIndex(transactionsBySender, transaction.getFrom(), transaction);
+                addToIndex(transactionsByReceiver, transaction.getTo(), transaction);
+                versions.record(transaction);
+                feed.added(transaction);
+            }
+        });
+    }
+
+    public boolean contains(Transaction transaction) {
+        Transaction stored = database.get(transaction.getId());
+
+        return stored != null && transaction.equals(stored);
+    }
+
+    public boolean contains(int id) {
+        return database.containsKey(id);
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        write(id, () -> {
+            Transaction transaction = ensureId(id, "Cannot change status of non-existing transaction");
+
+            TransactionStatus previousStatus = transaction.getStatus();
+
+            getFilteredTransactionsByStatus(previousStatus).remove(transaction);
+            aggregates.changeStatus(transaction.getFrom(), previousStatus, newStatus, transaction.getAmount());
+            transaction.setStatus(newStatus);
+            getFilteredTransactionsByStatus(newStatus).add(transaction);
+            versions.record(transaction);
+            feed.statusChanged(transaction, previousStatus);
+        });
+    }
+
+    public void removeTransactionById(int id) {
+        write(id, () -> {
+            Transaction transaction = ensureId(id, "Cannot remove transaction that does not exits");
+
+            database.remove(id);
+            arrivals.remove(id);
+            aggregates.remove(transaction.getFrom(), transaction.getTo(), transaction.getStatus(), transaction.getAmount());
+            transactionsByAmount.remove(transaction);
+            getFilteredTransactionsByStatus(transaction.getStatus()).remove(transaction);
+            removeFromIndex(transactionsBySender, transaction.getFrom(), transaction);
+            removeFromIndex(transactionsByReceiver, transaction.getTo(), transaction);
+            versions.recordRemoval(id);
+            feed.removed(transaction);
+        });
+    }
+
+    public Transaction getById(int id) {
+        return ensureId(id, "Cannot find transaction that does not exits");
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        List<Transaction> filteredTransactions = scans.visited(read(() -> new ArrayList<>(getFilteredTransactionsByStatus(status))));
+
+        if(filteredTransactions.isEmpty()) {
+            throw new IllegalArgumentException("Transactions with status " + status + " are not present");
+        }
+
+        return filteredTransactions;
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        List<String> senders = scans.visited(read(() -> getFilteredTransactionsByStatus(status).stream()
+                .map(Transaction::getFrom)
+                .collect(Collectors.toList())));
+
+        if(senders.isEmpty()) {
+            throw new IllegalArgumentException("There are no senders with status " + status);
+        }
+
+        return senders;
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        List<String> receivers = scans.visited(read(() -> getFilteredTransactionsByStatus(status).stream()
+                .map(Transaction::getTo)
+                .collect(Collectors.toList())));
+
+        if(receivers.isEmpty()) {
+            throw new IllegalArgumentException("There are no receivers with status " + status);
+        }
+
+        return receivers;
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return scans.visited(read(() -> new ArrayList<>(transactionsByAmount.descendingSet())));
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return scans.visited(read(() -> new ArrayList<>(getFilteredTransactionsBySender(sender))));
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return scans.visited(read(() -> new ArrayList<>(getFilteredTransactionsByReceiver(receiver))));
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return scans.visited(read(() -> new ArrayList<>(getFilteredTransactionsByStatus(status)
+                .tailSet(TransactionOrder.probe(amount, Integer.MIN_VALUE), true))));
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return scans.visited(read(() -> new ArrayList<>(getFilteredTransactionsBySender(sender)
+                .headSet(TransactionOrder.probe(amount, Integer.MIN_VALUE), false))));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return scans.visited(read(() -> {
+            NavigableSet<Transaction> transactions = getFilteredTransactionsByReceiver(receiver);
+
+            if(!(lo < hi)) {
+                return new ArrayList<>();
+            }
+
+            return new ArrayList<>(transactions.subSet(TransactionOrder.probe(hi, Integer.MAX_VALUE), false, TransactionOrder.probe(lo, Integer.MAX_VALUE), true));
+        }));
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        if(!(lo <= hi)) {
+            return new ArrayList<>();
+        }
+
+        return scans.visited(read(() -> inArrivalOrder(transactionsByAmount.subSet(TransactionOrder.probe(hi, Integer.MIN_VALUE), true, TransactionOrder.probe(lo, Integer.MAX_VALUE), true))));
+    }
+
+    private List<Transaction> page(NavigableSet<Transaction> transactions, int offset, int limit) {
+        Chainblock.ensurePage(offset, limit);
+
+        Iterator<Transaction> iterator = transactions.iterator();
+        List<Transaction> page = new ArrayList<>();
+        int skipped = 0;
+
+        for (; skipped < offset && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+
+        scans.add(skipped);
+
+        return scans.visited(page);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(int offset, int limit) {
+        return read(() -> page(transactionsByAmount, offset, limit));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenByIdAfter(double amount, int id, int limit) {
+        return read(() -> page(transactionsByAmount.tailSet(TransactionOrder.probe(amount, id), false), 0, limit));
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescending(String sender, int offset, int limit) {
+        return read(() -> page(getFilteredTransactionsBySender(sender), offset, limit));
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescendingAfter(String sender, double amount, int id, int limit) {
+        return read(() -> page(getFilteredTransactionsBySender(sender).tailSet(TransactionOrder.probe(amount, id), false), 0, limit));
+    }
+
+    public Aggregate aggregateByTransactionStatus(TransactionStatus status) {
+        return read(() -> aggregates.getByStatus(status, () -> ChainblockImpl.extremes(getFilteredTransactionsByStatus(status))));
+    }
+
+    public Aggregate aggregateBySender(String sender) {
+        return read(() -> aggregates.getBySender(sender, () -> ChainblockImpl.extremes(transactionsBySender.get(sender))));
+    }
+
+    public Aggregate aggregateByReceiver(String receiver) {
+        return read(() -> aggregates.getByReceiver(receiver, () -> ChainblockImpl.extremes(transactionsByReceiver.get(receiver))));
+    }
+
+    public Aggregate aggregateBySenderAndTransactionStatus(String sender, TransactionStatus status) {
+        return read(() -> aggregates.getBySenderAndStatus(sender, status, () -> transactionsBySender.get(sender)
+                .stream()
+                .filter(t -> t.getStatus() == status)
+                .mapToDouble(Transaction::getAmount)));
+    }
+
+    public ScanCounter scans() {
+        return scans;
+    }
+
+    public void reportScansTo(ScanCounter counter) {
+        this.scans = counter;
+    }
+
+    public Flow.Publisher<List<ChangeEvent>> changes() {
+        return feed;
+    }
+
+    /**
+     * Taken while writers are held off, so the snapshot reflects exactly the
+     * writes completed so far. Only the first snapshot reads the whole ledger.
+     */
+    public Chainblock snapshot() {
+        return read(() -> {
+            synchronized (versions) {
+                return versions.snapshot(() -> inArrivalOrder(database.values()).iterator());
+            }
+        });
+    }
+
+    /**
+     * Weakly consistent: never throws {@link ConcurrentModificationException}
+     * and does not follow insertion order.
+     */
+    public Iterator<Transaction> iterator() {
+        return Collections.unmodifiableCollection(database.values()).iterator();
+    }
+
+}
@@ -0,0 +1,114 @@
+import status.TransactionStatus;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.stream.DoubleStream;
+
+/**
+ * Thread-safe counterpart of {@link LedgerAggregates} for
+ * {@link ConcurrentChainblock}, keyed by party name. Writers of different ids
+ * may report mutations at the same time, since every group is updated under
+ * its own monitor. Reads must not overlap with mutations, so that an extreme
+ * recomputed from the owner's indexes matches the group.
+ */
+class ConcurrentLedgerAggregates {
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final RunningAggregate[] byStatus;
+    private final ConcurrentMap<String, RunningAggregate> bySender;
+    private final ConcurrentMap<String, RunningAggregate> byReceiver;
+    private final ConcurrentMap<String, RunningAggregate[]> bySenderAndStatus;
+
+    ConcurrentLedgerAggregates() {
+        this.byStatus = newStatusGroups();
+        this.bySender = new ConcurrentHashMap<>();
+        this.byReceiver = new ConcurrentHashMap<>();
+        this.bySenderAndStatus = new ConcurrentHashMap<>();
+    }
+
+    private static RunningAggregate[] newStatusGroups() {
+        RunningAggregate[] groups = new RunningAggregate[STATUSES.length];
+
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = new RunningAggregate();
+        }
+
+        return groups;
+    }
+
+    private static RunningAggregate group(ConcurrentMap<String, RunningAggregate> groups, String party) {
+        return groups.computeIfAbsent(party, k -> new RunningAggregate());
+    }
+
+    private RunningAggregate senderAndStatus(String sender, TransactionStatus status) {
+        return bySenderAndStatus.computeIfAbsent(sender, k -> newStatusGroups())[status.ordinal()];
+    }
+
+    private static void add(RunningAggregate group, double amount) {
+        synchronized (group) {
+            group.add(amount);
+        }
+    }
+
+    private static void remove(RunningAggregate group, double amount) {
+        synchronized (group) {
+            group.remove(amount);
+        }
+    }
+
+    private static Aggregate get(RunningAggregate group, Supplier<DoubleStream> amounts) {
+        if(group == null) {
+            return Aggregate.EMPTY;
+        }
+
+        synchronized (group) {
+            return group.get(amounts);
+        }
+    }
+
+    public void add(String sender, String receiver, TransactionStatus status, double amount) {
+        add(byStatus[status.ordinal()], amount);
+        add(group(bySender, sender), amount);
+        add(group(byReceiver, receiver), amount);
+        add(senderAndStatus(sender, status), amount);
+    }
+
+    public void remove(String sender, String receiver, TransactionStatus status, double amount) {
+        remove(byStatus[status.ordinal()], amount);
+        remove(group(bySender, sender), amount);
+        remove(group(byReceiver, receiver), amount);
+        remove(senderAndStatus(sender, status), amount);
+    }
+
+    public void changeStatus(String sender, TransactionStatus oldStatus, TransactionStatus newStatus, double amount) {
+        if(oldStatus == newStatus) {
+            return;
+        }
+
+        remove(byStatus[oldStatus.ordinal()], amount);
+        add(byStatus[newStatus.ordinal()], amount);
+        remove(senderAndStatus(sender, oldStatus), amount);
+        add(senderAndStatus(sender, newStatus), amount);
+    }
+
+    public Aggregate getByStatus(TransactionStatus status, Supplier<DoubleStream> amounts) {
+        return get(byStatus[status.ordinal()], amounts);
+    }
+
+    public Aggregate getBySender(String sender, Supplier<DoubleStream> amounts) {
+        return get(bySender.get(sender), amounts);
+    }
+
+    public Aggregate getByReceiver(String receiver, Supplier<DoubleStream> amounts) {
+        return get(byReceiver.get(receiver), amounts);
+    }
+
+    public Aggregate getBySenderAndStatus(String sender, TransactionStatus status, Supplier<DoubleStream> amounts) {
+        RunningAggregate[] groups = bySenderAndStatus.get(sender);
+
+        return groups == null ? Aggregate.EMPTY : get(groups[status.ordinal()], amounts);
+    }
+
+}
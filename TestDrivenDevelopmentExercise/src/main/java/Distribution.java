@@ -0,0 +1,85 @@
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Count, total, percentiles and maximum of a series of recorded values, such
+ * as the latencies of one {@link Chainblock} method. Percentiles are the
+ * upper bounds of histogram buckets, so they may overstate the exact value
+ * by about 3%, but never exceed the maximum. An empty distribution is all
+ * zeros.
+ */
+public final class Distribution {
+
+    public static final Distribution EMPTY = new Distribution(0, 0, 0, 0, 0, 0);
+
+    private final long count;
+    private final long total;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    Distribution(long count, long total, long p50, long p99, long p999, long max) {
+        this.count = count;
+        this.total = total;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("mean: %.1f, p50: %d, p99: %d, p999: %d, max: %d", getMean(), p50, p99, p999, max);
+    }
+
+    String toJson() {
+        return String.format(Locale.ROOT, "{\"count\":%d,\"total\":%d,\"mean\":%.1f,\"p50\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}",
+                count, total, getMean(), p50, p99, p999, max);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (!(o instanceof Distribution)) return false;
+
+        Distribution that = (Distribution) o;
+
+        return count == that.count && total == that.total && p50 == that.p50 && p99 == that.p99 && p999 == that.p999 && max == that.max;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(count, total, p50, p99, p999, max);
+    }
+
+}
@@ -0,0 +1,301 @@
+import status.TransactionStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * {@link Chainblock} that survives restarts. Every mutation is applied to an
+ * in-memory ledger and recorded in a {@link Journal}, and only returns once
+ * its record has been forced to disk. Writers on different threads share
+ * fsyncs, so the cost of one is spread over everything that queued up while
+ * the previous one ran. Opening a journal that already exists replays it.
+ *
+ * <p>Operations on the in-memory ledger are serialized by a lock, so any
+ * {@link Chainblock} may back the journal. Other writers can observe a
+ * mutation between the moment it is applied and the moment it becomes
+ * durable. If the journal cannot be written, the failing mutation and every
+ * later one throw {@link UncheckedIOException}.
+ */
+public class DurableChainblock implements Chainblock, Closeable {
+
+    private final Chainblock ledger;
+    private final Journal journal;
+    private final Lock lock;
+
+    public DurableChainblock(Path journal) throws IOException {
+        this(journal, new ChainblockImpl());
+    }
+
+    /**
+     * @param ledger an empty ledger that the journal is replayed into and that serves the queries
+     */
+    public DurableChainblock(Path journal, Chainblock ledger) throws IOException {
+        this.ledger = ledger;
+        this.journal = Journal.open(journal, ledger);
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Applies a mutation that returns the sequence number of its last journal
+     * record, then waits until that record is durable.
+     */
+    private void write(LongSupplier mutation) {
+        long sequence;
+
+        lock.lock();
+        try {
+            sequence = mutation.getAsLong();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            journal.sync(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> T read(Supplier<T> query) {
+        lock.lock();
+        try {
+            return query.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCount() {
+        return read(ledger::getCount);
+    }
+
+    public void add(Transaction transaction) {
+        write(() -> {
+            if(ledger.contains(transaction.getId())) {
+                return Journal.NOTHING;
+            }
+
+            ledger.add(transaction);
+
+            return journal.appendAdd(transaction);
+        });
+    }
+
+    /**
+     * Adds the batch through the ledger's own {@link Chainblock#addAll} and
+     * waits for a single fsync.
+     */
+    public int addAll(Collection<? extends Transaction> transactions) {
+        List<Transaction> added = new ArrayList<>();
+
+        write(() -> {
+            Set<Integer> seen = new HashSet<>();
+
+            for (Transaction transaction : transactions) {
+                if(!ledger.contains(transaction.getId()) && seen.add(transaction.getId())) {
+                    added.add(transaction);
+                }
+            }
+
+            ledger.addAll(added);
+
+            long sequence = Journal.NOTHING;
+
+            for (Transaction transaction : added) {
+                sequence = journal.appendAdd(transaction);
+            }
+
+            return sequence;
+        });
+
+        return added.size();
+    }
+
+    public boolean contains(Transaction transaction) {
+        return read(() -> ledger.contains(transaction));
+    }
+
+    public boolean contains(int id) {
+        return read(() -> ledger.contains(id));
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        write(() -> {
+            ledger.changeTransactionStatus(id, newStatus);
+
+            return journal.appendStatusChange(id, newStatus);
+        });
+    }
+
+    public List<Integer> changeTransactionStatuses(Map<Integer, TransactionStatus> newStatuses) {
+        List<Integer> missing = new ArrayList<>();
+
+        write(() -> {
+            missing.addAll(ledger.changeTransactionStatuses(newStatuses));
+
+            Set<Integer> skipped = new HashSet<>(missing);
+            long sequence = Journal.NOTHING;
+
+            for (Map.Entry<Integer, TransactionStatus> entry : newStatuses.entrySet()) {
+                if(!skipped.contains(entry.getKey())) {
+                    sequence = journal.appendStatusChange(entry.getKey(), entry.getValue());
+                }
+            }
+
+            return sequence;
+        });
+
+        return missing;
+    }
+
+    public List<Integer> changeTransactionStatuses(int[] ids, TransactionStatus newStatus) {
+        List<Integer> missing = new ArrayList<>();
+
+        write(() -> {
+            missing.addAll(ledger.changeTransactionStatuses(ids, newStatus));
+
+            Set<Integer> skipped = new HashSet<>(missing);
+            long sequence = Journal.NOTHING;
+
+            for (int id : ids) {
+                if(!skipped.contains(id)) {
+                    sequence = journal.appendStatusChange(id, newStatus);
+                }
+            }
+
+            return sequence;
+        });
+
+        return missing;
+    }
+
+    public void removeTransactionById(int id) {
+        write(() -> {
+            ledger.removeTransactionById(id);
+
+            return journal.appendRemoval(id);
+        });
+    }
+
+    public Transaction getById(int id) {
+        return read(() -> ledger.getById(id));
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return read(() -> ledger.getByTransactionStatus(status));
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return read(() -> ledger.getAllSendersWithTransactionStatus(status));
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return read(() -> ledger.getAllReceiversWithTransactionStatus(status));
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return read(ledger::getAllOrderedByAmountDescendingThenById);
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return read(() -> ledger.getBySenderOrderedByAmountDescending(sender));
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return read(() -> ledger.getByReceiverOrderedByAmountThenById(receiver));
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return read(() -> ledger.getByTransactionStatusAndMaximumAmount(status, amount));
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return read(() -> ledger.getBySenderAndMinimumAmountDescending(sender, amount));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return read(() -> ledger.getByReceiverAndAmountRange(receiver, lo, hi));
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return read(() -> ledger.getAllInAmountRange(lo, hi));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(int offset, int limit) {
+        return read(() -> ledger.getPageOrderedByAmountDescendingThenById(offset, limit));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenByIdAfter(double amount, int id, int limit) {
+        return read(() -> ledger.getPageOrderedByAmountDescendingThenByIdAfter(amount, id, limit));
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescending(String sender, int offset, int limit) {
+        return read(() -> ledger.getPageBySenderOrderedByAmountDescending(sender, offset, limit));
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescendingAfter(String sender, double amount, int id, int limit) {
+        return read(() -> ledger.getPageBySenderOrderedByAmountDescendingAfter(sender, amount, id, limit));
+    }
+
+    public Aggregate aggregateByTransactionStatus(TransactionStatus status) {
+        return read(() -> ledger.aggregateByTransactionStatus(status));
+    }
+
+    public Aggregate aggregateBySender(String sender) {
+        return read(() -> ledger.aggregateBySender(sender));
+    }
+
+    public Aggregate aggregateByReceiver(String receiver) {
+        return read(() -> ledger.aggregateByReceiver(receiver));
+    }
+
+    public Aggregate aggregateBySenderAndTransactionStatus(String sender, TransactionStatus status) {
+        return read(() -> ledger.aggregateBySenderAndTransactionStatus(sender, status));
+    }
+
+    /**
+     * Events are published as soon as a mutation is applied, which can be
+     * before its journal record is durable.
+     */
+    public Flow.Publisher<List<ChangeEvent>> changes() {
+        return ledger.changes();
+    }
+
+    public Chainblock snapshot() {
+        return read(ledger::snapshot);
+    }
+
+    /**
+     * Iterates over a copy of the ledger taken when the iterator is created.
+     */
+    public Iterator<Transaction> iterator() {
+        return read(() -> {
+            List<Transaction> transactions = new ArrayList<>(ledger.getCount());
+            ledger.forEach(transactions::add);
+
+            return transactions.iterator();
+        });
+    }
+
+    /**
+     * Waits for outstanding records to reach the disk and closes the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            journal.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+import status.TransactionStatus;
+
+import java.math.RoundingMode;
+import java.util.Comparator;
+
+/**
+ * {@link Transaction} whose amount is held as a whole number of minor units,
+ * such as cents for two fraction digits, as stored by a
+ * {@link ChainblockImpl} created with fixed-point amounts.
+ *
+ * <p>Amounts are rounded to the nearest minor unit when they are set.
+ * {@link #getAmount()} returns the nearest double to the stored value, so a
+ * transaction equals any other {@link Transaction} with the same fields and
+ * that amount.
+ */
+public final class FixedPointTransaction implements Transaction {
+
+    static final int MAX_FRACTION_DIGITS = 9;
+
+    /**
+     * How far, in units in the last place, a scaled amount may lie from a
+     * whole number of minor units and still be taken for it.
+     */
+    private static final int ROUNDING_ERROR_ULPS = 4;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_FRACTION_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Amount descending, then id, like {@link TransactionOrder#AMOUNT_THEN_ID},
+     * but on the minor units. Both transactions must be fixed-point ones with
+     * the same number of fraction digits.
+     */
+    static final Comparator<Transaction> MINOR_UNITS_THEN_ID_COMPARATOR = (first, second) -> {
+        int result = Long.compare(((FixedPointTransaction) second).minorUnits, ((FixedPointTransaction) first).minorUnits);
+
+        return result != 0 ? result : Integer.compare(first.getId(), second.getId());
+    };
+
+    private int id;
+    private TransactionStatus status;
+    private String from;
+    private String to;
+    private long minorUnits;
+    private final int fractionDigits;
+
+    public FixedPointTransaction(int id, TransactionStatus status, String from, String to, long minorUnits, int fractionDigits) {
+        this.id = id;
+        this.status = status;
+        this.from = from;
+        this.to = to;
+        this.minorUnits = minorUnits;
+        this.fractionDigits = checkFractionDigits(fractionDigits);
+    }
+
+    /**
+     * @return a fixed-point copy of the transaction
+     */
+    static FixedPointTransaction of(Transaction transaction, int fractionDigits) {
+        return of(transaction, transaction.getFrom(), transaction.getTo(), fractionDigits);
+    }
+
+    /**
+     * @return a fixed-point copy of the transaction with the given, equal, party names
+     */
+    static FixedPointTransaction of(Transaction transaction, String from, String to, int fractionDigits) {
+        return new FixedPointTransaction(transaction.getId(), transaction.getStatus(), from, to,
+                toMinorUnits(transaction.getAmount(), fractionDigits), fractionDigits);
+    }
+
+    /**
+     * Creates a search key for indexes ordered by {@link #MINOR_UNITS_THEN_ID_COMPARATOR},
+     * with the amount rounded as by {@link #toBoundMinorUnits}.
+     */
+    static FixedPointTransaction probe(double amount, int id, int fractionDigits, RoundingMode rounding) {
+        return new FixedPointTransaction(id, null, null, null, toBoundMinorUnits(amount, fractionDigits, rounding), fractionDigits);
+    }
+
+    /**
+     * @return the amounts of a ledger that stores them in minor units: its
+     * keys are {@link #probe}s, and it compares fixed-point copies
+     */
+    static TransactionOrder.Amounts amounts(int fractionDigits) {
+        return new TransactionOrder.Amounts() {
+            @Override
+            public Transaction key(double amount, int id, RoundingMode rounding) {
+                return probe(amount, id, fractionDigits, rounding);
+            }
+
+            @Override
+            public Transaction toComparable(Transaction transaction) {
+                return hasMinorUnits(transaction.getAmount(), fractionDigits) ? of(transaction, fractionDigits) : null;
+            }
+        };
+    }
+
+    /**
+     * Rounds a query bound to minor units, {@link RoundingMode#FLOOR down} or
+     * {@link RoundingMode#CEILING up}, so that it sits on the right side of
+     * every stored amount it lies between. A bound that is a whole number of
+     * minor units give or take the error of double arithmetic, such as
+     * {@code 0.1 + 0.2} for 0.30, is taken to be that amount. Amounts beyond
+     * the range of minor units are clamped to it, and {@code NaN} sorts
+     * before every amount, as it does among doubles.
+     */
+    static long toBoundMinorUnits(double amount, int fractionDigits, RoundingMode rounding) {
+        if(Double.isNaN(amount)) {
+            return Long.MAX_VALUE;
+        }
+
+        double scaled = amount * POWERS_OF_TEN[fractionDigits];
+        long nearest = Math.round(scaled);
+
+        if(Math.abs(scaled - nearest) <= ROUNDING_ERROR_ULPS * Math.ulp(scaled)) {
+            return nearest;
+        }
+
+        return (long) (rounding == RoundingMode.FLOOR ? Math.floor(scaled) : Math.ceil(scaled));
+    }
+
+    static int checkFractionDigits(int fractionDigits) {
+        if(fractionDigits < 0 || fractionDigits > MAX_FRACTION_DIGITS) {
+            throw new IllegalArgumentException("Fraction digits must be between 0 and " + MAX_FRACTION_DIGITS);
+        }
+
+        return fractionDigits;
+    }
+
+    static boolean hasMinorUnits(double amount, int fractionDigits) {
+        return Math.abs(amount * POWERS_OF_TEN[fractionDigits]) < Long.MAX_VALUE;
+    }
+
+    static long toMinorUnits(double amount, int fractionDigits) {
+        if(!hasMinorUnits(amount, fractionDigits)) {
+            throw new IllegalArgumentException("Amount " + amount + " cannot be stored in minor units");
+        }
+
+        return Math.round(amount * POWERS_OF_TEN[fractionDigits]);
+    }
+
+    @Override
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    @Override
+    public void setStatus(TransactionStatus status) {
+        this.status = status;
+    }
+
+    @Override
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    @Override
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    @Override
+    public void setAmount(double amount) {
+        this.minorUnits = toMinorUnits(amount, fractionDigits);
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public String getFrom() {
+        return from;
+    }
+
+    @Override
+    public String getTo() {
+        return to;
+    }
+
+    @Override
+    public double getAmount() {
+        return (double) minorUnits / POWERS_OF_TEN[fractionDigits];
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public int getFractionDigits() {
+        return fractionDigits;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("id: %d, status: %s from: %s, to: %s, amount: %.2f", id, status.name(), from, to, getAmount());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return Transaction.equals(this, o);
+    }
+
+    @Override
+    public int hashCode() {
+        return Transaction.hashCode(this);
+    }
+
+}
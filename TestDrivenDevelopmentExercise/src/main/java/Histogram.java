@@ -0,0 +1,109 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative longs. Values below {@value #SUB_BUCKETS}
+ * get a bucket each, and every power of two above is split into
+ * {@value #SUB_BUCKETS} buckets, so a percentile is off by at most about 3%
+ * of its value while the whole range of longs fits in under two thousand
+ * counters. Recording is a few shifts and an atomic increment.
+ */
+final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder sum;
+    private final LongAccumulator max;
+
+    Histogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.sum = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+
+    private static int bucket(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the largest value that falls into the bucket
+     */
+    private static long highest(int bucket) {
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a value, clamping negative ones to zero.
+     */
+    void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Copies the histogram. Values recorded while it is copied may be
+     * counted in some of the figures and not in others.
+     */
+    Distribution snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            copy[bucket] = counts.get(bucket);
+            count += copy[bucket];
+        }
+
+        long largest = max.get();
+
+        return new Distribution(count, sum.sum(),
+                percentile(copy, count, 0.50, largest),
+                percentile(copy, count, 0.99, largest),
+                percentile(copy, count, 0.999, largest),
+                largest);
+    }
+
+    private static long percentile(long[] counts, long count, double quantile, long largest) {
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+
+            if(seen >= rank && seen > 0) {
+                return Math.min(highest(bucket), largest);
+            }
+        }
+
+        return 0;
+    }
+
+}
@@ -0,0 +1,108 @@
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Open-addressing hash table that resolves a transaction id to its position
+ * in a dense array of ids kept by the owner. The table stores nothing but
+ * those positions, so it never boxes an id and holds no per-entry objects.
+ * It is sized for at most half as many positions as it has slots.
+ */
+class IdSlots {
+
+    static final int EMPTY = -1;
+
+    private final int[] slots;
+
+    IdSlots(int positions) {
+        this.slots = new int[positions << 1];
+        Arrays.fill(this.slots, EMPTY);
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the slot holding the id, or the empty slot where it would be inserted
+     */
+    int slotOf(int id, int[] ids) {
+        int mask = slots.length - 1;
+
+        for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+            int position = slots[i];
+
+            if(position == EMPTY || ids[position] == id) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #slotOf(int, int[])} for owners that do not keep their
+     * ids in an array. The array overloads keep their own loops so that the
+     * common lookups neither allocate nor call through an interface.
+     */
+    int slotOf(int id, IntUnaryOperator idAt) {
+        int mask = slots.length - 1;
+
+        for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+            int position = slots[i];
+
+            if(position == EMPTY || idAt.applyAsInt(position) == id) {
+                return i;
+            }
+        }
+    }
+
+    int positionOf(int id, int[] ids) {
+        return slots[slotOf(id, ids)];
+    }
+
+    int positionOf(int id, IntUnaryOperator idAt) {
+        return slots[slotOf(id, idAt)];
+    }
+
+    int get(int slot) {
+        return slots[slot];
+    }
+
+    void set(int slot, int position) {
+        slots[slot] = position;
+    }
+
+    /**
+     * Backward-shift deletion: pulls later entries of the same probe run into
+     * the freed slot so lookups never need tombstones.
+     */
+    void delete(int gap, int[] ids) {
+        int mask = slots.length - 1;
+
+        for (int i = (gap + 1) & mask; slots[i] != EMPTY; i = (i + 1) & mask) {
+            int home = hash(ids[slots[i]]) & mask;
+
+            if(((i - home) & mask) >= ((i - gap) & mask)) {
+                slots[gap] = slots[i];
+                gap = i;
+            }
+        }
+
+        slots[gap] = EMPTY;
+    }
+
+    void delete(int gap, IntUnaryOperator idAt) {
+        int mask = slots.length - 1;
+
+        for (int i = (gap + 1) & mask; slots[i] != EMPTY; i = (i + 1) & mask) {
+            int home = hash(idAt.applyAsInt(slots[i])) & mask;
+
+            if(((i - home) & mask) >= ((i - gap) & mask)) {
+                slots[gap] = slots[i];
+                gap = i;
+            }
+        }
+
+        slots[gap] = EMPTY;
+    }
+
+}
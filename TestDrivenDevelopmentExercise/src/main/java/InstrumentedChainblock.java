@@ -0,0 +1,378 @@
+import status.TransactionStatus;
+
+import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link Chainblock} that forwards every call to another ledger and measures
+ * it: the number of calls and failures, a histogram of latencies, and, for
+ * methods that return collections, histograms of the result sizes and of the
+ * transactions the ledger visited to produce them. The ledgers of this
+ * package that implement {@link ScanReporting} report what they visit to
+ * the decorator wrapped directly around them; other ledgers, including
+ * ledgers wrapped in another decorator first, count as visiting nothing.
+ *
+ * <p>Measuring takes two clock reads and a few uncontended atomic increments
+ * per call, and is safe from any thread as long as the ledger is. Streams
+ * are forwarded without being measured, because their work happens after
+ * they are returned.
+ */
+public class InstrumentedChainblock implements Chainblock {
+
+    /**
+     * The measured methods, named after them. Overloads carry their
+     * parameter types.
+     */
+    public enum Operation {
+        GET_COUNT("getCount"),
+        ADD("add"),
+        ADD_ALL("addAll"),
+        CONTAINS_TRANSACTION("contains(Transaction)"),
+        CONTAINS_ID("contains(int)"),
+        CHANGE_TRANSACTION_STATUS("changeTransactionStatus"),
+        CHANGE_TRANSACTION_STATUSES_BY_ID("changeTransactionStatuses(Map)"),
+        CHANGE_TRANSACTION_STATUSES("changeTransactionStatuses(int[])"),
+        REMOVE_TRANSACTION_BY_ID("removeTransactionById"),
+        GET_BY_ID("getById"),
+        GET_BY_TRANSACTION_STATUS("getByTransactionStatus"),
+        GET_ALL_SENDERS_WITH_TRANSACTION_STATUS("getAllSendersWithTransactionStatus"),
+        GET_ALL_RECEIVERS_WITH_TRANSACTION_STATUS("getAllReceiversWithTransactionStatus"),
+        GET_ALL_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID("getAllOrderedByAmountDescendingThenById"),
+        GET_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING("getBySenderOrderedByAmountDescending"),
+        GET_BY_RECEIVER_ORDERED_BY_AMOUNT_THEN_BY_ID("getByReceiverOrderedByAmountThenById"),
+        GET_BY_TRANSACTION_STATUS_AND_MAXIMUM_AMOUNT("getByTransactionStatusAndMaximumAmount"),
+        GET_BY_SENDER_AND_MINIMUM_AMOUNT_DESCENDING("getBySenderAndMinimumAmountDescending"),
+        GET_BY_RECEIVER_AND_AMOUNT_RANGE("getByReceiverAndAmountRange"),
+        GET_ALL_IN_AMOUNT_RANGE("getAllInAmountRange"),
+        GET_PAGE_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID("getPageOrderedByAmountDescendingThenById"),
+        GET_PAGE_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID_AFTER("getPageOrderedByAmountDescendingThenByIdAfter"),
+        GET_PAGE_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING("getPageBySenderOrderedByAmountDescending"),
+        GET_PAGE_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING_AFTER("getPageBySenderOrderedByAmountDescendingAfter"),
+        AGGREGATE_BY_TRANSACTION_STATUS("aggregateByTransactionStatus"),
+        AGGREGATE_BY_SENDER("aggregateBySender"),
+        AGGREGATE_BY_RECEIVER("aggregateByReceiver"),
+        AGGREGATE_BY_SENDER_AND_TRANSACTION_STATUS("aggregateBySenderAndTransactionStatus"),
+        SNAPSHOT("snapshot"),
+        ITERATOR("iterator");
+
+        private final String methodName;
+
+        Operation(String methodName) {
+            this.methodName = methodName;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+    }
+
+    private static final class Probe {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final Histogram latencyNanos = new Histogram();
+        private final Histogram resultSizes = new Histogram();
+        private final Histogram scanned = new Histogram();
+
+        void record(long nanos, long visited, int resultSize) {
+            calls.increment();
+            latencyNanos.record(nanos);
+            scanned.record(visited);
+
+            if(resultSize >= 0) {
+                resultSizes.record(resultSize);
+            }
+        }
+
+        void fail(long nanos, long visited) {
+            failures.increment();
+            record(nanos, visited, -1);
+        }
+
+        void reset() {
+            calls.reset();
+            failures.reset();
+            latencyNanos.reset();
+            resultSizes.reset();
+            scanned.reset();
+        }
+
+        OperationStatistics snapshot(Operation operation) {
+            return new OperationStatistics(operation.getMethodName(), calls.sum(), failures.sum(),
+                    latencyNanos.snapshot(), resultSizes.snapshot(), scanned.snapshot());
+        }
+    }
+
+    private final Chainblock ledger;
+    private final Probe[] probes;
+    private final ScanCounter scans;
+
+    public InstrumentedChainblock(Chainblock ledger) {
+        this.ledger = ledger;
+        this.probes = new Probe[Operation.values().length];
+
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = new Probe();
+        }
+
+        this.scans = new ScanCounter();
+
+        if(ledger instanceof ScanReporting) {
+            ((ScanReporting) ledger).reportScansTo(scans);
+        }
+    }
+
+    private <T> T measure(Operation operation, Supplier<T> call) {
+        Probe probe = probes[operation.ordinal()];
+        long visited = scans.current();
+        long start = System.nanoTime();
+        T result;
+
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            probe.fail(System.nanoTime() - start, scans.current() - visited);
+            throw e;
+        }
+
+        probe.record(System.nanoTime() - start, scans.current() - visited, sizeOf(result));
+
+        return result;
+    }
+
+    private void measure(Operation operation, Runnable call) {
+        measure(operation, () -> {
+            call.run();
+
+            return null;
+        });
+    }
+
+    /**
+     * @return the number of elements of a collection, or -1 for anything else
+     */
+    private static int sizeOf(Object result) {
+        return result instanceof Collection ? ((Collection<?>) result).size() : -1;
+    }
+
+    /**
+     * @return the statistics of every operation that has been called, in declaration order
+     */
+    public List<OperationStatistics> statistics() {
+        List<OperationStatistics> statistics = new ArrayList<>();
+
+        for (Operation operation : Operation.values()) {
+            OperationStatistics snapshot = statistics(operation);
+
+            if(snapshot.getCalls() > 0) {
+                statistics.add(snapshot);
+            }
+        }
+
+        return statistics;
+    }
+
+    public OperationStatistics statistics(Operation operation) {
+        return probes[operation.ordinal()].snapshot(operation);
+    }
+
+    /**
+     * Clears the statistics. Calls that are running meanwhile may be
+     * partially counted.
+     */
+    public void resetStatistics() {
+        for (Probe probe : probes) {
+            probe.reset();
+        }
+    }
+
+    /**
+     * @return the statistics of every called operation, one per line
+     */
+    public String exportText() {
+        return statistics().stream()
+                .map(OperationStatistics::toString)
+                .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    /**
+     * @return the statistics of every called operation as a JSON array
+     */
+    public String exportJson() {
+        return statistics().stream()
+                .map(OperationStatistics::toJson)
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+
+    public int getCount() {
+        return measure(Operation.GET_COUNT, ledger::getCount);
+    }
+
+    public void add(Transaction transaction) {
+        measure(Operation.ADD, () -> ledger.add(transaction));
+    }
+
+    public int addAll(Collection<? extends Transaction> transactions) {
+        return measure(Operation.ADD_ALL, () -> ledger.addAll(transactions));
+    }
+
+    public boolean contains(Transaction transaction) {
+        return measure(Operation.CONTAINS_TRANSACTION, () -> ledger.contains(transaction));
+    }
+
+    public boolean contains(int id) {
+        return measure(Operation.CONTAINS_ID, () -> ledger.contains(id));
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        measure(Operation.CHANGE_TRANSACTION_STATUS, () -> ledger.changeTransactionStatus(id, newStatus));
+    }
+
+    public List<Integer> changeTransactionStatuses(Map<Integer, TransactionStatus> newStatuses) {
+        return measure(Operation.CHANGE_TRANSACTION_STATUSES_BY_ID, () -> ledger.changeTransactionStatuses(newStatuses));
+    }
+
+    public List<Integer> changeTransactionStatuses(int[] ids, TransactionStatus newStatus) {
+        return measure(Operation.CHANGE_TRANSACTION_STATUSES, () -> ledger.changeTransactionStatuses(ids, newStatus));
+    }
+
+    public void removeTransactionById(int id) {
+        measure(Operation.REMOVE_TRANSACTION_BY_ID, () -> ledger.removeTransactionById(id));
+    }
+
+    public Transaction getById(int id) {
+        return measure(Operation.GET_BY_ID, () -> ledger.getById(id));
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return measure(Operation.GET_BY_TRANSACTION_STATUS, () -> ledger.getByTransactionStatus(status));
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return measure(Operation.GET_ALL_SENDERS_WITH_TRANSACTION_STATUS, () -> ledger.getAllSendersWithTransactionStatus(status));
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return measure(Operation.GET_ALL_RECEIVERS_WITH_TRANSACTION_STATUS, () -> ledger.getAllReceiversWithTransactionStatus(status));
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return measure(Operation.GET_ALL_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID, ledger::getAllOrderedByAmountDescendingThenById);
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return measure(Operation.GET_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING, () -> ledger.getBySenderOrderedByAmountDescending(sender));
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return measure(Operation.GET_BY_RECEIVER_ORDERED_BY_AMOUNT_THEN_BY_ID, () -> ledger.getByReceiverOrderedByAmountThenById(receiver));
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return measure(Operation.GET_BY_TRANSACTION_STATUS_AND_MAXIMUM_AMOUNT, () -> ledger.getByTransactionStatusAndMaximumAmount(status, amount));
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return measure(Operation.GET_BY_SENDER_AND_MINIMUM_AMOUNT_DESCENDING, () -> ledger.getBySenderAndMinimumAmountDescending(sender, amount));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return measure(Operation.GET_BY_RECEIVER_AND_AMOUNT_RANGE, () -> ledger.getByReceiverAndAmountRange(receiver, lo, hi));
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return measure(Operation.GET_ALL_IN_AMOUNT_RANGE, () -> ledger.getAllInAmountRange(lo, hi));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(int offset, int limit) {
+        return measure(Operation.GET_PAGE_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID, () -> ledger.getPageOrderedByAmountDescendingThenById(offset, limit));
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenByIdAfter(double amount, int id, int limit) {
+        return measure(Operation.GET_PAGE_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID_AFTER,
+                () -> ledger.getPageOrderedByAmountDescendingThenByIdAfter(amount, id, limit));
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescending(String sender, int offset, int limit) {
+        return measure(Operation.GET_PAGE_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING,
+                () -> ledger.getPageBySenderOrderedByAmountDescending(sender, offset, limit));
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescendingAfter(String sender, double amount, int id, int limit) {
+        return measure(Operation.GET_PAGE_BY_SENDER_ORDERED_BY_AMOUNT_DESCENDING_AFTER,
+                () -> ledger.getPageBySenderOrderedByAmountDescendingAfter(sender, amount, id, limit));
+    }
+
+    public Aggregate aggregateByTransactionStatus(TransactionStatus status) {
+        return measure(Operation.AGGREGATE_BY_TRANSACTION_STATUS, () -> ledger.aggregateByTransactionStatus(status));
+    }
+
+    public Aggregate aggregateBySender(String sender) {
+        return measure(Operation.AGGREGATE_BY_SENDER, () -> ledger.aggregateBySender(sender));
+    }
+
+    public Aggregate aggregateByReceiver(String receiver) {
+        return measure(Operation.AGGREGATE_BY_RECEIVER, () -> ledger.aggregateByReceiver(receiver));
+    }
+
+    public Aggregate aggregateBySenderAndTransactionStatus(String sender, TransactionStatus status) {
+        return measure(Operation.AGGREGATE_BY_SENDER_AND_TRANSACTION_STATUS, () -> ledger.aggregateBySenderAndTransactionStatus(sender, status));
+    }
+
+    public Stream<Transaction> streamByTransactionStatus(TransactionStatus status) {
+        return ledger.streamByTransactionStatus(status);
+    }
+
+    public Stream<String> streamAllSendersWithTransactionStatus(TransactionStatus status) {
+        return ledger.streamAllSendersWithTransactionStatus(status);
+    }
+
+    public Stream<String> streamAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return ledger.streamAllReceiversWithTransactionStatus(status);
+    }
+
+    public Stream<Transaction> streamAllOrderedByAmountDescendingThenById() {
+        return ledger.streamAllOrderedByAmountDescendingThenById();
+    }
+
+    public Stream<Transaction> streamBySenderOrderedByAmountDescending(String sender) {
+        return ledger.streamBySenderOrderedByAmountDescending(sender);
+    }
+
+    public Stream<Transaction> streamByReceiverOrderedByAmountThenById(String receiver) {
+        return ledger.streamByReceiverOrderedByAmountThenById(receiver);
+    }
+
+    public Stream<Transaction> streamByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return ledger.streamByTransactionStatusAndMaximumAmount(status, amount);
+    }
+
+    public Stream<Transaction> streamBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return ledger.streamBySenderAndMinimumAmountDescending(sender, amount);
+    }
+
+    public Stream<Transaction> streamByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return ledger.streamByReceiverAndAmountRange(receiver, lo, hi);
+    }
+
+    public Stream<Transaction> streamAllInAmountRange(double lo, double hi) {
+        return ledger.streamAllInAmountRange(lo, hi);
+    }
+
+    public Flow.Publisher<List<ChangeEvent>> changes() {
+        return ledger.changes();
+    }
+
+    public Chainblock snapshot() {
+        return measure(Operation.SNAPSHOT, ledger::snapshot);
+    }
+
+    public Iterator<Transaction> iterator() {
+        return measure(Operation.ITERATOR, ledger::iterator);
+    }
+
+}
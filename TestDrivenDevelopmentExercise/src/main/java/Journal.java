@@ -0,0 +1,286 @@
+import status.TransactionStatus;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of ledger mutations.
+ *
+ * <p>Every record is framed as its payload length, a CRC32 of the payload and
+ * the payload itself, which starts with a one-byte record type. Appending only
+ * encodes the record into an in-memory batch and hands out a sequence number;
+ * {@link #sync} makes it durable. Whichever writer syncs first while no flush
+ * is running writes and forces everything batched so far, and the writers
+ * that queued up behind it are released by that single fsync.
+ *
+ * <p>On {@link #open} the existing records are replayed. A torn or corrupt
+ * tail, as left behind by a crash in the middle of a write, ends the replay
+ * and is cut off the file.
+ */
+class Journal implements Closeable {
+
+    static final long NOTHING = 0;
+
+    private static final byte ADD = 1;
+    private static final byte STATUS = 2;
+    private static final byte REMOVE = 3;
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int MIN_BATCH_BYTES = 4096;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final FileChannel channel;
+    private final Object monitor;
+    private final CRC32 checksum;
+
+    private ByteBuffer pending;
+    private ByteBuffer spare;
+    private long appended;
+    private long durable;
+    private boolean flushing;
+    private IOException failure;
+
+    private Journal(FileChannel channel) {
+        this.channel = channel;
+        this.monitor = new Object();
+        this.checksum = new CRC32();
+        this.pending = ByteBuffer.allocate(MIN_BATCH_BYTES);
+        this.spare = ByteBuffer.allocate(MIN_BATCH_BYTES);
+    }
+
+    /**
+     * Opens the journal at the given path, creating it if needed, and replays
+     * its records into the target, which is expected to be empty.
+     */
+    static Journal open(Path path, Chainblock target) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            long end = replay(channel, target);
+
+            channel.truncate(end);
+            channel.position(end);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        return new Journal(channel);
+    }
+
+    /**
+     * @return the length of the intact prefix of the journal
+     */
+    private static long replay(FileChannel channel, Chainblock target) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        CRC32 checksum = new CRC32();
+        long end = 0;
+
+        while (true) {
+            byte[] payload;
+
+            try {
+                int length = in.readInt();
+                int crc = in.readInt();
+
+                if(length <= 0 || length > channel.size() - end - HEADER_BYTES) {
+                    return end;
+                }
+
+                payload = new byte[length];
+                in.readFully(payload);
+
+                checksum.reset();
+                checksum.update(payload);
+
+                if((int) checksum.getValue() != crc) {
+                    return end;
+                }
+            } catch (EOFException e) {
+                return end;
+            }
+
+            apply(ByteBuffer.wrap(payload), target);
+            end += HEADER_BYTES + payload.length;
+        }
+    }
+
+    private static void apply(ByteBuffer record, Chainblock target) {
+        byte type = record.get();
+        int id = record.getInt();
+
+        switch (type) {
+            case ADD:
+                TransactionStatus status = STATUSES[record.get()];
+                double amount = record.getDouble();
+                String from = getString(record);
+                String to = getString(record);
+
+                target.add(new TransactionImpl(id, status, from, to, amount));
+                break;
+            case STATUS:
+                target.changeTransactionStatus(id, STATUSES[record.get()]);
+                break;
+            case REMOVE:
+                target.removeTransactionById(id);
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static String getString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public long appendAdd(Transaction transaction) {
+        byte[] from = transaction.getFrom().getBytes(StandardCharsets.UTF_8);
+        byte[] to = transaction.getTo().getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer record = ByteBuffer.allocate(1 + Integer.BYTES + 1 + Double.BYTES + 2 * Integer.BYTES + from.length + to.length)
+                .put(ADD)
+                .putInt(transaction.getId())
+                .put((byte) transaction.getStatus().ordinal())
+                .putDouble(transaction.getAmount())
+                .putInt(from.length)
+                .put(from)
+                .putInt(to.length)
+                .put(to);
+
+        return append(record);
+    }
+
+    public long appendStatusChange(int id, TransactionStatus newStatus) {
+        return append(ByteBuffer.allocate(1 + Integer.BYTES + 1)
+                .put(STATUS)
+                .putInt(id)
+                .put((byte) newStatus.ordinal()));
+    }
+
+    public long appendRemoval(int id) {
+        return append(ByteBuffer.allocate(1 + Integer.BYTES)
+                .put(REMOVE)
+                .putInt(id));
+    }
+
+    /**
+     * @return the sequence number to pass to {@link #sync}
+     */
+    private long append(ByteBuffer record) {
+        record.flip();
+
+        synchronized (monitor) {
+            checksum.reset();
+            checksum.update(record.array(), 0, record.limit());
+
+            ensureRoom(HEADER_BYTES + record.limit());
+            pending.putInt(record.limit())
+                    .putInt((int) checksum.getValue())
+                    .put(record);
+
+            return ++appended;
+        }
+    }
+
+    private void ensureRoom(int bytes) {
+        if(pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() << 1, pending.position() + bytes));
+            pending.flip();
+            pending = grown.put(pending);
+        }
+    }
+
+    /**
+     * Blocks until the record with the given sequence number, and everything
+     * appended before it, has been forced to disk.
+     */
+    public void sync(long sequence) throws IOException {
+        ByteBuffer batch;
+        long last;
+
+        synchronized (monitor) {
+            while (true) {
+                if(failure != null) {
+                    throw new IOException("Journal can no longer be written", failure);
+                }
+
+                if(durable >= sequence) {
+                    return;
+                }
+
+                if(!flushing) {
+                    break;
+                }
+
+                try {
+                    monitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the journal");
+                }
+            }
+
+            flushing = true;
+            batch = pending;
+            pending = spare;
+            last = appended;
+        }
+
+        IOException error = null;
+
+        try {
+            batch.flip();
+
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+
+        synchronized (monitor) {
+            batch.clear();
+            spare = batch;
+            flushing = false;
+
+            if(error == null) {
+                durable = last;
+            } else {
+                failure = error;
+            }
+
+            monitor.notifyAll();
+        }
+
+        if(error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        long last;
+
+        synchronized (monitor) {
+            last = appended;
+        }
+
+        try {
+            sync(last);
+        } finally {
+            channel.close();
+        }
+    }
+
+}
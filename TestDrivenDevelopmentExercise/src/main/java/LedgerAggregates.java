@@ -0,0 +1,109 @@
+import status.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.DoubleStream;
+
+/**
+ * Running aggregates of a ledger per status, per sender, per receiver and per
+ * sender and status, keyed by the party codes of a {@link PartyDictionary}.
+ * The owner reports every mutation; reads are O(1) unless an extreme has to
+ * be recomputed, for which the owner supplies the amounts of the group.
+ */
+class LedgerAggregates {
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final RunningAggregate[] byStatus;
+    private final List<RunningAggregate> bySender;
+    private final List<RunningAggregate> byReceiver;
+    private final List<RunningAggregate[]> bySenderAndStatus;
+
+    LedgerAggregates() {
+        this.byStatus = new RunningAggregate[STATUSES.length];
+
+        for (int i = 0; i < byStatus.length; i++) {
+            byStatus[i] = new RunningAggregate();
+        }
+
+        this.bySender = new ArrayList<>();
+        this.byReceiver = new ArrayList<>();
+        this.bySenderAndStatus = new ArrayList<>();
+    }
+
+    private static RunningAggregate group(List<RunningAggregate> groups, int code) {
+        while (groups.size() <= code) {
+            groups.add(new RunningAggregate());
+        }
+
+        return groups.get(code);
+    }
+
+    private RunningAggregate senderAndStatus(int sender, TransactionStatus status) {
+        while (bySenderAndStatus.size() <= sender) {
+            bySenderAndStatus.add(null);
+        }
+
+        RunningAggregate[] groups = bySenderAndStatus.get(sender);
+
+        if(groups == null) {
+            groups = new RunningAggregate[STATUSES.length];
+            bySenderAndStatus.set(sender, groups);
+        }
+
+        if(groups[status.ordinal()] == null) {
+            groups[status.ordinal()] = new RunningAggregate();
+        }
+
+        return groups[status.ordinal()];
+    }
+
+    public void add(int sender, int receiver, TransactionStatus status, double amount) {
+        byStatus[status.ordinal()].add(amount);
+        group(bySender, sender).add(amount);
+        group(byReceiver, receiver).add(amount);
+        senderAndStatus(sender, status).add(amount);
+    }
+
+    public void remove(int sender, int receiver, TransactionStatus status, double amount) {
+        byStatus[status.ordinal()].remove(amount);
+        group(bySender, sender).remove(amount);
+        group(byReceiver, receiver).remove(amount);
+        senderAndStatus(sender, status).remove(amount);
+    }
+
+    public void changeStatus(int sender, TransactionStatus oldStatus, TransactionStatus newStatus, double amount) {
+        if(oldStatus == newStatus) {
+            return;
+        }
+
+        byStatus[oldStatus.ordinal()].remove(amount);
+        byStatus[newStatus.ordinal()].add(amount);
+        senderAndStatus(sender, oldStatus).remove(amount);
+        senderAndStatus(sender, newStatus).add(amount);
+    }
+
+    public Aggregate getByStatus(TransactionStatus status, Supplier<DoubleStream> amounts) {
+        return byStatus[status.ordinal()].get(amounts);
+    }
+
+    public Aggregate getBySender(int sender, Supplier<DoubleStream> amounts) {
+        return sender == PartyDictionary.UNKNOWN || sender >= bySender.size() ? Aggregate.EMPTY : bySender.get(sender).get(amounts);
+    }
+
+    public Aggregate getByReceiver(int receiver, Supplier<DoubleStream> amounts) {
+        return receiver == PartyDictionary.UNKNOWN || receiver >= byReceiver.size() ? Aggregate.EMPTY : byReceiver.get(receiver).get(amounts);
+    }
+
+    public Aggregate getBySenderAndStatus(int sender, TransactionStatus status, Supplier<DoubleStream> amounts) {
+        if(sender == PartyDictionary.UNKNOWN || sender >= bySenderAndStatus.size() || bySenderAndStatus.get(sender) == null) {
+            return Aggregate.EMPTY;
+        }
+
+        RunningAggregate group = bySenderAndStatus.get(sender)[status.ordinal()];
+
+        return group == null ? Aggregate.EMPTY : group.get(amounts);
+    }
+
+}
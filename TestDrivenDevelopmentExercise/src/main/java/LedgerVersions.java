@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cuts point-in-time {@link ChainblockSnapshot}s for a mutable ledger.
+ *
+ * <p>The first snapshot is built from the live transactions. From then on the
+ * owner reports every mutation, and the next snapshot applies just those
+ * changes to the persistent trees of the previous one, sharing everything
+ * else. If no snapshot is requested for a long time the backlog is dropped
+ * and the following snapshot starts over from the live data instead.
+ *
+ * <p>Every transaction in a snapshot is stamped with the order in which it
+ * arrived in the ledger, taken from the order of the live transactions when
+ * a snapshot is built and from the order of the reported changes after that.
+ * A status change keeps the stamp.
+ *
+ * <p>A snapshot rounds the bounds of its queries like its ledger, which
+ * passes its {@link TransactionOrder.Amounts}. The owner reports and lists
+ * transactions as it stores them, so the amounts of a ledger in minor units
+ * are the exact doubles of its minor units and order the snapshot's trees
+ * like the ledger's own.
+ *
+ * <p>{@link #record} and {@link #recordRemoval} may be called concurrently,
+ * as long as changes to the same id are reported in order.
+ * {@link #snapshot} must not run concurrently with any mutation.
+ */
+class LedgerVersions {
+
+    private static final int MIN_BACKLOG = 1024;
+
+    static final Comparator<Transaction> ID_COMPARATOR = Comparator.comparingInt(Transaction::getId);
+
+    private static final class Change {
+        final int id;
+        final Transaction state;
+
+        Change(int id, Transaction state) {
+            this.id = id;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Frozen copy of a transaction as held by the trees of a snapshot.
+     */
+    static final class Stamped extends TransactionImpl {
+        final long arrival;
+
+        Stamped(Transaction transaction, long arrival) {
+            super(transaction.getId(), transaction.getStatus(), transaction.getFrom(), transaction.getTo(), transaction.getAmount());
+            this.arrival = arrival;
+        }
+    }
+
+    static final Comparator<Transaction> ARRIVAL_COMPARATOR = Comparator.comparingLong(t -> ((Stamped) t).arrival);
+
+    private final TransactionOrder.Amounts amounts;
+    private final Queue<Change> changes;
+    private final AtomicInteger backlog;
+    private volatile ChainblockSnapshot latest;
+    private volatile int maxBacklog;
+    private long arrivals;
+
+    LedgerVersions() {
+        this(TransactionOrder.DOUBLES);
+    }
+
+    LedgerVersions(TransactionOrder.Amounts amounts) {
+        this.amounts = amounts;
+        this.changes = new ConcurrentLinkedQueue<>();
+        this.backlog = new AtomicInteger();
+    }
+
+    static Transaction freeze(Transaction transaction) {
+        return new TransactionImpl(transaction.getId(), transaction.getStatus(), transaction.getFrom(), transaction.getTo(), transaction.getAmount());
+    }
+
+    /**
+     * @return whether mutations have to be reported, because a snapshot has
+     * been taken that the next one can build on. Lets owners skip building
+     * the transaction they would report.
+     */
+    public boolean isRecording() {
+        return latest != null;
+    }
+
+    /**
+     * Reports that the transaction was added or changed its status.
+     */
+    public void record(Transaction transaction) {
+        if(latest != null) {
+            enqueue(new Change(transaction.getId(), freeze(transaction)));
+        }
+    }
+
+    public void recordRemoval(int id) {
+        if(latest != null) {
+            enqueue(new Change(id, null));
+        }
+    }
+
+    private void enqueue(Change change) {
+        changes.add(change);
+
+        if(backlog.incrementAndGet() > maxBacklog) {
+            latest = null;
+        }
+    }
+
+    /**
+     * @param live the transactions of the ledger, in the order they were added
+     */
+    public ChainblockSnapshot snapshot(Iterable<Transaction> live) {
+        ChainblockSnapshot previous = latest;
+        ChainblockSnapshot current = previous == null ? build(live) : apply(previous);
+
+        changes.clear();
+        backlog.set(0);
+        maxBacklog = Math.max(MIN_BACKLOG, current.getCount());
+        latest = current;
+
+        return current;
+    }
+
+    private ChainblockSnapshot build(Iterable<Transaction> live) {
+        List<Transaction> stamped = new ArrayList<>();
+
+        for (Transaction transaction : live) {
+            stamped.add(new Stamped(transaction, ++arrivals));
+        }
+
+        return ChainblockSnapshot.of(stamped, amounts);
+    }
+
+    private ChainblockSnapshot apply(ChainblockSnapshot previous) {
+        ChainblockSnapshot current = previous;
+
+        for (Change change : changes) {
+            Transaction old = current.find(change.id);
+
+            if(old != null) {
+                current = current.without(old);
+            }
+
+            if(change.state != null) {
+                current = current.with(new Stamped(change.state, old != null ? ((Stamped) old).arrival : ++arrivals));
+            }
+        }
+
+        return current;
+    }
+
+}
@@ -0,0 +1,744 @@
+import status.TransactionStatus;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only {@link Chainblock} served straight from a memory-mapped snapshot
+ * file written by {@link #write}. Opening a file maps it and checks the
+ * header and the party dictionary, so it takes the same time however many
+ * records there are; the pages are then kept or dropped by the operating
+ * system as queries touch them. {@link #verify} checks the records as well,
+ * which reads them through once.
+ *
+ * <p>The file starts with a fixed header, followed by four sections:
+ * <ul>
+ *     <li>records of {@value #RECORD_BYTES} bytes sorted by id: the id, the
+ *     dictionary codes of the sender and the receiver, the status ordinal,
+ *     padding and the amount;</li>
+ *     <li>the amount index, which lists the record numbers ordered by amount
+ *     descending, then id;</li>
+ *     <li>the rank of every record in the order the written ledger iterated
+ *     its transactions, which for a {@link ChainblockImpl} is insertion
+ *     order;</li>
+ *     <li>the party dictionary: the start offset of every name, how many
+ *     transactions every party sent and received, and the names in UTF-8.</li>
+ * </ul>
+ * The file ends with two CRC32s: one of the records, the amount index and
+ * the ranks, and one of the header, the dictionary and that first checksum.
+ *
+ * <p>{@link #getById} is a binary search over the records, and amount ranges
+ * are a binary search over the amount index followed by a walk, with the
+ * matches then put back in rank order. Queries by
+ * status or party walk the amount index and filter. Returned transactions are
+ * detached copies, and all mutating operations throw
+ * {@link UnsupportedOperationException}.
+ */
+public class MappedChainblock implements Chainblock {
+
+    private static final int MAGIC = 0x43424C4B;
+    private static final int VERSION = 4;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + 4 * Long.BYTES;
+
+    private static final int RECORD_BYTES = 24;
+    private static final int ID = 0;
+    private static final int SENDER = 4;
+    private static final int RECEIVER = 8;
+    private static final int STATUS = 12;
+    private static final int AMOUNT = 16;
+
+    /**
+     * A single mapping cannot exceed 2 GB, so sections are mapped in chunks.
+     * The chunk size is a multiple of every entry size, so no entry is split.
+     */
+    private static final long CHUNK_BYTES = 3L << 29;
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final Path path;
+    private final long recordsChecksum;
+    private final int count;
+    private final Region records;
+    private final Region byAmount;
+    private final Region ranks;
+    private final ByteBuffer dictionary;
+    private final int partyCount;
+    private final String[] names;
+    private volatile Map<String, Integer> codes;
+
+    private MappedChainblock(Path path, long recordsChecksum, int count, Region records, Region byAmount, Region ranks,
+                             ByteBuffer dictionary, int partyCount) {
+        this.path = path;
+        this.recordsChecksum = recordsChecksum;
+        this.count = count;
+        this.records = records;
+        this.byAmount = byAmount;
+        this.ranks = ranks;
+        this.dictionary = dictionary;
+        this.partyCount = partyCount;
+        this.names = new String[partyCount];
+    }
+
+    private static final class Region {
+        private final ByteBuffer[] chunks;
+
+        Region(FileChannel channel, long offset, long length) throws IOException {
+            this.chunks = new ByteBuffer[(int) ((length + CHUNK_BYTES - 1) / CHUNK_BYTES)];
+
+            for (int i = 0; i < chunks.length; i++) {
+                long start = i * CHUNK_BYTES;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, Math.min(CHUNK_BYTES, length - start));
+            }
+        }
+
+        int getInt(long position) {
+            return chunks[(int) (position / CHUNK_BYTES)].getInt((int) (position % CHUNK_BYTES));
+        }
+
+        double getDouble(long position) {
+            return chunks[(int) (position / CHUNK_BYTES)].getDouble((int) (position % CHUNK_BYTES));
+        }
+
+        byte get(long position) {
+            return chunks[(int) (position / CHUNK_BYTES)].get((int) (position % CHUNK_BYTES));
+        }
+
+        void update(CRC32 checksum) {
+            for (ByteBuffer chunk : chunks) {
+                checksum.update(chunk.duplicate());
+            }
+        }
+    }
+
+    /**
+     * Feeds what passes through it into whichever checksum is current, so
+     * the sections of the file can be summed separately in one pass.
+     */
+    private static final class SectionChecksums extends FilterOutputStream {
+        private CRC32 current;
+
+        SectionChecksums(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            current.update(b);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            current.update(b, off, len);
+            out.write(b, off, len);
+        }
+    }
+
+    /**
+     * Writes the current contents of the ledger as a snapshot file. The file
+     * is written and synced next to the target first, then moved into place
+     * and the directory synced, so an existing snapshot is never left
+     * half-written and the new one survives a crash once this returns.
+     */
+    public static void write(Chainblock ledger, Path path) throws IOException {
+        List<Transaction> iterated = new ArrayList<>(ledger.getCount());
+        ledger.forEach(iterated::add);
+
+        List<Transaction> transactions = new ArrayList<>(iterated);
+        transactions.sort(LedgerVersions.ID_COMPARATOR);
+
+        int count = transactions.size();
+        int[] ids = new int[count];
+        int[] senders = new int[count];
+        int[] receivers = new int[count];
+        PartyDictionary parties = new PartyDictionary();
+
+        for (int row = 0; row < count; row++) {
+            Transaction transaction = transactions.get(row);
+            ids[row] = transaction.getId();
+            senders[row] = parties.encode(transaction.getFrom());
+            receivers[row] = parties.encode(transaction.getTo());
+        }
+
+        int[] sentCounts = new int[parties.size()];
+        int[] receivedCounts = new int[parties.size()];
+
+        for (int row = 0; row < count; row++) {
+            sentCounts[senders[row]]++;
+            receivedCounts[receivers[row]]++;
+        }
+
+        List<Transaction> ordered = new ArrayList<>(transactions);
+        ordered.sort(TransactionOrder.AMOUNT_THEN_ID);
+
+        byte[][] names = new byte[parties.size()][];
+        long nameBytes = 0;
+
+        for (int code = 0; code < names.length; code++) {
+            names[code] = parties.decode(code).getBytes(StandardCharsets.UTF_8);
+            nameBytes += names[code].length;
+        }
+
+        int[] ranks = new int[count];
+
+        for (int rank = 0; rank < count; rank++) {
+            ranks[Arrays.binarySearch(ids, iterated.get(rank).getId())] = rank;
+        }
+
+        long indexOffset = HEADER_BYTES + (long) RECORD_BYTES * count;
+        long ranksOffset = indexOffset + (long) Integer.BYTES * count;
+        long dictionaryOffset = ranksOffset + (long) Integer.BYTES * count;
+        long dictionaryBytes = (long) Integer.BYTES * (3 * names.length + 1) + nameBytes;
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        CRC32 recordsChecksum = new CRC32();
+        CRC32 metadataChecksum = new CRC32();
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             SectionChecksums sections = new SectionChecksums(Channels.newOutputStream(channel));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(sections, 1 << 16))) {
+            sections.current = metadataChecksum;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(names.length);
+            out.writeLong(indexOffset);
+            out.writeLong(ranksOffset);
+            out.writeLong(dictionaryOffset);
+            out.writeLong(dictionaryBytes);
+            out.flush();
+            sections.current = recordsChecksum;
+
+            byte[] padding = new byte[AMOUNT - STATUS - 1];
+
+            for (int row = 0; row < count; row++) {
+                Transaction transaction = transactions.get(row);
+
+                out.writeInt(ids[row]);
+                out.writeInt(senders[row]);
+                out.writeInt(receivers[row]);
+                out.writeByte(transaction.getStatus().ordinal());
+                out.write(padding);
+                out.writeDouble(transaction.getAmount());
+            }
+
+            for (Transaction transaction : ordered) {
+                out.writeInt(Arrays.binarySearch(ids, transaction.getId()));
+            }
+
+            for (int rank : ranks) {
+                out.writeInt(rank);
+            }
+
+            out.flush();
+            sections.current = metadataChecksum;
+
+            int start = 0;
+
+            for (byte[] name : names) {
+                out.writeInt(start);
+                start += name.length;
+            }
+
+            out.writeInt(start);
+
+            for (int sent : sentCounts) {
+                out.writeInt(sent);
+            }
+
+            for (int received : receivedCounts) {
+                out.writeInt(received);
+            }
+
+            for (byte[] name : names) {
+                out.write(name);
+            }
+
+            out.writeLong(recordsChecksum.getValue());
+            out.flush();
+            out.writeLong(metadataChecksum.getValue());
+            out.flush();
+            channel.force(true);
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Makes a rename in the directory durable. Some platforms cannot open a
+     * directory for this; there is nothing more that can be done on those.
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static IOException corrupt(Path path) {
+        return new IOException("Ledger snapshot is truncated or corrupt: " + path);
+    }
+
+    /**
+     * Maps a snapshot file written by {@link #write}. The mapping stays valid
+     * after the file is closed, so nothing has to be released afterwards.
+     * Only the header and the dictionary are checked; see {@link #verify}.
+     *
+     * @throws IOException if the file is not a snapshot, is truncated, or its header or dictionary is corrupt
+     */
+    public static MappedChainblock open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if(channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a ledger snapshot: " + path);
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+
+            if(header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a ledger snapshot: " + path);
+            }
+
+            int count = header.getInt();
+            int partyCount = header.getInt();
+            long indexOffset = header.getLong();
+            long ranksOffset = header.getLong();
+            long dictionaryOffset = header.getLong();
+            long dictionaryBytes = header.getLong();
+
+            if(indexOffset != HEADER_BYTES + (long) RECORD_BYTES * count
+                    || ranksOffset != indexOffset + (long) Integer.BYTES * count
+                    || dictionaryOffset != ranksOffset + (long) Integer.BYTES * count
+                    || dictionaryBytes > Integer.MAX_VALUE
+                    || channel.size() != dictionaryOffset + dictionaryBytes + 2 * Long.BYTES) {
+                throw corrupt(path);
+            }
+
+            ByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset, dictionaryBytes);
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset + dictionaryBytes, 2 * Long.BYTES);
+            long recordsChecksum = trailer.getLong(0);
+
+            CRC32 metadataChecksum = new CRC32();
+            metadataChecksum.update(header.rewind());
+            metadataChecksum.update(dictionary.duplicate());
+            metadataChecksum.update(trailer.duplicate().limit(Long.BYTES));
+
+            if(metadataChecksum.getValue() != trailer.getLong(Long.BYTES)) {
+                throw corrupt(path);
+            }
+
+            return new MappedChainblock(path, recordsChecksum, count,
+                    new Region(channel, HEADER_BYTES, indexOffset - HEADER_BYTES),
+                    new Region(channel, indexOffset, ranksOffset - indexOffset),
+                    new Region(channel, ranksOffset, dictionaryOffset - ranksOffset),
+                    dictionary,
+                    partyCount);
+        }
+    }
+
+    /**
+     * Checks the records, the amount index and the ranks against their
+     * checksum, reading every page of them once.
+     *
+     * @throws IOException if any of them is corrupt
+     */
+    public void verify() throws IOException {
+        CRC32 checksum = new CRC32();
+        records.update(checksum);
+        byAmount.update(checksum);
+        ranks.update(checksum);
+
+        if(checksum.getValue() != recordsChecksum) {
+            throw corrupt(path);
+        }
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Mapped ledgers are read-only");
+    }
+
+    private int id(int row) {
+        return records.getInt((long) row * RECORD_BYTES + ID);
+    }
+
+    private int sender(int row) {
+        return records.getInt((long) row * RECORD_BYTES + SENDER);
+    }
+
+    private int receiver(int row) {
+        return records.getInt((long) row * RECORD_BYTES + RECEIVER);
+    }
+
+    private byte status(int row) {
+        return records.get((long) row * RECORD_BYTES + STATUS);
+    }
+
+    private double amount(int row) {
+        return records.getDouble((long) row * RECORD_BYTES + AMOUNT);
+    }
+
+    private int rowAt(int position) {
+        return byAmount.getInt((long) position * Integer.BYTES);
+    }
+
+    private int rank(int row) {
+        return ranks.getInt((long) row * Integer.BYTES);
+    }
+
+    private String decode(int code) {
+        String name = names[code];
+
+        if(name == null) {
+            int start = dictionary.getInt(code * Integer.BYTES);
+            int end = dictionary.getInt((code + 1) * Integer.BYTES);
+            byte[] bytes = new byte[end - start];
+
+            ByteBuffer names = dictionary.duplicate();
+            names.position((3 * partyCount + 1) * Integer.BYTES + start);
+            names.get(bytes);
+
+            name = new String(bytes, StandardCharsets.UTF_8);
+            this.names[code] = name;
+        }
+
+        return name;
+    }
+
+    /**
+     * @return the code of the party, or {@link PartyDictionary#UNKNOWN}; the
+     * reverse dictionary is only built on the first lookup by name
+     */
+    private int find(String party) {
+        Map<String, Integer> codes = this.codes;
+
+        if(codes == null) {
+            codes = new HashMap<>();
+
+            for (int code = 0; code < partyCount; code++) {
+                codes.put(decode(code), code);
+            }
+
+            this.codes = codes;
+        }
+
+        return codes.getOrDefault(party, PartyDictionary.UNKNOWN);
+    }
+
+    private int ensureSender(String sender) {
+        int code = find(sender);
+
+        if(code == PartyDictionary.UNKNOWN || dictionary.getInt((partyCount + 1 + code) * Integer.BYTES) == 0) {
+            throw new IllegalArgumentException("Sender " + sender + " cannot be found in the database");
+        }
+
+        return code;
+    }
+
+    private int ensureReceiver(String receiver) {
+        int code = find(receiver);
+
+        if(code == PartyDictionary.UNKNOWN || dictionary.getInt((2 * partyCount + 1 + code) * Integer.BYTES) == 0) {
+            throw new IllegalArgumentException("Receiver " + receiver + " cannot be found in the database");
+        }
+
+        return code;
+    }
+
+    private Transaction view(int row) {
+        return new TransactionImpl(id(row), STATUSES[status(row)], decode(sender(row)), decode(receiver(row)), amount(row));
+    }
+
+    /**
+     * @return the record with the given id, or -1
+     */
+    private int rowOf(int id) {
+        int low = 0;
+        int high = count - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = Integer.compare(id(middle), id);
+
+            if(result == 0) {
+                return middle;
+            } else if(result < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the first position in the amount index whose record has been
+     * reached, for a test that holds from some position to the end
+     */
+    private int seek(IntPredicate reached) {
+        int low = 0;
+        int high = count;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if(reached.test(rowAt(middle))) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return low;
+    }
+
+    private boolean isAfter(int row, double amount, int id) {
+        int result = Double.compare(amount, amount(row));
+
+        return result > 0 || (result == 0 && id(row) > id);
+    }
+
+    /**
+     * Walks the amount index from the given position for as long as the
+     * records satisfy {@code within}.
+     *
+     * @return up to {@code limit} accepted records, in amount index order
+     */
+    private int[] rows(int from, IntPredicate within, IntPredicate accept, int limit) {
+        int[] rows = new int[Math.min(16, limit)];
+        int length = 0;
+
+        for (int position = from; position < count && length < limit; position++) {
+            int row = rowAt(position);
+
+            if(!within.test(row)) {
+                break;
+            }
+
+            if(accept.test(row)) {
+                if(length == rows.length) {
+                    rows = Arrays.copyOf(rows, length << 1);
+                }
+
+                rows[length++] = row;
+            }
+        }
+
+        return Arrays.copyOf(rows, length);
+    }
+
+    private int[] rows(int from, IntPredicate within, IntPredicate accept) {
+        return rows(from, within, accept, Integer.MAX_VALUE);
+    }
+
+    private List<Transaction> views(int[] rows, int offset) {
+        List<Transaction> transactions = new ArrayList<>(Math.max(0, rows.length - offset));
+
+        for (int i = offset; i < rows.length; i++) {
+            transactions.add(view(rows[i]));
+        }
+
+        return transactions;
+    }
+
+    private int[] getExistingRowsByStatus(TransactionStatus status, String messageFormat) {
+        byte ordinal = (byte) status.ordinal();
+        int[] rows = rows(0, row -> true, row -> status(row) == ordinal);
+
+        if(rows.length == 0) {
+            throw new IllegalArgumentException(String.format(messageFormat, status));
+        }
+
+        return rows;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void add(Transaction transaction) {
+        throw readOnly();
+    }
+
+    public boolean contains(Transaction transaction) {
+        int row = rowOf(transaction.getId());
+
+        return row != -1 && transaction.equals(view(row));
+    }
+
+    public boolean contains(int id) {
+        return rowOf(id) != -1;
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        throw readOnly();
+    }
+
+    public void removeTransactionById(int id) {
+        throw readOnly();
+    }
+
+    public Transaction getById(int id) {
+        int row = rowOf(id);
+
+        if(row == -1) {
+            throw new IllegalArgumentException("Cannot find transaction that does not exits");
+        }
+
+        return view(row);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return views(getExistingRowsByStatus(status, "Transactions with status %s are not present"), 0);
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        int[] rows = getExistingRowsByStatus(status, "There are no senders with status %s");
+        List<String> senderNames = new ArrayList<>(rows.length);
+
+        for (int row : rows) {
+            senderNames.add(decode(sender(row)));
+        }
+
+        return senderNames;
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        int[] rows = getExistingRowsByStatus(status, "There are no receivers with status %s");
+        List<String> receiverNames = new ArrayList<>(rows.length);
+
+        for (int row : rows) {
+            receiverNames.add(decode(receiver(row)));
+        }
+
+        return receiverNames;
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        List<Transaction> transactions = new ArrayList<>(count);
+
+        for (int position = count - 1; position >= 0; position--) {
+            transactions.add(view(rowAt(position)));
+        }
+
+        return transactions;
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        int code = ensureSender(sender);
+
+        return views(rows(0, row -> true, row -> sender(row) == code), 0);
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        int code = ensureReceiver(receiver);
+
+        return views(rows(0, row -> true, row -> receiver(row) == code), 0);
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        byte ordinal = (byte) status.ordinal();
+        int from = seek(row -> Double.compare(amount(row), amount) <= 0);
+
+        return views(rows(from, row -> true, row -> status(row) == ordinal), 0);
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        int code = ensureSender(sender);
+
+        return views(rows(0, row -> Double.compare(amount(row), amount) > 0, row -> sender(row) == code), 0);
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        int code = ensureReceiver(receiver);
+        int from = seek(row -> Double.compare(amount(row), hi) < 0);
+
+        return views(rows(from, row -> Double.compare(amount(row), lo) >= 0, row -> receiver(row) == code), 0);
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        int from = seek(row -> Double.compare(amount(row), hi) <= 0);
+        int[] rows = rows(from, row -> Double.compare(amount(row), lo) >= 0, row -> true);
+
+        return views(RowScan.sort(rows, (first, second) -> Integer.compare(rank(first), rank(second))), 0);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(int offset, int limit) {
+        Chainblock.ensurePage(offset, limit);
+
+        return views(rows(Math.min(offset, count), row -> true, row -> true, limit), 0);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenByIdAfter(double amount, int id, int limit) {
+        Chainblock.ensurePage(0, limit);
+
+        return views(rows(seek(row -> isAfter(row, amount, id)), row -> true, row -> true, limit), 0);
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescending(String sender, int offset, int limit) {
+        Chainblock.ensurePage(offset, limit);
+
+        int code = ensureSender(sender);
+        int[] rows = rows(0, row -> true, row -> sender(row) == code, (int) Math.min(Integer.MAX_VALUE, (long) offset + limit));
+
+        return views(rows, Math.min(offset, rows.length));
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescendingAfter(String sender, double amount, int id, int limit) {
+        Chainblock.ensurePage(0, limit);
+
+        int code = ensureSender(sender);
+
+        return views(rows(seek(row -> isAfter(row, amount, id)), row -> true, row -> sender(row) == code, limit), 0);
+    }
+
+    public Chainblock snapshot() {
+        return this;
+    }
+
+    /**
+     * Iterates in id order.
+     */
+    public Iterator<Transaction> iterator() {
+        return new Iterator<Transaction>() {
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < count;
+            }
+
+            @Override
+            public Transaction next() {
+                if(row >= count) {
+                    throw new NoSuchElementException();
+                }
+
+                return view(row++);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,549 @@
+import status.TransactionStatus;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * {@link Chainblock} that keeps its transactions outside the Java heap, as
+ * fixed-size records in direct {@link ByteBuffer}s. Party names are
+ * dictionary-encoded, so a record is {@value #RECORD_BYTES} bytes: the id,
+ * the codes of the sender and the receiver, the status ordinal and the
+ * amount. Storage grows one chunk of records at a time and records never
+ * move; the slots of removed transactions are reused by later additions.
+ *
+ * <p>What stays on the heap is the party dictionary, per-party counters, the
+ * id hash table and the list of free records. All of them are primitive
+ * arrays apart from the dictionary, so the garbage collector has next to
+ * nothing to trace however large the ledger grows.
+ *
+ * <p>Returned transactions are flyweight views that read through to their
+ * record, so they reflect later status changes. Changing the status of a
+ * view goes through {@link #changeTransactionStatus}; the other setters throw
+ * {@link UnsupportedOperationException}, and a view of a removed transaction
+ * throws {@link IllegalStateException}. Queries scan the records; iteration
+ * follows storage order. Given a {@link ForkJoinPool}, scans over at least a
+ * threshold of records run in parallel, as in {@link ColumnarChainblock}.
+ */
+public class OffHeapChainblock implements Chainblock, ScanReporting {
+
+    private static final int RECORD_BYTES = 24;
+    private static final int ID = 0;
+    private static final int SENDER = 4;
+    private static final int RECEIVER = 8;
+    private static final int STATUS = 12;
+    private static final int AMOUNT = 16;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    private static final int MIN_CAPACITY = 16;
+    private static final byte REMOVED = -1;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private final PartyDictionary parties;
+    private final LedgerVersions versions;
+    private final ChangeFeed feed;
+    private volatile ScanCounter scans;
+    private final IntUnaryOperator idAt;
+    private int[] sentCounts;
+    private int[] receivedCounts;
+
+    private ByteBuffer[] chunks;
+    private IdSlots slots;
+    private int slotCapacity;
+    private int[] free;
+    private int freeCount;
+    private int count;
+    private int end;
+    private int modCount;
+
+    public OffHeapChainblock() {
+        this(null, ColumnarChainblock.DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public OffHeapChainblock(ForkJoinPool pool) {
+        this(pool, ColumnarChainblock.DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param pool              the pool that large scans run on, or {@code null} to scan on the calling thread
+     * @param parallelThreshold the fewest records that are scanned in parallel
+     */
+    public OffHeapChainblock(ForkJoinPool pool, int parallelThreshold) {
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+        this.parties = new PartyDictionary();
+        this.versions = new LedgerVersions();
+        this.feed = new ChangeFeed();
+        this.scans = ScanCounter.NONE;
+        this.idAt = this::id;
+        this.sentCounts = new int[MIN_CAPACITY];
+        this.receivedCounts = new int[MIN_CAPACITY];
+        this.chunks = new ByteBuffer[0];
+        this.slotCapacity = MIN_CAPACITY;
+        this.slots = new IdSlots(slotCapacity);
+        this.free = new int[MIN_CAPACITY];
+    }
+
+    private final class Record implements Transaction {
+
+        private final int id;
+        private int row;
+
+        Record(int id, int row) {
+            this.id = id;
+            this.row = row;
+        }
+
+        /**
+         * Re-resolves the record if its slot was freed and reused since the view was created.
+         */
+        private int row() {
+            if(status(row) == REMOVED || OffHeapChainblock.this.id(row) != id) {
+                row = slots.positionOf(id, idAt);
+
+                if(row == IdSlots.EMPTY) {
+                    throw new IllegalStateException("Transaction " + id + " is no longer in the ledger");
+                }
+            }
+
+            return row;
+        }
+
+        @Override
+        public void setId(int id) {
+            throw unsupportedChange();
+        }
+
+        @Override
+        public void setStatus(TransactionStatus status) {
+            changeTransactionStatus(id, status);
+        }
+
+        @Override
+        public void setFrom(String from) {
+            throw unsupportedChange();
+        }
+
+        @Override
+        public void setTo(String to) {
+            throw unsupportedChange();
+        }
+
+        @Override
+        public void setAmount(double amount) {
+            throw unsupportedChange();
+        }
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public TransactionStatus getStatus() {
+            return STATUSES[status(row())];
+        }
+
+        @Override
+        public String getFrom() {
+            return parties.decode(sender(row()));
+        }
+
+        @Override
+        public String getTo() {
+            return parties.decode(receiver(row()));
+        }
+
+        @Override
+        public double getAmount() {
+            return amount(row());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("id: %d, status: %s from: %s, to: %s, amount: %.2f", id, getStatus().name(), getFrom(), getTo(), getAmount());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return Transaction.equals(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return Transaction.hashCode(this);
+        }
+
+    }
+
+    private static UnsupportedOperationException unsupportedChange() {
+        return new UnsupportedOperationException("Only the status of a stored transaction can change");
+    }
+
+    private ByteBuffer chunk(int row) {
+        return chunks[row >>> CHUNK_SHIFT];
+    }
+
+    private static int offset(int row) {
+        return (row & (CHUNK_ROWS - 1)) * RECORD_BYTES;
+    }
+
+    private int id(int row) {
+        return chunk(row).getInt(offset(row) + ID);
+    }
+
+    private int sender(int row) {
+        return chunk(row).getInt(offset(row) + SENDER);
+    }
+
+    private int receiver(int row) {
+        return chunk(row).getInt(offset(row) + RECEIVER);
+    }
+
+    private byte status(int row) {
+        return chunk(row).get(offset(row) + STATUS);
+    }
+
+    private double amount(int row) {
+        return chunk(row).getDouble(offset(row) + AMOUNT);
+    }
+
+    /**
+     * @return a record that is not in use, appending a new chunk if every existing one is full
+     */
+    private int allocateRow() {
+        if(freeCount > 0) {
+            return free[--freeCount];
+        }
+
+        if(end == chunks.length << CHUNK_SHIFT) {
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = ByteBuffer.allocateDirect(CHUNK_ROWS * RECORD_BYTES);
+        }
+
+        if(end == slotCapacity) {
+            rehash(slotCapacity << 1);
+        }
+
+        return end++;
+    }
+
+    private void rehash(int capacity) {
+        slotCapacity = capacity;
+        slots = new IdSlots(capacity);
+
+        for (int row = 0; row < end; row++) {
+            if(status(row) != REMOVED) {
+                slots.set(slots.slotOf(id(row), idAt), row);
+            }
+        }
+    }
+
+    private int encodeParty(String name) {
+        int code = parties.encode(name);
+
+        if(code == sentCounts.length) {
+            sentCounts = Arrays.copyOf(sentCounts, code << 1);
+            receivedCounts = Arrays.copyOf(receivedCounts, code << 1);
+        }
+
+        return code;
+    }
+
+    private int ensureRow(int id, String message) {
+        int row = slots.positionOf(id, idAt);
+
+        if(row == IdSlots.EMPTY) {
+            throw new IllegalArgumentException(message);
+        }
+
+        return row;
+    }
+
+    private int ensureSender(String sender) {
+        int code = parties.find(sender);
+
+        if(code == PartyDictionary.UNKNOWN || sentCounts[code] == 0) {
+            throw new IllegalArgumentException("Sender " + sender + " cannot be found in the database");
+        }
+
+        return code;
+    }
+
+    private int ensureReceiver(String receiver) {
+        int code = parties.find(receiver);
+
+        if(code == PartyDictionary.UNKNOWN || receivedCounts[code] == 0) {
+            throw new IllegalArgumentException("Receiver " + receiver + " cannot be found in the database");
+        }
+
+        return code;
+    }
+
+    private Transaction view(int row) {
+        return new Record(id(row), row);
+    }
+
+    /**
+     * @return the live records accepted by the filter, in amount-descending, then id order
+     */
+    private int[] sortedRows(IntPredicate filter) {
+        return sortedRows(filter, this::compareRows);
+    }
+
+    private int[] sortedRows(IntPredicate filter, RowScan.RowOrder order) {
+        scans.add(end);
+
+        return RowScan.sorted(end, row -> status(row) != REMOVED && filter.test(row), order, Integer.MAX_VALUE, pool, parallelThreshold);
+    }
+
+    private int compareRows(int first, int second) {
+        int result = Double.compare(amount(second), amount(first));
+
+        return result != 0 ? result : Integer.compare(id(first), id(second));
+    }
+
+    private List<Transaction> views(int[] rows) {
+        List<Transaction> transactions = new ArrayList<>(rows.length);
+
+        for (int row : rows) {
+            transactions.add(view(row));
+        }
+
+        return transactions;
+    }
+
+    private int[] getExistingRowsByStatus(TransactionStatus status, String messageFormat) {
+        byte ordinal = (byte) status.ordinal();
+        int[] rows = sortedRows(row -> status(row) == ordinal);
+
+        if(rows.length == 0) {
+            throw new IllegalArgumentException(String.format(messageFormat, status));
+        }
+
+        return rows;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void add(Transaction transaction) {
+        int id = transaction.getId();
+
+        if(slots.positionOf(id, idAt) != IdSlots.EMPTY) {
+            return;
+        }
+
+        int sender = encodeParty(transaction.getFrom());
+        int receiver = encodeParty(transaction.getTo());
+        int row = allocateRow();
+
+        chunk(row).putInt(offset(row) + ID, id)
+                .putInt(offset(row) + SENDER, sender)
+                .putInt(offset(row) + RECEIVER, receiver)
+                .put(offset(row) + STATUS, (byte) transaction.getStatus().ordinal())
+                .putDouble(offset(row) + AMOUNT, transaction.getAmount());
+        slots.set(slots.slotOf(id, idAt), row);
+
+        sentCounts[sender]++;
+        receivedCounts[receiver]++;
+        count++;
+        modCount++;
+
+        versions.record(transaction);
+        feed.added(transaction);
+    }
+
+    public boolean contains(Transaction transaction) {
+        int row = slots.positionOf(transaction.getId(), idAt);
+
+        return row != IdSlots.EMPTY && transaction.equals(view(row));
+    }
+
+    public boolean contains(int id) {
+        return slots.positionOf(id, idAt) != IdSlots.EMPTY;
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        int row = ensureRow(id, "Cannot change status of non-existing transaction");
+
+        TransactionStatus previousStatus = STATUSES[status(row)];
+        chunk(row).put(offset(row) + STATUS, (byte) newStatus.ordinal());
+
+        if(versions.isRecording() || feed.hasSubscribers()) {
+            Transaction transaction = view(row);
+            versions.record(transaction);
+            feed.statusChanged(transaction, previousStatus);
+        } else {
+            feed.skip(1);
+        }
+    }
+
+    public void removeTransactionById(int id) {
+        int slot = slots.slotOf(id, idAt);
+        int row = slots.get(slot);
+
+        if(row == IdSlots.EMPTY) {
+            throw new IllegalArgumentException("Cannot remove transaction that does not exits");
+        }
+
+        Transaction removed = feed.hasSubscribers() ? LedgerVersions.freeze(view(row)) : null;
+
+        slots.delete(slot, idAt);
+        chunk(row).put(offset(row) + STATUS, REMOVED);
+        sentCounts[sender(row)]--;
+        receivedCounts[receiver(row)]--;
+
+        if(freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount << 1);
+        }
+
+        free[freeCount++] = row;
+        count--;
+        modCount++;
+
+        versions.recordRemoval(id);
+
+        if(removed != null) {
+            feed.removed(removed);
+        } else {
+            feed.skip(1);
+        }
+    }
+
+    public Transaction getById(int id) {
+        return view(ensureRow(id, "Cannot find transaction that does not exits"));
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return views(getExistingRowsByStatus(status, "Transactions with status %s are not present"));
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        int[] rows = getExistingRowsByStatus(status, "There are no senders with status %s");
+        List<String> senderNames = new ArrayList<>(rows.length);
+
+        for (int row : rows) {
+            senderNames.add(parties.decode(sender(row)));
+        }
+
+        return senderNames;
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        int[] rows = getExistingRowsByStatus(status, "There are no receivers with status %s");
+        List<String> receiverNames = new ArrayList<>(rows.length);
+
+        for (int row : rows) {
+            receiverNames.add(parties.decode(receiver(row)));
+        }
+
+        return receiverNames;
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        List<Transaction> transactions = views(sortedRows(row -> true));
+        Collections.reverse(transactions);
+
+        return transactions;
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        int code = ensureSender(sender);
+
+        return views(sortedRows(row -> sender(row) == code));
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        int code = ensureReceiver(receiver);
+
+        return views(sortedRows(row -> receiver(row) == code));
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        byte ordinal = (byte) status.ordinal();
+
+        return views(sortedRows(row -> status(row) == ordinal && amount(row) <= amount));
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        int code = ensureSender(sender);
+
+        return views(sortedRows(row -> sender(row) == code && amount(row) > amount));
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        int code = ensureReceiver(receiver);
+
+        return views(sortedRows(row -> receiver(row) == code && amount(row) >= lo && amount(row) < hi));
+    }
+
+    /**
+     * Returns the matches in storage order, like the iterator. That is the
+     * order they were added in, until the records of removed transactions
+     * are reused.
+     */
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return views(sortedRows(row -> amount(row) >= lo && amount(row) <= hi, RowScan.STORAGE_ORDER));
+    }
+
+    public ScanCounter scans() {
+        return scans;
+    }
+
+    public void reportScansTo(ScanCounter counter) {
+        this.scans = counter;
+    }
+
+    public Flow.Publisher<List<ChangeEvent>> changes() {
+        return feed;
+    }
+
+    public Chainblock snapshot() {
+        return versions.snapshot(this);
+    }
+
+    public Iterator<Transaction> iterator() {
+        return new Iterator<Transaction>() {
+            private final int expectedModCount = modCount;
+            private int row = skipRemoved(0);
+
+            private int skipRemoved(int from) {
+                while (from < end && status(from) == REMOVED) {
+                    from++;
+                }
+
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return row < end;
+            }
+
+            @Override
+            public Transaction next() {
+                if(modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+
+                if(row >= end) {
+                    throw new NoSuchElementException();
+                }
+
+                Transaction transaction = view(row);
+                row = skipRemoved(row + 1);
+
+                return transaction;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * What an {@link InstrumentedChainblock} measured for one {@link Chainblock}
+ * method: how often it was called and failed, how long the calls took in
+ * nanoseconds, how many elements the results had and how many transactions
+ * the ledger visited to produce them. Failed calls count towards the
+ * latencies and the scans, but have no result size.
+ */
+public final class OperationStatistics {
+
+    private final String operation;
+    private final long calls;
+    private final long failures;
+    private final Distribution latencyNanos;
+    private final Distribution resultSizes;
+    private final Distribution scanned;
+
+    OperationStatistics(String operation, long calls, long failures, Distribution latencyNanos, Distribution resultSizes, Distribution scanned) {
+        this.operation = operation;
+        this.calls = calls;
+        this.failures = failures;
+        this.latencyNanos = latencyNanos;
+        this.resultSizes = resultSizes;
+        this.scanned = scanned;
+    }
+
+    /**
+     * @return the name of the method, with the parameter types of overloads
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public Distribution getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public Distribution getResultSizes() {
+        return resultSizes;
+    }
+
+    public Distribution getScanned() {
+        return scanned;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s - calls: %d, failures: %d, latency (ns): [%s], result size: [%s], scanned: [%s]",
+                operation, calls, failures, latencyNanos, resultSizes, scanned);
+    }
+
+    String toJson() {
+        return String.format("{\"operation\":\"%s\",\"calls\":%d,\"failures\":%d,\"latencyNanos\":%s,\"resultSizes\":%s,\"scanned\":%s}",
+                operation, calls, failures, latencyNanos.toJson(), resultSizes.toJson(), scanned.toJson());
+    }
+
+}
@@ -0,0 +1,54 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns every distinct sender or receiver name a compact int code, starting
+ * from zero. Codes are never reused, so they can safely index plain arrays.
+ */
+class PartyDictionary {
+
+    static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> codes;
+    private final List<String> names;
+
+    PartyDictionary() {
+        this.codes = new HashMap<>();
+        this.names = new ArrayList<>();
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @return the code of the name, registering it first if it has not been seen before
+     */
+    public int encode(String name) {
+        Integer code = codes.get(name);
+
+        if(code == null) {
+            code = names.size();
+            codes.put(name, code);
+            names.add(name);
+        }
+
+        return code;
+    }
+
+    /**
+     * @return the code of the name, or {@link #UNKNOWN} if it has never been registered
+     */
+    public int find(String name) {
+        Integer code = codes.get(name);
+
+        return code == null ? UNKNOWN : code;
+    }
+
+    public String decode(int code) {
+        return names.get(code);
+    }
+
+}
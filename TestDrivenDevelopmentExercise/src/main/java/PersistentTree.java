@@ -0,0 +1,285 @@
+import java.util.*;
+
+/**
+ * Immutable AVL tree. Every update copies only the path from the root to the
+ * changed node and shares the rest with the previous version, so old versions
+ * stay valid and cost nothing to keep around.
+ */
+final class PersistentTree<E> implements Iterable<E> {
+
+    private static final class Node<E> {
+        final E value;
+        final Node<E> left;
+        final Node<E> right;
+        final int height;
+        final int size;
+
+        Node(E value, Node<E> left, Node<E> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    private final Comparator<? super E> comparator;
+    private final Node<E> root;
+
+    private PersistentTree(Comparator<? super E> comparator, Node<E> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    static <E> PersistentTree<E> empty(Comparator<? super E> comparator) {
+        return new PersistentTree<>(comparator, null);
+    }
+
+    /**
+     * Builds a perfectly balanced tree in linear time from values already sorted by the comparator.
+     */
+    static <E> PersistentTree<E> ofSorted(Comparator<? super E> comparator, List<E> sorted) {
+        return new PersistentTree<>(comparator, build(sorted, 0, sorted.size()));
+    }
+
+    private static <E> Node<E> build(List<E> sorted, int from, int to) {
+        if(from >= to) {
+            return null;
+        }
+
+        int middle = (from + to) >>> 1;
+
+        return new Node<>(sorted.get(middle), build(sorted, from, middle), build(sorted, middle + 1, to));
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * @return the stored value equal to the probe under the comparator, or {@code null}
+     */
+    public E find(E probe) {
+        Node<E> node = root;
+
+        while (node != null) {
+            int result = comparator.compare(probe, node.value);
+
+            if(result == 0) {
+                return node.value;
+            }
+
+            node = result < 0 ? node.left : node.right;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return a tree that also holds the value, replacing any equal one
+     */
+    public PersistentTree<E> insert(E value) {
+        return new PersistentTree<>(comparator, insert(root, value));
+    }
+
+    /**
+     * @return a tree without the value equal to the probe, or this tree if there is none
+     */
+    public PersistentTree<E> remove(E probe) {
+        Node<E> newRoot = remove(root, probe);
+
+        return newRoot == root ? this : new PersistentTree<>(comparator, newRoot);
+    }
+
+    private Node<E> insert(Node<E> node, E value) {
+        if(node == null) {
+            return new Node<>(value, null, null);
+        }
+
+        int result = comparator.compare(value, node.value);
+
+        if(result < 0) {
+            return balance(node.value, insert(node.left, value), node.right);
+        }
+
+        if(result > 0) {
+            return balance(node.value, node.left, insert(node.right, value));
+        }
+
+        return new Node<>(value, node.left, node.right);
+    }
+
+    private Node<E> remove(Node<E> node, E probe) {
+        if(node == null) {
+            return null;
+        }
+
+        int result = comparator.compare(probe, node.value);
+
+        if(result < 0) {
+            Node<E> left = remove(node.left, probe);
+            return left == node.left ? node : balance(node.value, left, node.right);
+        }
+
+        if(result > 0) {
+            Node<E> right = remove(node.right, probe);
+            return right == node.right ? node : balance(node.value, node.left, right);
+        }
+
+        if(node.left == null) {
+            return node.right;
+        }
+
+        if(node.right == null) {
+            return node.left;
+        }
+
+        Node<E> successor = node.right;
+
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+
+        return balance(successor.value, node.left, remove(node.right, successor.value));
+    }
+
+    private static <E> Node<E> balance(E value, Node<E> left, Node<E> right) {
+        if(height(left) > height(right) + 1) {
+            if(height(left.left) < height(left.right)) {
+                left = rotateLeft(left.value, left.left, left.right);
+            }
+
+            return rotateRight(value, left, right);
+        }
+
+        if(height(right) > height(left) + 1) {
+            if(height(right.right) < height(right.left)) {
+                right = rotateRight(right.value, right.left, right.right);
+            }
+
+            return rotateLeft(value, left, right);
+        }
+
+        return new Node<>(value, left, right);
+    }
+
+    private static <E> Node<E> rotateRight(E value, Node<E> left, Node<E> right) {
+        return new Node<>(left.value, left.left, new Node<>(value, left.right, right));
+    }
+
+    private static <E> Node<E> rotateLeft(E value, Node<E> left, Node<E> right) {
+        return new Node<>(right.value, new Node<>(value, left, right.left), right.right);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return range(null, true, null, true);
+    }
+
+    public Iterator<E> descendingIterator() {
+        return new RangeIterator(null, true, null, true, true);
+    }
+
+    /**
+     * Iterates in ascending order over the values between the two bounds.
+     * A {@code null} bound leaves that side of the range open.
+     */
+    public Iterator<E> range(E from, boolean fromInclusive, E to, boolean toInclusive) {
+        return new RangeIterator(from, fromInclusive, to, toInclusive, false);
+    }
+
+    /**
+     * In-order walk with an explicit stack; the start bound is found by
+     * descending from the root, the end bound is checked per value.
+     */
+    private final class RangeIterator implements Iterator<E> {
+
+        private final Deque<Node<E>> path;
+        private final E end;
+        private final boolean endInclusive;
+        private final boolean descending;
+        private E next;
+
+        RangeIterator(E from, boolean fromInclusive, E to, boolean toInclusive, boolean descending) {
+            this.path = new ArrayDeque<>();
+            this.end = descending ? from : to;
+            this.endInclusive = descending ? fromInclusive : toInclusive;
+            this.descending = descending;
+
+            E start = descending ? to : from;
+            boolean startInclusive = descending ? toInclusive : fromInclusive;
+
+            for (Node<E> node = root; node != null; ) {
+                int result = start == null ? -1 : order(start, node.value);
+
+                if(result < 0 || (result == 0 && startInclusive)) {
+                    path.push(node);
+                    node = descending ? node.right : node.left;
+                } else {
+                    node = descending ? node.left : node.right;
+                }
+            }
+
+            advance();
+        }
+
+        private int order(E first, E second) {
+            int result = comparator.compare(first, second);
+            return descending ? -result : result;
+        }
+
+        private void advance() {
+            if(path.isEmpty()) {
+                next = null;
+                return;
+            }
+
+            Node<E> node = path.pop();
+            next = node.value;
+
+            if(end != null) {
+                int result = order(next, end);
+
+                if(result > 0 || (result == 0 && !endInclusive)) {
+                    path.clear();
+                    next = null;
+                    return;
+                }
+            }
+
+            for (Node<E> child = descending ? node.left : node.right; child != null; child = descending ? child.right : child.left) {
+                path.push(child);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if(next == null) {
+                throw new NoSuchElementException();
+            }
+
+            E value = next;
+            advance();
+
+            return value;
+        }
+    }
+
+}
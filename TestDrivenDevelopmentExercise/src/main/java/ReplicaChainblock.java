@@ -0,0 +1,280 @@
+import status.TransactionStatus;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only {@link Chainblock} that follows a {@link ReplicationPrimary}.
+ *
+ * <p>The replica connects to the primary, loads its snapshot and then applies
+ * the primary's changes on a background thread as they arrive, into a
+ * {@link ConcurrentChainblock} that serves every query. Queries may therefore
+ * see a batch of changes half applied. Every mutating operation throws
+ * {@link UnsupportedOperationException}.
+ *
+ * <p>The replica reports how far behind the primary it is, both in changes
+ * and in time. The time lag compares the clocks of the two machines. If the
+ * connection is lost the replica keeps serving its last state; it does not
+ * reconnect.
+ */
+public class ReplicaChainblock implements Chainblock, Closeable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Thread receiver;
+
+    private volatile Chainblock ledger;
+    private volatile long appliedSequence;
+    private volatile long primarySequence;
+    private volatile long lagMillis;
+    private volatile boolean connected;
+
+    /**
+     * Connects to the primary and returns once its snapshot is loaded.
+     */
+    public ReplicaChainblock(InetSocketAddress primary) throws IOException {
+        this.socket = new Socket();
+
+        try {
+            this.socket.setTcpNoDelay(true);
+            this.socket.connect(primary);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            if(in.readByte() != ReplicationProtocol.SNAPSHOT) {
+                throw new IOException("Primary did not start with a snapshot");
+            }
+
+            load();
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+
+        this.connected = true;
+        this.receiver = new Thread(this::receive, "chainblock-replica");
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Replicas are read-only");
+    }
+
+    /**
+     * Replaces the ledger with the snapshot that follows.
+     */
+    private void load() throws IOException {
+        Chainblock loaded = new ConcurrentChainblock();
+        loaded.addAll(ReplicationProtocol.readSnapshot(in));
+        ledger = loaded;
+
+        acknowledge();
+    }
+
+    private void apply() throws IOException {
+        long head = in.readLong();
+        long sentMillis = in.readLong();
+        int count = in.readInt();
+
+        appliedSequence = ReplicationProtocol.applyBatch(in, count, ledger, appliedSequence);
+        primarySequence = Math.max(primarySequence, head);
+        lagMillis = Math.max(0, System.currentTimeMillis() - sentMillis);
+
+        acknowledge();
+    }
+
+    private void acknowledge() throws IOException {
+        out.writeLong(appliedSequence);
+        out.flush();
+    }
+
+    private void receive() {
+        try {
+            while (true) {
+                byte frame = in.readByte();
+
+                if(frame == ReplicationProtocol.SNAPSHOT) {
+                    load();
+                } else if(frame == ReplicationProtocol.BATCH) {
+                    apply();
+                } else {
+                    throw new IOException("Unknown replication frame " + frame);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            connected = false;
+
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // The primary will see the connection drop.
+            }
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return the sequence number of the last change applied, 0 before the first
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * @return the number of changes the primary had made, when it last sent
+     * a batch, that are not applied yet
+     */
+    public long getLag() {
+        return Math.max(0, primarySequence - appliedSequence);
+    }
+
+    /**
+     * @return the time between the primary sending the last batch and the
+     * replica finishing applying it
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    public int getCount() {
+        return ledger.getCount();
+    }
+
+    public void add(Transaction transaction) {
+        throw readOnly();
+    }
+
+    public int addAll(Collection<? extends Transaction> transactions) {
+        throw readOnly();
+    }
+
+    public boolean contains(Transaction transaction) {
+        return ledger.contains(transaction);
+    }
+
+    public boolean contains(int id) {
+        return ledger.contains(id);
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        throw readOnly();
+    }
+
+    public List<Integer> changeTransactionStatuses(Map<Integer, TransactionStatus> newStatuses) {
+        throw readOnly();
+    }
+
+    public List<Integer> changeTransactionStatuses(int[] ids, TransactionStatus newStatus) {
+        throw readOnly();
+    }
+
+    public void removeTransactionById(int id) {
+        throw readOnly();
+    }
+
+    public Transaction getById(int id) {
+        return ledger.getById(id);
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return ledger.getByTransactionStatus(status);
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return ledger.getAllSendersWithTransactionStatus(status);
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return ledger.getAllReceiversWithTransactionStatus(status);
+    }
+
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return ledger.getAllOrderedByAmountDescendingThenById();
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return ledger.getBySenderOrderedByAmountDescending(sender);
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return ledger.getByReceiverOrderedByAmountThenById(receiver);
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return ledger.getByTransactionStatusAndMaximumAmount(status, amount);
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return ledger.getBySenderAndMinimumAmountDescending(sender, amount);
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return ledger.getByReceiverAndAmountRange(receiver, lo, hi);
+    }
+
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        return ledger.getAllInAmountRange(lo, hi);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(int offset, int limit) {
+        return ledger.getPageOrderedByAmountDescendingThenById(offset, limit);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenByIdAfter(double amount, int id, int limit) {
+        return ledger.getPageOrderedByAmountDescendingThenByIdAfter(amount, id, limit);
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescending(String sender, int offset, int limit) {
+        return ledger.getPageBySenderOrderedByAmountDescending(sender, offset, limit);
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescendingAfter(String sender, double amount, int id, int limit) {
+        return ledger.getPageBySenderOrderedByAmountDescendingAfter(sender, amount, id, limit);
+    }
+
+    public Aggregate aggregateByTransactionStatus(TransactionStatus status) {
+        return ledger.aggregateByTransactionStatus(status);
+    }
+
+    public Aggregate aggregateBySender(String sender) {
+        return ledger.aggregateBySender(sender);
+    }
+
+    public Aggregate aggregateByReceiver(String receiver) {
+        return ledger.aggregateByReceiver(receiver);
+    }
+
+    public Aggregate aggregateBySenderAndTransactionStatus(String sender, TransactionStatus status) {
+        return ledger.aggregateBySenderAndTransactionStatus(sender, status);
+    }
+
+    public Chainblock snapshot() {
+        return ledger.snapshot();
+    }
+
+    /**
+     * Weakly consistent, like the iterator of {@link ConcurrentChainblock}.
+     */
+    public Iterator<Transaction> iterator() {
+        return ledger.iterator();
+    }
+
+    /**
+     * Disconnects from the primary. The replica keeps serving its last state.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+}
@@ -0,0 +1,371 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Ships the mutations of a ledger over TCP to any number of
+ * {@link ReplicaChainblock}s.
+ *
+ * <p>Every connected replica gets its own subscription to the ledger's
+ * {@link Chainblock#changes()} and a snapshot of the ledger, then the
+ * changes as they happen. Whatever has queued up while the previous frame was
+ * being written goes out as the next frame, so a busy ledger sends few large
+ * frames, and frames are sent without waiting for the replica to acknowledge
+ * the ones before. A replica that falls so far behind that its subscription
+ * is dropped is sent a fresh snapshot and carries on from there, but one
+ * that is dropped {@link #MAX_CONSECUTIVE_RESYNCS} times without catching up
+ * in between is disconnected instead.
+ *
+ * <p>The snapshots are taken on the replication threads while the ledger may
+ * be written to, so the ledger must be thread-safe, such as a
+ * {@link ConcurrentChainblock} or a {@link DurableChainblock}, and must
+ * publish its changes.
+ */
+public class ReplicationPrimary implements Closeable {
+
+    /**
+     * Batches of the change feed requested ahead of what has been written to
+     * the replica.
+     */
+    static final int IN_FLIGHT_BATCHES = 64;
+
+    /**
+     * Snapshots sent to a replica that keeps falling behind before it is
+     * disconnected. A replica that applies a change sent after its last
+     * snapshot and has nothing more queued is caught up and starts over.
+     */
+    static final int MAX_CONSECUTIVE_RESYNCS = 8;
+
+    private static final long MIN_ACCEPT_BACKOFF_MILLIS = 10;
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1000;
+
+    private static final List<ChangeEvent> RESYNC = Collections.emptyList();
+
+    private final Chainblock ledger;
+    private final ServerSocket server;
+    private final List<Session> sessions;
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    /**
+     * Listens on an ephemeral port of the loopback address.
+     */
+    public ReplicationPrimary(Chainblock ledger) throws IOException {
+        this(ledger, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the ledger does not publish its changes
+     */
+    public ReplicationPrimary(Chainblock ledger, InetSocketAddress address) throws IOException {
+        ledger.changes();
+
+        this.ledger = ledger;
+        this.server = new ServerSocket();
+        this.server.bind(address);
+        this.sessions = new CopyOnWriteArrayList<>();
+        this.acceptor = new Thread(this::accept, "chainblock-replication-acceptor");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    /**
+     * @return the address replicas connect to
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    public int getReplicaCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @return the most changes that any replica has been sent, or is about to
+     * be sent, but has not acknowledged yet
+     */
+    public long getMaxReplicaLag() {
+        long lag = 0;
+
+        for (Session session : sessions) {
+            lag = Math.max(lag, session.received - session.acknowledged);
+        }
+
+        return lag;
+    }
+
+    /**
+     * Backs off, doubling the pause up to a second, while accepting fails,
+     * such as when the process runs out of file descriptors.
+     */
+    private void accept() {
+        long backoff = MIN_ACCEPT_BACKOFF_MILLIS;
+
+        while (!closed) {
+            Socket socket;
+
+            try {
+                socket = server.accept();
+                backoff = MIN_ACCEPT_BACKOFF_MILLIS;
+            } catch (IOException e) {
+                if(closed) {
+                    return;
+                }
+
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+
+                backoff = Math.min(backoff * 2, MAX_ACCEPT_BACKOFF_MILLIS);
+                continue;
+            }
+
+            try {
+                socket.setTcpNoDelay(true);
+
+                Session session = new Session(socket);
+                sessions.add(session);
+
+                // close() marks the primary closed before it disconnects the
+                // sessions, so either it sees this one or this sees it closed.
+                if(closed) {
+                    session.close();
+                    return;
+                }
+
+                session.start();
+            } catch (IOException e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // The replica will see the connection drop.
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops listening and disconnects every replica. The ledger is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        acceptor.interrupt();
+
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * One connected replica: a thread that writes the snapshot and the
+     * batches, and one that reads the acknowledgements.
+     */
+    private final class Session {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final BlockingQueue<List<ChangeEvent>> queue;
+        private final Thread shipper;
+        private final Thread listener;
+
+        private volatile Feed feed;
+        private volatile long received;
+        private volatile long acknowledged;
+        private volatile long resyncedAt;
+        private volatile int resyncs;
+        private volatile boolean ended;
+
+        Session(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.queue = new LinkedBlockingQueue<>();
+            this.shipper = new Thread(this::ship, "chainblock-replication-shipper");
+            this.listener = new Thread(this::listen, "chainblock-replication-listener");
+            this.shipper.setDaemon(true);
+            this.listener.setDaemon(true);
+        }
+
+        void start() {
+            shipper.start();
+            listener.start();
+        }
+
+        /**
+         * Subscribes before taking the snapshot, so no change can fall
+         * between the two.
+         */
+        private void resubscribe() throws IOException {
+            queue.clear();
+            feed = new Feed();
+            ledger.changes().subscribe(feed);
+
+            ReplicationProtocol.writeSnapshot(out, ledger.snapshot());
+            out.flush();
+        }
+
+        private void ship() {
+            List<List<ChangeEvent>> batches = new ArrayList<>();
+            List<ChangeEvent> events = new ArrayList<>();
+
+            try {
+                resubscribe();
+
+                while (!ended) {
+                    batches.add(queue.take());
+                    queue.drainTo(batches);
+
+                    int shipped = 0;
+
+                    for (List<ChangeEvent> batch : batches) {
+                        if(batch == RESYNC) {
+                            break;
+                        }
+
+                        events.addAll(batch);
+                        shipped++;
+                    }
+
+                    if(!events.isEmpty()) {
+                        ReplicationProtocol.writeBatch(out, received, events);
+                        out.flush();
+                    }
+
+                    if(shipped < batches.size()) {
+                        if(++resyncs > MAX_CONSECUTIVE_RESYNCS) {
+                            break;
+                        }
+
+                        resyncedAt = received;
+                        resubscribe();
+                    } else {
+                        feed.request(shipped);
+                    }
+
+                    batches.clear();
+                    events.clear();
+                }
+
+                close();
+            } catch (IOException | RuntimeException e) {
+                close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+            }
+        }
+
+        private void listen() {
+            try {
+                while (!ended) {
+                    acknowledged = in.readLong();
+
+                    if(acknowledged > resyncedAt && acknowledged >= received && queue.isEmpty()) {
+                        resyncs = 0;
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            if(ended) {
+                return;
+            }
+
+            ended = true;
+            sessions.remove(this);
+
+            Feed current = feed;
+
+            if(current != null) {
+                current.cancel();
+            }
+
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // The replica will see the connection drop.
+            }
+
+            shipper.interrupt();
+        }
+
+        /**
+         * One subscription to the ledger's changes. A dropped subscription is
+         * reported to the shipper as a request to resynchronize.
+         */
+        private final class Feed implements Flow.Subscriber<List<ChangeEvent>> {
+
+            private volatile Flow.Subscription subscription;
+            private volatile boolean cancelled;
+
+            void request(long batches) {
+                Flow.Subscription current = subscription;
+
+                if(current != null && batches > 0) {
+                    current.request(batches);
+                }
+            }
+
+            void cancel() {
+                cancelled = true;
+
+                Flow.Subscription current = subscription;
+
+                if(current != null) {
+                    current.cancel();
+                }
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+
+                if(cancelled) {
+                    subscription.cancel();
+                } else {
+                    subscription.request(IN_FLIGHT_BATCHES);
+                }
+            }
+
+            @Override
+            public void onNext(List<ChangeEvent> batch) {
+                if(cancelled || batch.isEmpty()) {
+                    return;
+                }
+
+                received = batch.get(batch.size() - 1).getSequence();
+                queue.add(batch);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                if(!cancelled) {
+                    queue.add(RESYNC);
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                onError(new IllegalStateException("Change feed completed"));
+            }
+        }
+    }
+
+}
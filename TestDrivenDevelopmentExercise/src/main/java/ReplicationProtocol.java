@@ -0,0 +1,155 @@
+import status.TransactionStatus;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frames exchanged between a {@link ReplicationPrimary} and its
+ * {@link ReplicaChainblock}s over one TCP connection.
+ *
+ * <p>The primary sends a snapshot frame when a replica connects, and again
+ * whenever the replica has to be brought back in sync, followed by batch
+ * frames of changes. A batch frame starts with the latest sequence number the
+ * primary knows of and the time it was sent, so the replica can tell how far
+ * behind it is. The replica answers every frame with the sequence number of
+ * the last change it has applied.
+ *
+ * <p>Changes are applied idempotently: a change that the snapshot already
+ * reflects is either skipped or overwritten by the changes that follow it, so
+ * the replica converges on the primary even though the snapshot is taken
+ * after the primary starts collecting changes.
+ */
+final class ReplicationProtocol {
+
+    static final byte SNAPSHOT = 1;
+    static final byte BATCH = 2;
+
+    private static final ChangeEvent.Type[] TYPES = ChangeEvent.Type.values();
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeSnapshot(DataOutputStream out, Chainblock snapshot) throws IOException {
+        out.writeByte(SNAPSHOT);
+        out.writeInt(snapshot.getCount());
+
+        for (Transaction transaction : snapshot) {
+            writeTransaction(out, transaction);
+        }
+    }
+
+    static List<Transaction> readSnapshot(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Transaction> transactions = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            transactions.add(readTransaction(in));
+        }
+
+        return transactions;
+    }
+
+    /**
+     * @param head the latest sequence number the primary knows of, at least that of the last event
+     */
+    static void writeBatch(DataOutputStream out, long head, List<ChangeEvent> events) throws IOException {
+        out.writeByte(BATCH);
+        out.writeLong(head);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(events.size());
+
+        for (ChangeEvent event : events) {
+            Transaction transaction = event.getTransaction();
+
+            out.writeByte(event.getType().ordinal());
+            out.writeLong(event.getSequence());
+
+            switch (event.getType()) {
+                case ADDED:
+                    writeTransaction(out, transaction);
+                    break;
+                case STATUS_CHANGED:
+                    out.writeInt(transaction.getId());
+                    out.writeByte(transaction.getStatus().ordinal());
+                    break;
+                case REMOVED:
+                    out.writeInt(transaction.getId());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Reads the events of a batch frame, whose header has already been read,
+     * and applies them to the target one by one.
+     *
+     * @return the sequence number of the last event, or {@code applied} if the batch was empty
+     */
+    static long applyBatch(DataInputStream in, int count, Chainblock target, long applied) throws IOException {
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+
+            if(type < 0 || type >= TYPES.length) {
+                throw new IOException("Unknown change type " + type);
+            }
+
+            applied = in.readLong();
+
+            switch (TYPES[type]) {
+                case ADDED:
+                    target.add(readTransaction(in));
+                    break;
+                case STATUS_CHANGED:
+                    int id = in.readInt();
+                    TransactionStatus newStatus = readStatus(in);
+
+                    if(target.contains(id)) {
+                        target.changeTransactionStatus(id, newStatus);
+                    }
+                    break;
+                case REMOVED:
+                    int removed = in.readInt();
+
+                    if(target.contains(removed)) {
+                        target.removeTransactionById(removed);
+                    }
+                    break;
+            }
+        }
+
+        return applied;
+    }
+
+    private static void writeTransaction(DataOutputStream out, Transaction transaction) throws IOException {
+        out.writeInt(transaction.getId());
+        out.writeByte(transaction.getStatus().ordinal());
+        out.writeDouble(transaction.getAmount());
+        out.writeUTF(transaction.getFrom());
+        out.writeUTF(transaction.getTo());
+    }
+
+    private static Transaction readTransaction(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        TransactionStatus status = readStatus(in);
+        double amount = in.readDouble();
+        String from = in.readUTF();
+        String to = in.readUTF();
+
+        return new TransactionImpl(id, status, from, to, amount);
+    }
+
+    private static TransactionStatus readStatus(DataInputStream in) throws IOException {
+        byte status = in.readByte();
+
+        if(status < 0 || status >= STATUSES.length) {
+            throw new IOException("Unknown transaction status " + status);
+        }
+
+        return STATUSES[status];
+    }
+
+}
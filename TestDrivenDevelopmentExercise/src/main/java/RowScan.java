@@ -0,0 +1,153 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+
+/**
+ * Scans and sorts the rows of the column-oriented ledgers. Below a size
+ * threshold, or without a pool, the rows are scanned on the calling thread.
+ * Above it, the rows are split into ranges that are scanned and sorted on a
+ * {@link ForkJoinPool}, and the sorted ranges are merged pairwise on the way
+ * back up, so the result is in the same order either way.
+ *
+ * <p>The ledger must not change while a scan runs. The filter and the order
+ * only read it, which is safe from the pool's threads.
+ */
+final class RowScan extends RecursiveTask<int[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Total order on rows.
+     */
+    interface RowOrder {
+        int compare(int first, int second);
+    }
+
+    /**
+     * The order the rows are stored in. Ranges scanned in this order are
+     * already sorted, so only the merges remain.
+     */
+    static final RowOrder STORAGE_ORDER = Integer::compare;
+
+    private static final int LEAVES_PER_THREAD = 4;
+
+    private final int from;
+    private final int to;
+    private final int leafRows;
+    private final IntPredicate filter;
+    private final RowOrder order;
+    private final int limit;
+
+    private RowScan(int from, int to, int leafRows, IntPredicate filter, RowOrder order, int limit) {
+        this.from = from;
+        this.to = to;
+        this.leafRows = leafRows;
+        this.filter = filter;
+        this.order = order;
+        this.limit = limit;
+    }
+
+    /**
+     * @param end       one past the last row to scan
+     * @param limit     the most rows to return, the first ones in order
+     * @param pool      the pool to scan on, or {@code null} to stay on the calling thread
+     * @param threshold the fewest rows that are scanned in parallel
+     * @return the rows accepted by the filter, in order
+     */
+    static int[] sorted(int end, IntPredicate filter, RowOrder order, int limit, ForkJoinPool pool, int threshold) {
+        if(pool == null || end < threshold) {
+            return truncate(sort(collect(0, end, filter), order), limit);
+        }
+
+        int leafRows = end / (pool.getParallelism() * LEAVES_PER_THREAD) + 1;
+
+        return pool.invoke(new RowScan(0, end, leafRows, filter, order, limit));
+    }
+
+    @Override
+    protected int[] compute() {
+        if(to - from <= leafRows) {
+            return truncate(sort(collect(from, to, filter), order), limit);
+        }
+
+        int middle = (from + to) >>> 1;
+        RowScan left = new RowScan(from, middle, leafRows, filter, order, limit);
+        left.fork();
+        int[] right = new RowScan(middle, to, leafRows, filter, order, limit).compute();
+
+        return merge(left.join(), right, order, limit);
+    }
+
+    /**
+     * @return the rows in {@code [from, to)} accepted by the filter, in storage order
+     */
+    static int[] collect(int from, int to, IntPredicate filter) {
+        int[] rows = new int[16];
+        int length = 0;
+
+        for (int row = from; row < to; row++) {
+            if(filter.test(row)) {
+                if(length == rows.length) {
+                    rows = Arrays.copyOf(rows, length << 1);
+                }
+
+                rows[length++] = row;
+            }
+        }
+
+        return Arrays.copyOf(rows, length);
+    }
+
+    /**
+     * Sorts rows without boxing them. The sort is stable.
+     *
+     * @return the same array
+     */
+    static int[] sort(int[] rows, RowOrder order) {
+        if(order == STORAGE_ORDER) {
+            return rows;
+        }
+
+        mergeSort(rows, rows.clone(), 0, rows.length, order);
+
+        return rows;
+    }
+
+    private static void mergeSort(int[] rows, int[] buffer, int from, int to, RowOrder order) {
+        if(to - from < 2) {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSort(buffer, rows, from, middle, order);
+        mergeSort(buffer, rows, middle, to, order);
+
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if(right >= to || (left < middle && order.compare(buffer[left], buffer[right]) <= 0)) {
+                rows[i] = buffer[left++];
+            } else {
+                rows[i] = buffer[right++];
+            }
+        }
+    }
+
+    private static int[] merge(int[] first, int[] second, RowOrder order, int limit) {
+        int[] rows = new int[(int) Math.min(limit, (long) first.length + second.length)];
+
+        for (int i = 0, left = 0, right = 0; i < rows.length; i++) {
+            if(right >= second.length || (left < first.length && order.compare(first[left], second[right]) <= 0)) {
+                rows[i] = first[left++];
+            } else {
+                rows[i] = second[right++];
+            }
+        }
+
+        return rows;
+    }
+
+    private static int[] truncate(int[] rows, int limit) {
+        return rows.length > limit ? Arrays.copyOf(rows, limit) : rows;
+    }
+
+}
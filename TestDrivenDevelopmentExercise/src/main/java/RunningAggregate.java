@@ -0,0 +1,104 @@
+import java.util.DoubleSummaryStatistics;
+import java.util.function.Supplier;
+import java.util.stream.DoubleStream;
+
+/**
+ * {@link Aggregate} of one group of transactions, updated as transactions join
+ * and leave the group. Count and sum are adjusted in place, the sum with
+ * Neumaier's compensated summation so that it does not drift as large and
+ * small amounts come and go. When the
+ * transaction holding the minimum or the maximum leaves, both are only marked
+ * stale and recomputed from the group on the next read.
+ */
+class RunningAggregate {
+
+    private long count;
+    private double sum;
+    private double compensation;
+    private double simpleSum;
+    private double min;
+    private double max;
+    private boolean extremesStale;
+
+    RunningAggregate() {
+        this.min = Double.NaN;
+        this.max = Double.NaN;
+    }
+
+    public void add(double amount) {
+        count++;
+        accumulate(amount);
+
+        if(count == 1) {
+            min = amount;
+            max = amount;
+            extremesStale = false;
+        } else if(!extremesStale) {
+            min = Math.min(min, amount);
+            max = Math.max(max, amount);
+        }
+    }
+
+    public void remove(double amount) {
+        count--;
+
+        if(count == 0) {
+            sum = 0;
+            compensation = 0;
+            simpleSum = 0;
+            min = Double.NaN;
+            max = Double.NaN;
+            extremesStale = false;
+            return;
+        }
+
+        accumulate(-amount);
+
+        if(Double.compare(amount, min) == 0 || Double.compare(amount, max) == 0) {
+            extremesStale = true;
+        }
+    }
+
+    private void accumulate(double amount) {
+        double total = sum + amount;
+
+        if(Math.abs(sum) >= Math.abs(amount)) {
+            compensation += (sum - total) + amount;
+        } else {
+            compensation += (amount - total) + sum;
+        }
+
+        sum = total;
+        simpleSum += amount;
+    }
+
+    /**
+     * The compensated sum is {@code NaN} once an infinite amount has been
+     * added, in which case the plain sum holds the right infinity.
+     */
+    private double sum() {
+        double total = sum + compensation;
+
+        return Double.isNaN(total) && Double.isInfinite(simpleSum) ? simpleSum : total;
+    }
+
+    /**
+     * @param amounts the amounts of the group, or at least its smallest and
+     *                largest one; only consulted if the extremes are stale
+     */
+    public Aggregate get(Supplier<DoubleStream> amounts) {
+        if(count == 0) {
+            return Aggregate.EMPTY;
+        }
+
+        if(extremesStale) {
+            DoubleSummaryStatistics statistics = amounts.get().summaryStatistics();
+            min = statistics.getMin();
+            max = statistics.getMax();
+            extremesStale = false;
+        }
+
+        return new Aggregate(count, sum(), min, max);
+    }
+
+}
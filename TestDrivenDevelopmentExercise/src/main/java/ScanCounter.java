@@ -0,0 +1,58 @@
+import java.util.List;
+
+/**
+ * Counts, per thread, the transactions that one ledger visits while
+ * answering queries, so that an {@link InstrumentedChainblock} can tell a
+ * query that seeks into an index from one that walks the whole ledger.
+ * Ledgers add what a query visited once, when it is done, rather than once
+ * per transaction.
+ *
+ * <p>A ledger reports to {@link #NONE}, which counts nothing, until an
+ * {@link InstrumentedChainblock} wrapped around it hands it a counter of its
+ * own, so uninstrumented ledgers only pay for a volatile read and a null check.
+ */
+final class ScanCounter {
+
+    static final ScanCounter NONE = new ScanCounter(false);
+
+    private final ThreadLocal<long[]> scanned;
+
+    ScanCounter() {
+        this(true);
+    }
+
+    private ScanCounter(boolean counting) {
+        this.scanned = counting ? ThreadLocal.withInitial(() -> new long[1]) : null;
+    }
+
+    /**
+     * @return the counter the ledger reports to, or {@link #NONE} if it does not report
+     */
+    static ScanCounter of(Object ledger) {
+        return ledger instanceof ScanReporting ? ((ScanReporting) ledger).scans() : NONE;
+    }
+
+    void add(long transactions) {
+        if(scanned != null) {
+            scanned.get()[0] += transactions;
+        }
+    }
+
+    /**
+     * Counts the elements of a result that was copied out of an index, which
+     * are exactly the transactions the query visited.
+     */
+    <T> List<T> visited(List<T> result) {
+        add(result.size());
+
+        return result;
+    }
+
+    /**
+     * @return the transactions visited by the current thread so far
+     */
+    long current() {
+        return scanned == null ? 0 : scanned.get()[0];
+    }
+
+}
@@ -0,0 +1,14 @@
+/**
+ * Implemented by the ledgers of this package that can report the
+ * transactions their queries visit to a {@link ScanCounter}.
+ */
+interface ScanReporting {
+
+    ScanCounter scans();
+
+    /**
+     * Reports to the counter from now on, instead of to the previous one.
+     */
+    void reportScansTo(ScanCounter counter);
+
+}
@@ -0,0 +1,703 @@
+import status.TransactionStatus;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Thread-safe {@link Chainblock} that partitions its transactions by id hash
+ * across independent {@link ChainblockImpl} shards, each behind its own lock.
+ *
+ * <p>Operations on one id lock only the shard that owns it, so writes and
+ * lookups of ids in different shards run in parallel, and throughput grows
+ * with the number of shards up to the number of cores. Queries fan out to
+ * the shards in parallel on a {@link ForkJoinPool}, by default the common
+ * pool, and k-way merge the already ordered partial results.
+ * Each shard is read at a single point, but different shards may be read at
+ * different points; {@link #snapshot()} locks them all and is consistent.
+ *
+ * <p>The ledger stamps every transaction with the order it arrived in, so
+ * that {@link #getAllInAmountRange} and the iterator can merge the shards in
+ * insertion order.
+ *
+ * <p>Mutations are published to {@link #changes()} while their shard is
+ * locked, so the changes to one id arrive in order; changes to ids in
+ * different shards may interleave.
+ */
+public class ShardedChainblock implements Chainblock {
+
+    private final Chainblock[] shards;
+    private final Lock[] locks;
+    private final ForkJoinPool pool;
+    private final ConcurrentMap<Integer, Long> arrivals;
+    private final AtomicLong arrivalClock;
+    private final ChangeFeed feed;
+
+    public ShardedChainblock() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ShardedChainblock(int shardCount) {
+        this(shardCount, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool the pool that queries fan out on, or {@code null} to query the shards one after another on the calling thread
+     */
+    public ShardedChainblock(int shardCount, ForkJoinPool pool) {
+        this(createShards(shardCount), pool);
+    }
+
+    /**
+     * Partitions the ledger across the given shards, which must be empty.
+     */
+    ShardedChainblock(Chainblock[] shards, ForkJoinPool pool) {
+        this(shards, pool, new ConcurrentHashMap<>());
+    }
+
+    private ShardedChainblock(Chainblock[] shards, ForkJoinPool pool, ConcurrentMap<Integer, Long> arrivals) {
+        this.shards = shards;
+        this.locks = new Lock[shards.length];
+
+        for (int i = 0; i < locks.length; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+
+        this.pool = pool;
+        this.arrivals = arrivals;
+        this.arrivalClock = new AtomicLong();
+        this.feed = new ChangeFeed();
+    }
+
+    private static Chainblock[] createShards(int shardCount) {
+        if(shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+
+        Chainblock[] shards = new Chainblock[shardCount];
+
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new ChainblockImpl();
+        }
+
+        return shards;
+    }
+
+    private int shardOf(int id) {
+        int h = id * 0x9E3779B9;
+
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    private <T> T locked(int shard, Function<Chainblock, T> operation) {
+        Lock lock = locks[shard];
+
+        lock.lock();
+        try {
+            return operation.apply(shards[shard]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> T owner(int id, Function<Chainblock, T> operation) {
+        return locked(shardOf(id), operation);
+    }
+
+    private static List<Transaction> toList(Iterable<Transaction> transactions) {
+        if(transactions instanceof List) {
+            return (List<Transaction>) transactions;
+        }
+
+        List<Transaction> list = new ArrayList<>();
+        transactions.forEach(list::add);
+
+        return list;
+    }
+
+    /**
+     * Runs the query on every shard that {@code holds}, each under its lock.
+     * All but the last shard are queried on the pool while the calling thread
+     * queries the last one, and then waits for the rest.
+     *
+     * @param missingMessage thrown when no shard holds, or {@code null} to allow no results
+     * @return the partial results, one per shard that holds, in shard order
+     */
+    private List<List<Transaction>> fanOut(Predicate<Chainblock> holds, Function<Chainblock, Iterable<Transaction>> query, String missingMessage) {
+        Function<Chainblock, List<Transaction>> read = shard -> holds.test(shard) ? toList(query.apply(shard)) : null;
+        List<ForkJoinTask<List<Transaction>>> tasks = new ArrayList<>(shards.length);
+        int last = shards.length - 1;
+
+        if(pool != null) {
+            for (int i = 0; i < last; i++) {
+                int shard = i;
+                tasks.add(pool.submit(() -> locked(shard, read)));
+            }
+        }
+
+        List<List<Transaction>> partials = new ArrayList<>(shards.length);
+        List<Transaction> lastPartial = locked(last, read);
+
+        for (int i = 0; i < last; i++) {
+            List<Transaction> partial = pool != null ? tasks.get(i).join() : locked(i, read);
+
+            if(partial != null) {
+                partials.add(partial);
+            }
+        }
+
+        if(lastPartial != null) {
+            partials.add(lastPartial);
+        }
+
+        if(partials.isEmpty() && missingMessage != null) {
+            throw new IllegalArgumentException(missingMessage);
+        }
+
+        return partials;
+    }
+
+    private List<List<Transaction>> fanOut(Function<Chainblock, Iterable<Transaction>> query) {
+        return fanOut(shard -> true, query, null);
+    }
+
+    private static Predicate<Chainblock> hasStatus(TransactionStatus status) {
+        return shard -> shard.aggregateByTransactionStatus(status).getCount() > 0;
+    }
+
+    private static Predicate<Chainblock> hasSender(String sender) {
+        return shard -> shard.aggregateBySender(sender).getCount() > 0;
+    }
+
+    private static Predicate<Chainblock> hasReceiver(String receiver) {
+        return shard -> shard.aggregateByReceiver(receiver).getCount() > 0;
+    }
+
+    /**
+     * K-way merge of runs that are each sorted by {@code order}.
+     *
+     * @return the merged transactions after the first {@code skip}, at most {@code limit} of them
+     */
+    private static List<Transaction> merge(List<List<Transaction>> runs, Comparator<Transaction> order, int skip, int limit) {
+        if(runs.size() == 1) {
+            List<Transaction> run = runs.get(0);
+
+            return run.subList(Math.min(skip, run.size()), (int) Math.min(run.size(), (long) skip + limit));
+        }
+
+        PriorityQueue<Run> heads = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> order.compare(a.head(), b.head()));
+        long total = 0;
+
+        for (List<Transaction> run : runs) {
+            if(!run.isEmpty()) {
+                heads.add(new Run(run));
+                total += run.size();
+            }
+        }
+
+        List<Transaction> merged = new ArrayList<>((int) Math.max(0, Math.min(limit, total - skip)));
+
+        for (long position = 0; !heads.isEmpty() && merged.size() < limit; position++) {
+            Run run = heads.poll();
+
+            if(position >= skip) {
+                merged.add(run.head());
+            }
+
+            if(run.advance()) {
+                heads.add(run);
+            }
+        }
+
+        return merged;
+    }
+
+    private static List<Transaction> merge(List<List<Transaction>> runs, Comparator<Transaction> order) {
+        return merge(runs, order, 0, Integer.MAX_VALUE);
+    }
+
+    private static final class Run {
+
+        private final List<Transaction> transactions;
+        private int position;
+
+        Run(List<Transaction> transactions) {
+            this.transactions = transactions;
+        }
+
+        Transaction head() {
+            return transactions.get(position);
+        }
+
+        boolean advance() {
+            return ++position < transactions.size();
+        }
+    }
+
+    private static Aggregate combine(Aggregate first, Aggregate second) {
+        if(first.getCount() == 0) {
+            return second;
+        }
+
+        if(second.getCount() == 0) {
+            return first;
+        }
+
+        return new Aggregate(first.getCount() + second.getCount(), first.getSum() + second.getSum(),
+                Math.min(first.getMin(), second.getMin()), Math.max(first.getMax(), second.getMax()));
+    }
+
+    private Aggregate aggregate(Function<Chainblock, Aggregate> query) {
+        Aggregate aggregate = Aggregate.EMPTY;
+
+        for (int i = 0; i < shards.length; i++) {
+            aggregate = combine(aggregate, locked(i, query));
+        }
+
+        return aggregate;
+    }
+
+    public int getCount() {
+        int count = 0;
+
+        for (int i = 0; i < shards.length; i++) {
+            count += locked(i, Chainblock::getCount);
+        }
+
+        return count;
+    }
+
+    public void add(Transaction transaction) {
+        owner(transaction.getId(), shard -> {
+            if(!shard.contains(transaction.getId())) {
+                shard.add(transaction);
+                arrivals.put(transaction.getId(), arrivalClock.incrementAndGet());
+                feed.added(transaction);
+            }
+
+            return null;
+        });
+    }
+
+    /**
+     * Splits the batch by shard, keeping its order, and adds each part with
+     * one call to its shard. The arrival stamps are handed out in the order
+     * of the whole batch, and the transactions a shard takes are published
+     * in the order of its part.
+     */
+    public int addAll(Collection<? extends Transaction> transactions) {
+        List<List<Transaction>> parts = new ArrayList<>(shards.length);
+        List<List<Long>> stamps = new ArrayList<>(shards.length);
+
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new ArrayList<>());
+            stamps.add(new ArrayList<>());
+        }
+
+        long stamp = arrivalClock.getAndAdd(transactions.size());
+
+        for (Transaction transaction : transactions) {
+            int shard = shardOf(transaction.getId());
+
+            parts.get(shard).add(transaction);
+            stamps.get(shard).add(++stamp);
+        }
+
+        int added = 0;
+
+        for (int i = 0; i < shards.length; i++) {
+            List<Transaction> part = parts.get(i);
+            List<Long> partStamps = stamps.get(i);
+
+            if(!part.isEmpty()) {
+                added += locked(i, shard -> {
+                    List<Transaction> fresh = feed.hasSubscribers() ? absent(shard, part) : null;
+
+                    for (int j = 0; j < part.size(); j++) {
+                        arrivals.putIfAbsent(part.get(j).getId(), partStamps.get(j));
+                    }
+
+                    int partAdded = shard.addAll(part);
+
+                    if(fresh != null) {
+                        fresh.forEach(feed::added);
+                    } else {
+                        feed.skip(partAdded);
+                    }
+
+                    return partAdded;
+                });
+            }
+        }
+
+        return added;
+    }
+
+    /**
+     * @return the transactions of the part the shard will take: those whose
+     * id it does not hold yet, the first of each id in the part
+     */
+    private static List<Transaction> absent(Chainblock shard, List<Transaction> part) {
+        List<Transaction> absent = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+
+        for (Transaction transaction : part) {
+            if(!shard.contains(transaction.getId()) && seen.add(transaction.getId())) {
+                absent.add(transaction);
+            }
+        }
+
+        return absent;
+    }
+
+    public boolean contains(Transaction transaction) {
+        return owner(transaction.getId(), shard -> shard.contains(transaction));
+    }
+
+    public boolean contains(int id) {
+        return owner(id, shard -> shard.contains(id));
+    }
+
+    public void changeTransactionStatus(int id, TransactionStatus newStatus) {
+        owner(id, shard -> {
+            TransactionStatus previousStatus = shard.contains(id) ? shard.getById(id).getStatus() : null;
+
+            shard.changeTransactionStatus(id, newStatus);
+            feed.statusChanged(shard.getById(id), previousStatus);
+            return null;
+        });
+    }
+
+    /**
+     * Changes the status of one id of a batch in its locked shard, publishing
+     * the status it replaced.
+     *
+     * @return whether the shard holds the id
+     */
+    private boolean changeAndPublish(Chainblock shard, int id, TransactionStatus newStatus) {
+        if(!shard.contains(id)) {
+            return false;
+        }
+
+        TransactionStatus previousStatus = shard.getById(id).getStatus();
+
+        shard.changeTransactionStatus(id, newStatus);
+        feed.statusChanged(shard.getById(id), previousStatus);
+
+        return true;
+    }
+
+    /**
+     * Splits the batch by shard and hands each part to its shard in one call,
+     * or, while anyone is subscribed to {@link #changes()}, changes the part
+     * id by id so that each change is published with the status it replaced.
+     * The missing ids are reported in the order of the batch.
+     */
+    public List<Integer> changeTransactionStatuses(Map<Integer, TransactionStatus> newStatuses) {
+        List<Map<Integer, TransactionStatus>> parts = new ArrayList<>(shards.length);
+
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new LinkedHashMap<>());
+        }
+
+        newStatuses.forEach((id, newStatus) -> parts.get(shardOf(id)).put(id, newStatus));
+
+        Set<Integer> missing = new HashSet<>();
+
+        for (int i = 0; i < shards.length; i++) {
+            Map<Integer, TransactionStatus> part = parts.get(i);
+
+            if(!part.isEmpty()) {
+                missing.addAll(locked(i, shard -> {
+                    if(!feed.hasSubscribers()) {
+                        List<Integer> partMissing = shard.changeTransactionStatuses(part);
+                        feed.skip(part.size() - partMissing.size());
+
+                        return partMissing;
+                    }
+
+                    List<Integer> partMissing = new ArrayList<>();
+                    part.forEach((id, newStatus) -> {
+                        if(!changeAndPublish(shard, id, newStatus)) {
+                            partMissing.add(id);
+                        }
+                    });
+
+                    return partMissing;
+                }));
+            }
+        }
+
+        return newStatuses.keySet().stream()
+                .filter(missing::contains)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Splits the batch by shard like {@link #changeTransactionStatuses(Map)}.
+     */
+    public List<Integer> changeTransactionStatuses(int[] ids, TransactionStatus newStatus) {
+        int[] sizes = new int[shards.length];
+
+        for (int id : ids) {
+            sizes[shardOf(id)]++;
+        }
+
+        int[][] parts = new int[shards.length][];
+
+        for (int i = 0; i < shards.length; i++) {
+            parts[i] = new int[sizes[i]];
+            sizes[i] = 0;
+        }
+
+        for (int id : ids) {
+            int shard = shardOf(id);
+            parts[shard][sizes[shard]++] = id;
+        }
+
+        Set<Integer> missing = new HashSet<>();
+
+        for (int i = 0; i < shards.length; i++) {
+            int[] part = parts[i];
+
+            if(part.length > 0) {
+                missing.addAll(locked(i, shard -> {
+                    if(!feed.hasSubscribers()) {
+                        List<Integer> partMissing = shard.changeTransactionStatuses(part, newStatus);
+                        feed.skip(part.length - partMissing.size());
+
+                        return partMissing;
+                    }
+
+                    List<Integer> partMissing = new ArrayList<>();
+
+                    for (int id : part) {
+                        if(!changeAndPublish(shard, id, newStatus)) {
+                            partMissing.add(id);
+                        }
+                    }
+
+                    return partMissing;
+                }));
+            }
+        }
+
+        List<Integer> missingInOrder = new ArrayList<>();
+
+        for (int id : ids) {
+            if(missing.contains(id)) {
+                missingInOrder.add(id);
+            }
+        }
+
+        return missingInOrder;
+    }
+
+    public void removeTransactionById(int id) {
+        owner(id, shard -> {
+            Transaction removed = shard.contains(id) ? shard.getById(id) : null;
+
+            shard.removeTransactionById(id);
+            arrivals.remove(id);
+            feed.removed(removed);
+            return null;
+        });
+    }
+
+    public Transaction getById(int id) {
+        return owner(id, shard -> shard.getById(id));
+    }
+
+    public Iterable<Transaction> getByTransactionStatus(TransactionStatus status) {
+        return merge(fanOut(hasStatus(status), shard -> shard.getByTransactionStatus(status),
+                "Transactions with status " + status + " are not present"), TransactionOrder.AMOUNT_THEN_ID);
+    }
+
+    public Iterable<String> getAllSendersWithTransactionStatus(TransactionStatus status) {
+        return merge(fanOut(hasStatus(status), shard -> shard.getByTransactionStatus(status),
+                "There are no senders with status " + status), TransactionOrder.AMOUNT_THEN_ID).stream()
+                .map(Transaction::getFrom)
+                .collect(Collectors.toList());
+    }
+
+    public Iterable<String> getAllReceiversWithTransactionStatus(TransactionStatus status) {
+        return merge(fanOut(hasStatus(status), shard -> shard.getByTransactionStatus(status),
+                "There are no receivers with status " + status), TransactionOrder.AMOUNT_THEN_ID).stream()
+                .map(Transaction::getTo)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Merged in the reverse order, as the shards return it.
+     */
+    public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+        return merge(fanOut(Chainblock::getAllOrderedByAmountDescendingThenById), TransactionOrder.AMOUNT_THEN_ID.reversed());
+    }
+
+    public Iterable<Transaction> getBySenderOrderedByAmountDescending(String sender) {
+        return merge(fanOut(hasSender(sender), shard -> shard.getBySenderOrderedByAmountDescending(sender),
+                "Sender " + sender + " cannot be found in the database"), TransactionOrder.AMOUNT_THEN_ID);
+    }
+
+    public Iterable<Transaction> getByReceiverOrderedByAmountThenById(String receiver) {
+        return merge(fanOut(hasReceiver(receiver), shard -> shard.getByReceiverOrderedByAmountThenById(receiver),
+                "Receiver " + receiver + " cannot be found in the database"), TransactionOrder.AMOUNT_THEN_ID);
+    }
+
+    public Iterable<Transaction> getByTransactionStatusAndMaximumAmount(TransactionStatus status, double amount) {
+        return merge(fanOut(shard -> shard.getByTransactionStatusAndMaximumAmount(status, amount)), TransactionOrder.AMOUNT_THEN_ID);
+    }
+
+    public Iterable<Transaction> getBySenderAndMinimumAmountDescending(String sender, double amount) {
+        return merge(fanOut(hasSender(sender), shard -> shard.getBySenderAndMinimumAmountDescending(sender, amount),
+                "Sender " + sender + " cannot be found in the database"), TransactionOrder.AMOUNT_THEN_ID);
+    }
+
+    public Iterable<Transaction> getByReceiverAndAmountRange(String receiver, double lo, double hi) {
+        return merge(fanOut(hasReceiver(receiver), shard -> shard.getByReceiverAndAmountRange(receiver, lo, hi),
+                "Receiver " + receiver + " cannot be found in the database"), TransactionOrder.AMOUNT_THEN_ID);
+    }
+
+    /**
+     * The stamps are read under the same lock as the matches, so they cannot
+     * change while the matches are sorted by them. A batch may reach a shard
+     * after a later single add, so the shards' own order is not relied on.
+     */
+    public Iterable<Transaction> getAllInAmountRange(double lo, double hi) {
+        Map<Integer, Long> stamps = new ConcurrentHashMap<>();
+        List<Transaction> matches = new ArrayList<>();
+
+        fanOut(shard -> {
+            List<Transaction> run = toList(shard.getAllInAmountRange(lo, hi));
+            run.forEach(t -> stamps.put(t.getId(), arrivals.get(t.getId())));
+
+            return run;
+        }).forEach(matches::addAll);
+
+        matches.sort(Comparator.comparingLong(t -> stamps.get(t.getId())));
+
+        return matches;
+    }
+
+    /*
+     * A page at an offset needs the first offset + limit transactions of every
+     * shard, since any shard may hold all of them. The "After" variants seek
+     * in every shard and need only limit from each.
+     */
+
+    private static int through(int offset, int limit) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenById(int offset, int limit) {
+        Chainblock.ensurePage(offset, limit);
+
+        return merge(fanOut(shard -> shard.getPageOrderedByAmountDescendingThenById(0, through(offset, limit))),
+                TransactionOrder.AMOUNT_THEN_ID, offset, limit);
+    }
+
+    public Iterable<Transaction> getPageOrderedByAmountDescendingThenByIdAfter(double amount, int id, int limit) {
+        Chainblock.ensurePage(0, limit);
+
+        return merge(fanOut(shard -> shard.getPageOrderedByAmountDescendingThenByIdAfter(amount, id, limit)),
+                TransactionOrder.AMOUNT_THEN_ID, 0, limit);
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescending(String sender, int offset, int limit) {
+        Chainblock.ensurePage(offset, limit);
+
+        return merge(fanOut(hasSender(sender), shard -> shard.getPageBySenderOrderedByAmountDescending(sender, 0, through(offset, limit)),
+                "Sender " + sender + " cannot be found in the database"), TransactionOrder.AMOUNT_THEN_ID, offset, limit);
+    }
+
+    public Iterable<Transaction> getPageBySenderOrderedByAmountDescendingAfter(String sender, double amount, int id, int limit) {
+        Chainblock.ensurePage(0, limit);
+
+        return merge(fanOut(hasSender(sender), shard -> shard.getPageBySenderOrderedByAmountDescendingAfter(sender, amount, id, limit),
+                "Sender " + sender + " cannot be found in the database"), TransactionOrder.AMOUNT_THEN_ID, 0, limit);
+    }
+
+    public Aggregate aggregateByTransactionStatus(TransactionStatus status) {
+        return aggregate(shard -> shard.aggregateByTransactionStatus(status));
+    }
+
+    public Aggregate aggregateBySender(String sender) {
+        return aggregate(shard -> shard.aggregateBySender(sender));
+    }
+
+    public Aggregate aggregateByReceiver(String receiver) {
+        return aggregate(shard -> shard.aggregateByReceiver(receiver));
+    }
+
+    public Aggregate aggregateBySenderAndTransactionStatus(String sender, TransactionStatus status) {
+        return aggregate(shard -> shard.aggregateBySenderAndTransactionStatus(sender, status));
+    }
+
+    public Flow.Publisher<List<ChangeEvent>> changes() {
+        return feed;
+    }
+
+    /**
+     * Holds every shard's lock while the shards are snapshotted, so the
+     * snapshot reflects one state of the whole ledger. The locks are always
+     * taken in shard order. The result is sharded like this ledger and gets
+     * a copy of the arrival stamps, so unlike the snapshot of a single
+     * ledger it takes time in proportion to the size of the ledger.
+     */
+    public Chainblock snapshot() {
+        Chainblock[] snapshots = new Chainblock[shards.length];
+        ConcurrentMap<Integer, Long> stamps;
+
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                snapshots[i] = shards[i].snapshot();
+            }
+
+            stamps = new ConcurrentHashMap<>(arrivals);
+        } finally {
+            for (int i = locks.length - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+
+        return new ShardedChainblock(snapshots, pool, stamps);
+    }
+
+    /**
+     * Iterates a copy of each shard, sorted by arrival, so it never throws
+     * {@link ConcurrentModificationException} and follows insertion order
+     * like a single ledger, at the cost of a sort.
+     */
+    public Iterator<Transaction> iterator() {
+        Map<Integer, Long> stamps = new HashMap<>();
+        List<Transaction> transactions = new ArrayList<>();
+
+        for (int i = 0; i < shards.length; i++) {
+            locked(i, shard -> {
+                shard.forEach(t -> {
+                    transactions.add(t);
+                    stamps.put(t.getId(), arrivals.get(t.getId()));
+                });
+                return null;
+            });
+        }
+
+        transactions.sort(Comparator.comparingLong(t -> stamps.get(t.getId())));
+
+        return Collections.unmodifiableList(transactions).iterator();
+    }
+
+}
@@ -0,0 +1,100 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock with two modes that are each shared: any number of threads may hold
+ * it in the same mode at once, but never in both modes at the same time.
+ * {@link ConcurrentChainblock} holds it in one mode while writing and in the
+ * other while querying, so writers run together and queries run together.
+ *
+ * <p>Neither mode starves the other. Once a thread waits for one mode, the
+ * other mode admits no newcomers, and when its last holder leaves, every
+ * thread waiting for the first mode is let in at once. An uncontended lock
+ * and unlock are a single compare-and-set each. The lock is not reentrant.
+ */
+final class SharedModeLock {
+
+    static final int WRITING = 0;
+    static final int QUERYING = 1;
+
+    /**
+     * The number of holders, positive while writing and negative while querying.
+     */
+    private final AtomicInteger holders;
+    private final AtomicIntegerArray waiting;
+    private final long[] admissions;
+
+    SharedModeLock() {
+        this.holders = new AtomicInteger();
+        this.waiting = new AtomicIntegerArray(2);
+        this.admissions = new long[2];
+    }
+
+    private static int sign(int mode) {
+        return mode == WRITING ? 1 : -1;
+    }
+
+    private static boolean isFreeOrIn(int state, int mode) {
+        return state == 0 || (state > 0) == (mode == WRITING);
+    }
+
+    void lock(int mode) {
+        int other = 1 - mode;
+
+        for (int state = holders.get(); isFreeOrIn(state, mode) && waiting.get(other) == 0; state = holders.get()) {
+            if(holders.compareAndSet(state, state + sign(mode))) {
+                return;
+            }
+        }
+
+        boolean interrupted = false;
+
+        synchronized (this) {
+            waiting.incrementAndGet(mode);
+            long ticket = admissions[mode];
+
+            while (admissions[mode] == ticket && !admit(mode)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void unlock(int mode) {
+        if(holders.addAndGet(-sign(mode)) == 0 && (waiting.get(WRITING) > 0 || waiting.get(QUERYING) > 0)) {
+            synchronized (this) {
+                int other = 1 - mode;
+
+                if(!admit(other)) {
+                    admit(mode);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets every thread waiting for the mode in at once, if the lock is free
+     * and anyone is waiting. Must be called holding the monitor.
+     */
+    private boolean admit(int mode) {
+        int count = waiting.get(mode);
+
+        if(count == 0 || !holders.compareAndSet(0, count * sign(mode))) {
+            return false;
+        }
+
+        waiting.set(mode, 0);
+        admissions[mode]++;
+        notifyAll();
+
+        return true;
+    }
+
+}
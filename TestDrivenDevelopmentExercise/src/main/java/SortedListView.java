@@ -0,0 +1,67 @@
+import java.util.*;
+
+/**
+ * Read-only {@link SortedSet} over a list that is already sorted by the given
+ * comparator. Handing one to {@link TreeSet#addAll} on an empty set with the
+ * same comparator lets the tree be built in linear time instead of by
+ * individual insertions. Range views are not supported.
+ */
+class SortedListView<E> extends AbstractSet<E> implements SortedSet<E> {
+
+    private final List<E> sorted;
+    private final Comparator<? super E> comparator;
+
+    SortedListView(List<E> sorted, Comparator<? super E> comparator) {
+        this.sorted = sorted;
+        this.comparator = comparator;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return Collections.unmodifiableList(sorted).iterator();
+    }
+
+    @Override
+    public int size() {
+        return sorted.size();
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public E first() {
+        if(sorted.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+
+        return sorted.get(0);
+    }
+
+    @Override
+    public E last() {
+        if(sorted.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+
+        return sorted.get(sorted.size() - 1);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -1,5 +1,7 @@
 import status.TransactionStatus;
 
+import java.util.Objects;
+
 public interface Transaction {
 
     void setId(int id);
@@ -22,4 +24,22 @@ public interface Transaction {
 
     double getAmount();
 
+    /**
+     * Field-by-field equality shared by the implementations, so that any two
+     * transactions with the same values are equal whatever their class.
+     */
+    static boolean equals(Transaction transaction, Object o) {
+        if (transaction == o) return true;
+
+        if (!(o instanceof Transaction)) return false;
+
+        Transaction that = (Transaction) o;
+
+        return transaction.getId() == that.getId() && Double.compare(that.getAmount(), transaction.getAmount()) == 0 && transaction.getStatus() == that.getStatus() && transaction.getFrom().equals(that.getFrom()) && transaction.getTo().equals(that.getTo());
+    }
+
+    static int hashCode(Transaction transaction) {
+        return Objects.hash(transaction.getId(), transaction.getStatus(), transaction.getFrom(), transaction.getTo(), transaction.getAmount());
+    }
+
 }
@@ -1,7 +1,5 @@
 import status.TransactionStatus;
 
-import java.util.Objects;
-
 public class TransactionImpl implements Comparable<TransactionImpl>, Transaction {
 
     private int id;
@@ -79,18 +77,12 @@ public class TransactionImpl implements Comparable<TransactionImpl>, Transaction
 
     @Override
     public boolean equals(Object o) {
-        if (this == o) return true;
-
-        if (!(o instanceof TransactionImpl)) return false;
-
-        TransactionImpl that = (TransactionImpl) o;
-
-        return getId() == that.getId() && Double.compare(that.getAmount(), getAmount()) == 0 && getStatus() == that.getStatus() && getFrom().equals(that.getFrom()) && getTo().equals(that.getTo());
+        return Transaction.equals(this, o);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getId(), getStatus(), getFrom(), getTo(), getAmount());
+        return Transaction.hashCode(this);
     }
 
 }
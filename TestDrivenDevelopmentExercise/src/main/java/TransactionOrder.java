@@ -0,0 +1,75 @@
+import java.math.RoundingMode;
+import java.util.Comparator;
+
+/**
+ * The amount order shared by every {@link Chainblock}: amount descending,
+ * then id ascending, as used by the ordered and paged queries, together with
+ * the search keys for it.
+ */
+final class TransactionOrder {
+
+    static final Comparator<Transaction> AMOUNT_THEN_ID =
+            Comparator.comparingDouble(Transaction::getAmount).reversed().thenComparingInt(Transaction::getId);
+
+    /**
+     * The amounts of a ledger that compares them as doubles, exactly as given.
+     */
+    static final Amounts DOUBLES = new Amounts() {
+        @Override
+        public Transaction key(double amount, int id, RoundingMode rounding) {
+            return probe(amount, id);
+        }
+
+        @Override
+        public Transaction toComparable(Transaction transaction) {
+            return transaction;
+        }
+    };
+
+    /**
+     * How a ledger rounds the amounts it compares: the search keys for the
+     * bounds of its amount queries, and the form in which a transaction is
+     * compared with the ones it stores. A snapshot takes the one of its
+     * ledger, so that both answer every query alike.
+     */
+    interface Amounts {
+
+        /**
+         * Creates a search key for the amount order. If the ledger rounds
+         * amounts, the amount is rounded in the given direction, which each
+         * bound picks so that the query stays exact.
+         */
+        Transaction key(double amount, int id, RoundingMode rounding);
+
+        /**
+         * Returns the transaction as the ledger would store it, or
+         * {@code null} if it could not be stored.
+         */
+        Transaction toComparable(Transaction transaction);
+
+        /**
+         * Creates the key that a page after the amount and id starts behind.
+         * An amount between two rounded amounts has no transactions of its
+         * own, so the page starts at the lower one, whatever the id.
+         */
+        default Transaction cursor(double amount, int id) {
+            if(Double.compare(key(amount, id, RoundingMode.FLOOR).getAmount(), key(amount, id, RoundingMode.CEILING).getAmount()) != 0) {
+                return key(amount, Integer.MAX_VALUE, RoundingMode.CEILING);
+            }
+
+            return key(amount, id, RoundingMode.CEILING);
+        }
+    }
+
+    private TransactionOrder() {
+    }
+
+    /**
+     * Creates a search key for indexes ordered by {@link #AMOUNT_THEN_ID}.
+     * Only the amount and the id take part in it, so the rest is left empty.
+     */
+    static Transaction probe(double amount, int id) {
+        return new TransactionImpl(id, null, null, null, amount);
+    }
+
+}
@@ -0,0 +1,196 @@
+import java.util.*;
+
+/**
+ * Open-addressing map from a primitive transaction id to its transaction.
+ * Entries live in dense arrays in insertion order, and the hash table only
+ * stores positions into them, so lookups never box the id and iteration
+ * follows the order in which the transactions were added.
+ */
+class TransactionStore implements Iterable<Transaction> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private IdSlots slots;
+    private int[] ids;
+    private Transaction[] transactions;
+    private int size;
+    private int end;
+    private int modCount;
+
+    TransactionStore() {
+        this(MIN_CAPACITY);
+    }
+
+    TransactionStore(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize - 1)) << 1);
+    }
+
+    private void allocate(int capacity) {
+        this.ids = new int[capacity];
+        this.transactions = new Transaction[capacity];
+        this.slots = new IdSlots(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(int id) {
+        return slots.positionOf(id, ids) != IdSlots.EMPTY;
+    }
+
+    public Transaction get(int id) {
+        int position = slots.positionOf(id, ids);
+
+        return position == IdSlots.EMPTY ? null : transactions[position];
+    }
+
+    /**
+     * Puts transactions held by this store back into the order in which they
+     * were added, without boxing their positions.
+     *
+     * @return a new list with the same transactions
+     */
+    public List<Transaction> inInsertionOrder(Collection<Transaction> stored) {
+        long[] keys = new long[stored.size()];
+        Transaction[] byKey = stored.toArray(new Transaction[0]);
+
+        for (int i = 0; i < byKey.length; i++) {
+            keys[i] = (long) slots.positionOf(byKey[i].getId(), ids) << 32 | i;
+        }
+
+        Arrays.sort(keys);
+
+        List<Transaction> ordered = new ArrayList<>(keys.length);
+
+        for (long key : keys) {
+            ordered.add(byKey[(int) key]);
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Grows the store up front so that it can hold the given number of
+     * transactions without resizing again.
+     */
+    public void ensureCapacity(int expectedSize) {
+        if(end + Math.max(0, expectedSize - size) > transactions.length) {
+            relocate(capacityFor(expectedSize));
+        }
+    }
+
+    /**
+     * Stores the transaction under its id unless that id is already taken.
+     *
+     * @return the transaction already stored under the id, or {@code null} if the given one was added
+     */
+    public Transaction putIfAbsent(Transaction transaction) {
+        int id = transaction.getId();
+        int position = slots.positionOf(id, ids);
+
+        if(position != IdSlots.EMPTY) {
+            return transactions[position];
+        }
+
+        if(end == transactions.length) {
+            resize();
+        }
+
+        ids[end] = id;
+        transactions[end] = transaction;
+        slots.set(slots.slotOf(id, ids), end++);
+        size++;
+        modCount++;
+
+        return null;
+    }
+
+    /**
+     * @return the removed transaction, or {@code null} if nothing was stored under the id
+     */
+    public Transaction remove(int id) {
+        int slot = slots.slotOf(id, ids);
+        int position = slots.get(slot);
+
+        if(position == IdSlots.EMPTY) {
+            return null;
+        }
+
+        Transaction transaction = transactions[position];
+        transactions[position] = null;
+        size--;
+        modCount++;
+
+        slots.delete(slot, ids);
+
+        return transaction;
+    }
+
+    /**
+     * Makes room at the end of the dense arrays. Removed entries are squeezed
+     * out first, and the arrays only double when at least half of them is live.
+     */
+    private void resize() {
+        relocate(size >= end / 2 ? transactions.length << 1 : transactions.length);
+    }
+
+    private void relocate(int capacity) {
+        int[] oldIds = ids;
+        Transaction[] oldTransactions = transactions;
+        int oldEnd = end;
+
+        allocate(capacity);
+        end = 0;
+
+        for (int i = 0; i < oldEnd; i++) {
+            if(oldTransactions[i] != null) {
+                ids[end] = oldIds[i];
+                transactions[end] = oldTransactions[i];
+                slots.set(slots.slotOf(oldIds[i], ids), end++);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<Transaction> iterator() {
+        return new Iterator<Transaction>() {
+            private final int expectedModCount = modCount;
+            private int position = skipRemoved(0);
+
+            private int skipRemoved(int from) {
+                while (from < end && transactions[from] == null) {
+                    from++;
+                }
+
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return position < end;
+            }
+
+            @Override
+            public Transaction next() {
+                if(modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+
+                if(position >= end) {
+                    throw new NoSuchElementException();
+                }
+
+                Transaction transaction = transactions[position];
+                position = skipRemoved(position + 1);
+
+                return transaction;
+            }
+        };
+    }
+
+}
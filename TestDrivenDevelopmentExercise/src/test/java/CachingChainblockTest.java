@@ -0,0 +1,120 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class CachingChainblockTest extends ChainblockImplTest {
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new CachingChainblock(new ChainblockImpl());
+    }
+
+    private static CachingChainblock cacheOf(Chainblock ledger, int capacity) {
+        ledger.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 10.00));
+        ledger.add(new TransactionImpl(2, SUCCESSFUL, "Pike", "Carol", 20.00));
+        ledger.add(new TransactionImpl(3, FAILED, "Alex", "Carol", 300.00));
+        ledger.add(new TransactionImpl(4, ABORTED, "Rick", "Mike", 5000.00));
+
+        return new CachingChainblock(ledger, capacity);
+    }
+
+    private static List<Integer> ids(Iterable<Transaction> transactions) {
+        List<Integer> ids = new ArrayList<>();
+        transactions.forEach(t -> ids.add(t.getId()));
+
+        return ids;
+    }
+
+    @Test
+    public void testRepeatedQueriesShouldBeServedFromTheCache() {
+        CachingChainblock database = cacheOf(new ChainblockImpl(), 16);
+
+        Iterable<Transaction> first = database.getByTransactionStatus(SUCCESSFUL);
+        Iterable<Transaction> second = database.getByTransactionStatus(SUCCESSFUL);
+        database.getAllInAmountRange(5.00, 25.00);
+        database.getAllInAmountRange(5.00, 25.00);
+
+        assertSame(first, second);
+        assertEquals(2, database.getHits());
+        assertEquals(2, database.getMisses());
+        assertEquals(2, database.getCachedResults());
+    }
+
+    @Test
+    public void testStatusChangeShouldOnlyDropTheAffectedBuckets() {
+        CachingChainblock database = cacheOf(new ChainblockImpl(), 16);
+        database.getByTransactionStatus(SUCCESSFUL);
+        database.getByTransactionStatus(FAILED);
+        database.getByTransactionStatus(ABORTED);
+        database.getAllInAmountRange(1000.00, 9000.00);
+        database.getBySenderOrderedByAmountDescending("Rick");
+
+        database.changeTransactionStatus(1, FAILED);
+
+        assertEquals(0, database.getHits());
+        assertEquals(List.of(2), ids(database.getByTransactionStatus(SUCCESSFUL)));
+        assertEquals(List.of(3, 1), ids(database.getByTransactionStatus(FAILED)));
+        assertEquals(0, database.getHits());
+
+        database.getByTransactionStatus(ABORTED);
+        database.getAllInAmountRange(1000.00, 9000.00);
+        database.getBySenderOrderedByAmountDescending("Rick");
+
+        assertEquals(3, database.getHits());
+    }
+
+    @Test
+    public void testMutationsShouldInvalidateDependentResults() {
+        CachingChainblock database = cacheOf(new ChainblockImpl(), 16);
+        assertEquals(List.of(1, 2), ids(database.getAllInAmountRange(5.00, 25.00)));
+        assertEquals(List.of(1, 2, 3, 4), ids(database.getAllOrderedByAmountDescendingThenById()));
+
+        database.add(new TransactionImpl(5, SUCCESSFUL, "Carol", "Rick", 15.00));
+        assertEquals(List.of(1, 2, 5), ids(database.getAllInAmountRange(5.00, 25.00)));
+
+        database.removeTransactionById(1);
+        assertEquals(List.of(2, 5), ids(database.getAllInAmountRange(5.00, 25.00)));
+        assertEquals(List.of(5, 2, 3, 4), ids(database.getAllOrderedByAmountDescendingThenById()));
+        assertEquals(0, database.getHits());
+    }
+
+    @Test
+    public void testCopiesShouldNotServeStaleStatuses() {
+        CachingChainblock database = cacheOf(new ColumnarChainblock(), 16);
+        database.getByReceiverOrderedByAmountThenById("Carol");
+
+        database.changeTransactionStatuses(new int[]{2, 3}, ABORTED);
+
+        for (Transaction transaction : database.getByReceiverOrderedByAmountThenById("Carol")) {
+            assertEquals(ABORTED, transaction.getStatus());
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResultShouldBeEvicted() {
+        CachingChainblock database = cacheOf(new ChainblockImpl(), 2);
+        database.getByTransactionStatus(SUCCESSFUL);
+        database.getByTransactionStatus(FAILED);
+        database.getByTransactionStatus(SUCCESSFUL);
+        database.getByTransactionStatus(ABORTED);
+
+        database.getByTransactionStatus(SUCCESSFUL);
+        database.getByTransactionStatus(FAILED);
+
+        assertEquals(2, database.getCachedResults());
+        assertEquals(2, database.getHits());
+        assertEquals(4, database.getMisses());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCachedResultsShouldBeUnmodifiable() {
+        CachingChainblock database = cacheOf(new ChainblockImpl(), 16);
+
+        ((List<Transaction>) database.getByTransactionStatus(SUCCESSFUL)).clear();
+    }
+
+}
@@ -3,6 +3,9 @@ import org.junit.Test;
 import status.TransactionStatus;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
@@ -14,9 +17,13 @@ public class ChainblockImplTest {
     private Chainblock database;
     private Transaction transaction;
 
+    protected Chainblock createChainblock() {
+        return new ChainblockImpl();
+    }
+
     @Before
     public void setUp() {
-        database = new ChainblockImpl();
+        database = createChainblock();
         transaction = new TransactionImpl(101, SUCCESSFUL, "Alex", "Michelle", 7.00);
     }
 
@@ -34,6 +41,51 @@ public class ChainblockImplTest {
         assertTrue(database.contains(transaction.getId()));
     }
 
+    @Test
+    public void testAddAllShouldSkipDuplicateIds() {
+        Transaction duplicate = new TransactionImpl(transaction.getId(), FAILED, "Mike", "Pike", 1.00);
+        Transaction other = new TransactionImpl(102, FAILED, "Mike", "Pike", 1.00);
+
+        database.add(transaction);
+
+        int added = database.addAll(Arrays.asList(duplicate, other, other));
+
+        assertEquals(1, added);
+        assertEquals(2, database.getCount());
+        assertEquals(SUCCESSFUL, database.getById(transaction.getId()).getStatus());
+    }
+
+    @Test
+    public void testAddAllShouldIndexLikeIndividualAdds() {
+        Chainblock individually = createChainblock();
+        List<Transaction> batch = new ArrayList<>();
+        Random random = new Random(3);
+        String[] parties = {"Alex", "Mike", "Pike", "Carol"};
+
+        for (int i = 0; i < 500; i++) {
+            batch.add(new TransactionImpl(i, TransactionStatus.values()[random.nextInt(5)],
+                    parties[random.nextInt(parties.length)], parties[random.nextInt(parties.length)], random.nextInt(50)));
+        }
+
+        for (int i = 0; i < 50; i++) {
+            individually.add(batch.get(i));
+        }
+
+        batch.subList(50, batch.size()).forEach(individually::add);
+        database.addAll(batch.subList(0, 50));
+        database.addAll(batch.subList(50, batch.size()));
+
+        assertEquals(individually.getCount(), database.getCount());
+        assertEquals(iterableToListTransactions(individually.getAllOrderedByAmountDescendingThenById()),
+                iterableToListTransactions(database.getAllOrderedByAmountDescendingThenById()));
+        assertEquals(iterableToListTransactions(individually.getByTransactionStatus(FAILED)),
+                iterableToListTransactions(database.getByTransactionStatus(FAILED)));
+        assertEquals(iterableToListTransactions(individually.getBySenderOrderedByAmountDescending("Pike")),
+                iterableToListTransactions(database.getBySenderOrderedByAmountDescending("Pike")));
+        assertEquals(iterableToListTransactions(individually.getByReceiverAndAmountRange("Carol", 10, 40)),
+                iterableToListTransactions(database.getByReceiverAndAmountRange("Carol", 10, 40)));
+    }
+
     @Test
     public void testAddTransactionShouldNotBeContained() {
         assertFalse(database.contains(transaction));
@@ -41,6 +93,14 @@ public class ChainblockImplTest {
         assertFalse(database.contains(transaction.getId()));
     }
 
+    @Test
+    public void testContainsShouldFindATransactionWhoseAmountIsInexact() {
+        database.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 0.1 + 0.2));
+
+        assertTrue(database.contains(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 0.1 + 0.2)));
+        assertFalse(database.contains(new TransactionImpl(1, FAILED, "Alex", "Mike", 0.1 + 0.2)));
+    }
+
     @Test
     public void testChangeTransactionStatusById() {
         database.add(transaction);
@@ -59,6 +119,46 @@ public class ChainblockImplTest {
         database.changeTransactionStatus(transaction.getId(), FAILED);
     }
 
+    @Test
+    public void testChangeTransactionStatusesShouldMoveFoundAndReportMissing() {
+        addTransactionsToDatabase();
+
+        Map<Integer, TransactionStatus> newStatuses = new LinkedHashMap<>();
+        newStatuses.put(1, FAILED);
+        newStatuses.put(42, FAILED);
+        newStatuses.put(9, SUCCESSFUL);
+        newStatuses.put(6, FAILED);
+        newStatuses.put(43, NONE);
+
+        List<Integer> missing = database.changeTransactionStatuses(newStatuses);
+
+        assertEquals(Arrays.asList(42, 43), missing);
+        assertEquals(FAILED, database.getById(1).getStatus());
+        assertEquals(SUCCESSFUL, database.getById(9).getStatus());
+        assertEquals(Arrays.asList(3, 2, 1, 6), iterableToListTransactions(database.getByTransactionStatus(FAILED)).stream()
+                .map(Transaction::getId)
+                .collect(Collectors.toList()));
+        assertEquals(Arrays.asList(7, 9, 4), iterableToListTransactions(database.getByTransactionStatus(SUCCESSFUL)).stream()
+                .map(Transaction::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testChangeTransactionStatusesShouldMoveWholeStatusGroup() {
+        addTransactionsToDatabase();
+
+        List<Integer> missing = database.changeTransactionStatuses(new int[]{10, 8, 5, 8, 11}, NONE);
+
+        assertEquals(Collections.singletonList(11), missing);
+        assertEquals(Arrays.asList(8, 5, 10), iterableToListTransactions(database.getByTransactionStatus(NONE)).stream()
+                .map(Transaction::getId)
+                .collect(Collectors.toList()));
+        assertEquals(Arrays.asList(8, 5, 10), iterableToListTransactions(database.getByTransactionStatusAndMaximumAmount(NONE, 100)).stream()
+                .map(Transaction::getId)
+                .collect(Collectors.toList()));
+        assertTrue(iterableToListTransactions(database.getByTransactionStatusAndMaximumAmount(UNAUTHORIZED, 1000)).isEmpty());
+    }
+
     @Test
     public void testRemoveTransactionById() {
         addTransactionsToDatabase();
@@ -116,6 +216,33 @@ public class ChainblockImplTest {
         iterableToListTransactions(database.getByTransactionStatus(NONE));
     }
 
+    @Test
+    public void testGetByTransactionStatusShouldReflectStatusChanges() {
+        addTransactionsToDatabase();
+
+        database.changeTransactionStatus(4, FAILED);
+
+        List<Transaction> successful = iterableToListTransactions(database.getByTransactionStatus(SUCCESSFUL));
+        List<Transaction> failed = iterableToListTransactions(database.getByTransactionStatus(FAILED));
+
+        assertEquals(2, successful.size());
+        assertTrue(successful.stream().noneMatch(t -> t.getId() == 4));
+        assertEquals(4, failed.size());
+        assertEquals(4, failed.get(2).getId());
+    }
+
+    @Test
+    public void testGetByTransactionStatusShouldNotReturnRemovedTransactions() {
+        addTransactionsToDatabase();
+
+        database.removeTransactionById(7);
+
+        List<Transaction> actual = iterableToListTransactions(database.getByTransactionStatus(SUCCESSFUL));
+
+        assertEquals(2, actual.size());
+        assertTrue(actual.stream().noneMatch(t -> t.getId() == 7));
+    }
+
     @Test
     public void testGetAllSendersWithTransactionStatusShouldReturnCorrectNumberOfSenders() {
         TransactionStatus expectedStatus = FAILED;
@@ -358,6 +485,25 @@ public class ChainblockImplTest {
         assertEquals(expected, actual);
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetBySenderOrderedByAmountDescendingShouldThrowAfterLastTransactionOfSenderIsRemoved() {
+        addTransactionsToDatabase();
+
+        database.removeTransactionById(4);
+
+        database.getBySenderOrderedByAmountDescending("Carol");
+    }
+
+    @Test
+    public void testGetBySenderAndMinimumAmountDescendingShouldExcludeTransactionsEqualToMinimum() {
+        addTransactionsToDatabase();
+
+        List<Transaction> actual = iterableToListTransactions(database.getBySenderAndMinimumAmountDescending("Pike", 123.00));
+
+        assertEquals(1, actual.size());
+        assertEquals(3, actual.get(0).getId());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testGetBySenderAndMinimumAmountDescendingThrowsExceptionIfNoExistingTransactions() {
         database.getBySenderAndMinimumAmountDescending("None", 99.99);
@@ -401,6 +547,33 @@ public class ChainblockImplTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testGetByReceiverAndAmountRangeShouldIncludeLowAndExcludeHighBoundary() {
+        addTransactionsToDatabase();
+
+        List<Transaction> actual = iterableToListTransactions(database.getByReceiverAndAmountRange("Alex", 123.00, 155.00));
+
+        assertEquals(2, actual.size());
+        assertEquals(2, actual.get(0).getId());
+        assertEquals(9, actual.get(1).getId());
+    }
+
+    @Test
+    public void testGetByReceiverAndAmountRangeShouldReturnEmptyWhenRangeIsEmpty() {
+        addTransactionsToDatabase();
+
+        List<Transaction> actual = iterableToListTransactions(database.getByReceiverAndAmountRange("Alex", 130.00, 60.00));
+
+        assertTrue(actual.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetByReceiverAndAmountRangeThrowsExceptionWhenOnlySenderExists() {
+        addTransactionsToDatabase();
+
+        database.getByReceiverAndAmountRange("Carol", 0, 1000);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testGetByReceiverAndAmountRangeThrowsExceptionWhenNoExistingTransactions() {
         database.getByReceiverAndAmountRange("None", 13, 69);
@@ -421,6 +594,29 @@ public class ChainblockImplTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testGetAllInAmountRangeShouldIncludeBothBoundaries() {
+        addTransactionsToDatabase();
+
+        List<Transaction> actual = iterableToListTransactions(database.getAllInAmountRange(23.00, 43.00));
+
+        assertEquals(3, actual.size());
+        assertEquals(1, actual.get(0).getId());
+        assertEquals(10, actual.get(1).getId());
+        assertEquals(5, actual.get(2).getId());
+    }
+
+    @Test
+    public void testGetAllInAmountRangeShouldNotReturnRemovedTransactions() {
+        addTransactionsToDatabase();
+
+        database.removeTransactionById(8);
+
+        List<Transaction> actual = iterableToListTransactions(database.getAllInAmountRange(100.00, 100.00));
+
+        assertTrue(actual.isEmpty());
+    }
+
     @Test
     public void testIteratorShouldReturnAllTransactions() {
         List<Transaction> expected = new ArrayList<>(addTransactionsToDatabase().values());
@@ -435,6 +631,418 @@ public class ChainblockImplTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testStreamsShouldMatchMaterializedQueries() {
+        addTransactionsToDatabase();
+
+        assertEquals(iterableToListTransactions(database.getByTransactionStatus(FAILED)),
+                database.streamByTransactionStatus(FAILED).collect(Collectors.toList()));
+        assertEquals(iterableToListStrings(database.getAllSendersWithTransactionStatus(SUCCESSFUL)),
+                database.streamAllSendersWithTransactionStatus(SUCCESSFUL).collect(Collectors.toList()));
+        assertEquals(iterableToListStrings(database.getAllReceiversWithTransactionStatus(UNAUTHORIZED)),
+                database.streamAllReceiversWithTransactionStatus(UNAUTHORIZED).collect(Collectors.toList()));
+        assertEquals(iterableToListTransactions(database.getAllOrderedByAmountDescendingThenById()),
+                database.streamAllOrderedByAmountDescendingThenById().collect(Collectors.toList()));
+        assertEquals(iterableToListTransactions(database.getBySenderOrderedByAmountDescending("Pike")),
+                database.streamBySenderOrderedByAmountDescending("Pike").collect(Collectors.toList()));
+        assertEquals(iterableToListTransactions(database.getByReceiverOrderedByAmountThenById("Alex")),
+                database.streamByReceiverOrderedByAmountThenById("Alex").collect(Collectors.toList()));
+        assertEquals(iterableToListTransactions(database.getByTransactionStatusAndMaximumAmount(SUCCESSFUL, 100)),
+                database.streamByTransactionStatusAndMaximumAmount(SUCCESSFUL, 100).collect(Collectors.toList()));
+        assertEquals(iterableToListTransactions(database.getBySenderAndMinimumAmountDescending("Pike", 45.30)),
+                database.streamBySenderAndMinimumAmountDescending("Pike", 45.30).collect(Collectors.toList()));
+        assertEquals(iterableToListTransactions(database.getByReceiverAndAmountRange("Alex", 60.00, 130.00)),
+                database.streamByReceiverAndAmountRange("Alex", 60.00, 130.00).collect(Collectors.toList()));
+        assertEquals(iterableToListTransactions(database.getAllInAmountRange(23.00, 123.00)),
+                database.streamAllInAmountRange(23.00, 123.00).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testStreamAllInAmountRangeShouldStartWithTheEarliestMatches() {
+        addTransactionsToDatabase();
+
+        List<Integer> topTwo = database.streamAllInAmountRange(0, 1000)
+                .limit(2)
+                .map(Transaction::getId)
+                .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(1, 9), topTwo);
+        assertEquals(Arrays.asList(1, 4), database.streamAllInAmountRange(20, 100)
+                .limit(2)
+                .map(Transaction::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStreamBySenderShouldThrowForUnknownSender() {
+        addTransactionsToDatabase();
+
+        database.streamBySenderOrderedByAmountDescending("None");
+    }
+
+    @Test
+    public void testSnapshotShouldNotSeeLaterChanges() {
+        addTransactionsToDatabase();
+
+        Chainblock snapshot = database.snapshot();
+
+        database.changeTransactionStatus(4, FAILED);
+        database.removeTransactionById(7);
+        database.add(transaction);
+
+        assertEquals(10, snapshot.getCount());
+        assertEquals(SUCCESSFUL, snapshot.getById(4).getStatus());
+        assertTrue(snapshot.contains(7));
+        assertFalse(snapshot.contains(transaction.getId()));
+        assertEquals(3, iterableToListTransactions(snapshot.getByTransactionStatus(SUCCESSFUL)).size());
+
+        assertEquals(10, database.getCount());
+        assertEquals(FAILED, database.getById(4).getStatus());
+        assertFalse(database.contains(7));
+    }
+
+    @Test
+    public void testSnapshotShouldReflectChangesMadeBeforeIt() {
+        addTransactionsToDatabase();
+        database.snapshot();
+
+        database.changeTransactionStatus(4, FAILED);
+        database.removeTransactionById(7);
+        database.add(transaction);
+
+        Chainblock snapshot = database.snapshot();
+
+        assertEquals(database.getCount(), snapshot.getCount());
+        assertEquals(FAILED, snapshot.getById(4).getStatus());
+        assertFalse(snapshot.contains(7));
+        assertTrue(snapshot.contains(transaction));
+    }
+
+    @Test
+    public void testSnapshotShouldAnswerQueriesLikeLedger() {
+        addTransactionsToDatabase();
+
+        Chainblock snapshot = database.snapshot();
+
+        assertEquals(iterableToListTransactions(database.getAllOrderedByAmountDescendingThenById()),
+                iterableToListTransactions(snapshot.getAllOrderedByAmountDescendingThenById()));
+        assertEquals(iterableToListTransactions(database.getByTransactionStatus(FAILED)),
+                iterableToListTransactions(snapshot.getByTransactionStatus(FAILED)));
+        assertEquals(iterableToListStrings(database.getAllReceiversWithTransactionStatus(UNAUTHORIZED)),
+                iterableToListStrings(snapshot.getAllReceiversWithTransactionStatus(UNAUTHORIZED)));
+        assertEquals(iterableToListTransactions(database.getBySenderAndMinimumAmountDescending("Pike", 45.30)),
+                iterableToListTransactions(snapshot.getBySenderAndMinimumAmountDescending("Pike", 45.30)));
+        assertEquals(iterableToListTransactions(database.getByReceiverAndAmountRange("Alex", 60.00, 130.00)),
+                iterableToListTransactions(snapshot.getByReceiverAndAmountRange("Alex", 60.00, 130.00)));
+        assertEquals(iterableToListTransactions(database.getByTransactionStatusAndMaximumAmount(SUCCESSFUL, 100)),
+                iterableToListTransactions(snapshot.getByTransactionStatusAndMaximumAmount(SUCCESSFUL, 100)));
+        assertEquals(iterableToListTransactions(database.getAllInAmountRange(23.00, 123.00)),
+                iterableToListTransactions(snapshot.getAllInAmountRange(23.00, 123.00)));
+    }
+
+    @Test
+    public void testSnapshotShouldRoundAmountBoundsLikeLedger() {
+        double[] amounts = {0.10, 0.29, 0.30, 0.31, 0.1 + 0.2, 1.00};
+
+        for (int id = 0; id < amounts.length; id++) {
+            database.add(new TransactionImpl(id, SUCCESSFUL, "Alex", "Mike", amounts[id]));
+        }
+
+        Chainblock snapshot = database.snapshot();
+        double[] bounds = {0.1 + 0.2, 0.30, Math.nextDown(0.30), 0.305, 0.10, 2.00};
+
+        for (double bound : bounds) {
+            for (Chainblock ledger : List.of(database, snapshot)) {
+                assertEquals(answer(() -> database.getAllInAmountRange(bound, 1)), answer(() -> ledger.getAllInAmountRange(bound, 1)));
+                assertEquals(answer(() -> database.getAllInAmountRange(0, bound)), answer(() -> ledger.getAllInAmountRange(0, bound)));
+                assertEquals(answer(() -> database.getByTransactionStatusAndMaximumAmount(SUCCESSFUL, bound)),
+                        answer(() -> ledger.getByTransactionStatusAndMaximumAmount(SUCCESSFUL, bound)));
+                assertEquals(answer(() -> database.getBySenderAndMinimumAmountDescending("Alex", bound)),
+                        answer(() -> ledger.getBySenderAndMinimumAmountDescending("Alex", bound)));
+                assertEquals(answer(() -> database.getByReceiverAndAmountRange("Mike", bound, 1)),
+                        answer(() -> ledger.getByReceiverAndAmountRange("Mike", bound, 1)));
+                assertEquals(answer(() -> database.getByReceiverAndAmountRange("Mike", 0, bound)),
+                        answer(() -> ledger.getByReceiverAndAmountRange("Mike", 0, bound)));
+                assertEquals(answer(() -> database.getPageOrderedByAmountDescendingThenByIdAfter(bound, 2, 10)),
+                        answer(() -> ledger.getPageOrderedByAmountDescendingThenByIdAfter(bound, 2, 10)));
+                assertEquals(answer(() -> database.getPageBySenderOrderedByAmountDescendingAfter("Alex", bound, 2, 10)),
+                        answer(() -> ledger.getPageBySenderOrderedByAmountDescendingAfter("Alex", bound, 2, 10)));
+
+                for (int id = 0; id < amounts.length; id++) {
+                    Transaction probe = new TransactionImpl(id, SUCCESSFUL, "Alex", "Mike", bound);
+
+                    assertEquals(database.contains(probe), ledger.contains(probe));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the ids of the result, or the type of exception thrown instead
+     */
+    private static Object answer(java.util.function.Supplier<Iterable<Transaction>> query) {
+        try {
+            List<Integer> ids = new ArrayList<>();
+            query.get().forEach(t -> ids.add(t.getId()));
+
+            return ids;
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    @Test
+    public void testSnapshotShouldIterateInArrivalOrder() {
+        List<Transaction> added = new ArrayList<>(addTransactionsToDatabase().values());
+        database.snapshot();
+
+        database.changeTransactionStatus(1, FAILED);
+        database.add(transaction);
+        added.set(0, new TransactionImpl(1, FAILED, "Alex", "Michelle", 43.00));
+        added.add(transaction);
+
+        assertEquals(added, iterableToListTransactions(database.snapshot()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotShouldBeReadOnly() {
+        addTransactionsToDatabase();
+
+        database.snapshot().removeTransactionById(1);
+    }
+
+    @Test
+    public void testChangesShouldPublishEveryMutation() throws InterruptedException {
+        List<ChangeEvent> events = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch published = new CountDownLatch(5);
+
+        database.changes().subscribe(new Flow.Subscriber<List<ChangeEvent>>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(List<ChangeEvent> batch) {
+                events.addAll(batch);
+                batch.forEach(event -> published.countDown());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        database.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Michelle", 43.00));
+        database.addAll(List.of(new TransactionImpl(2, SUCCESSFUL, "Mike", "Alex", 123.00),
+                new TransactionImpl(1, FAILED, "Pike", "Alex", 155.00)));
+        database.changeTransactionStatus(1, FAILED);
+        database.changeTransactionStatuses(new int[]{2, 11}, ABORTED);
+        database.removeTransactionById(1);
+
+        assertTrue(published.await(10, TimeUnit.SECONDS));
+        assertEquals(5, events.size());
+
+        assertEquals(ChangeEvent.Type.ADDED, events.get(0).getType());
+        assertEquals(1, events.get(0).getTransaction().getId());
+        assertEquals(ChangeEvent.Type.ADDED, events.get(1).getType());
+        assertEquals(2, events.get(1).getTransaction().getId());
+        assertEquals(ChangeEvent.Type.STATUS_CHANGED, events.get(2).getType());
+        assertEquals(SUCCESSFUL, events.get(2).getPreviousStatus());
+        assertEquals(FAILED, events.get(2).getTransaction().getStatus());
+        assertEquals(2, events.get(3).getTransaction().getId());
+        assertEquals(ABORTED, events.get(3).getTransaction().getStatus());
+        assertEquals(ChangeEvent.Type.REMOVED, events.get(4).getType());
+        assertEquals(1, events.get(4).getTransaction().getId());
+        assertEquals(43.00, events.get(4).getTransaction().getAmount(), 0);
+
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i - 1).getSequence() < events.get(i).getSequence());
+        }
+    }
+
+    private static Transaction withFixedParties(int id, String from, String to, double amount) {
+        return new TransactionImpl(id, SUCCESSFUL, from, to, amount) {
+            @Override
+            public void setFrom(String from) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void setTo(String to) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Test
+    public void testAddShouldNotChangeThePartyNamesOfTheAddedTransaction() {
+        String sender = new String("Alex");
+        Transaction first = withFixedParties(1, sender, new String("Mike"), 43.00);
+
+        database.add(new TransactionImpl(2, FAILED, "Alex", "Mike", 10.00));
+        database.add(first);
+        database.addAll(Collections.singletonList(withFixedParties(3, new String("Alex"), new String("Mike"), 20.00)));
+
+        assertSame(sender, first.getFrom());
+        assertEquals(3, database.getCount());
+        assertEquals(Arrays.asList(1, 3, 2), iterableToListTransactions(database.getBySenderOrderedByAmountDescending("Alex")).stream()
+                .map(Transaction::getId)
+                .collect(Collectors.toList()));
+        assertEquals(3, iterableToListTransactions(database.getByReceiverOrderedByAmountThenById("Mike")).size());
+        assertEquals(2, iterableToListTransactions(database.getByTransactionStatus(SUCCESSFUL)).size());
+    }
+
+    @Test
+    public void testAggregateSumsShouldNotDriftWhenLargeAmountsLeave() {
+        database.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 1e16));
+        database.add(new TransactionImpl(2, SUCCESSFUL, "Alex", "Mike", 1.00));
+        database.removeTransactionById(1);
+
+        assertEquals(1.00, database.aggregateByTransactionStatus(SUCCESSFUL).getSum(), 0.0);
+        assertEquals(1.00, database.aggregateBySender("Alex").getSum(), 0.0);
+        assertEquals(1.00, database.aggregateBySenderAndTransactionStatus("Alex", SUCCESSFUL).getSum(), 0.0);
+    }
+
+    @Test
+    public void testAggregatesShouldFollowEveryMutation() {
+        Random random = new Random(5);
+        String[] parties = {"Alex", "Mike", "Pike", "Carol"};
+        TransactionStatus[] statuses = TransactionStatus.values();
+
+        for (int i = 0; i < 400; i++) {
+            int id = random.nextInt(150);
+            int operation = random.nextInt(4);
+
+            if(operation < 2) {
+                database.add(new TransactionImpl(id, statuses[random.nextInt(statuses.length)],
+                        parties[random.nextInt(parties.length)], parties[random.nextInt(parties.length)], random.nextInt(40)));
+            } else if(database.contains(id) && operation == 2) {
+                database.changeTransactionStatus(id, statuses[random.nextInt(statuses.length)]);
+            } else if(database.contains(id)) {
+                database.removeTransactionById(id);
+            }
+
+            for (TransactionStatus status : statuses) {
+                assertAggregate(Aggregate.of(database, t -> t.getStatus() == status), database.aggregateByTransactionStatus(status));
+            }
+
+            for (String party : parties) {
+                assertAggregate(Aggregate.of(database, t -> t.getFrom().equals(party)), database.aggregateBySender(party));
+                assertAggregate(Aggregate.of(database, t -> t.getTo().equals(party)), database.aggregateByReceiver(party));
+                assertAggregate(Aggregate.of(database, t -> t.getFrom().equals(party) && t.getStatus() == SUCCESSFUL),
+                        database.aggregateBySenderAndTransactionStatus(party, SUCCESSFUL));
+            }
+        }
+    }
+
+    @Test
+    public void testAggregatesOfUnknownGroupsShouldBeEmpty() {
+        addTransactionsToDatabase();
+
+        assertEquals(Aggregate.EMPTY, database.aggregateBySender("Nobody"));
+        assertEquals(Aggregate.EMPTY, database.aggregateBySenderAndTransactionStatus("Alex", FAILED));
+        assertEquals(Aggregate.EMPTY, database.aggregateByTransactionStatus(NONE));
+        assertEquals(new Aggregate(3, 378.00, 100.00, 155.00), database.aggregateBySender("Pike"));
+    }
+
+    private static void assertAggregate(Aggregate expected, Aggregate actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getSum(), actual.getSum(), 1e-9);
+        assertEquals(expected.getMin(), actual.getMin(), 0.0);
+        assertEquals(expected.getMax(), actual.getMax(), 0.0);
+    }
+
+    @Test
+    public void testPagesShouldSliceTheLedgerByAmountDescendingThenById() {
+        List<Transaction> expected = addTransactionsToDatabase().values()
+                .stream()
+                .sorted(TransactionOrder.AMOUNT_THEN_ID)
+                .collect(Collectors.toList());
+
+        assertEquals(expected.subList(0, 3), iterableToListTransactions(database.getPageOrderedByAmountDescendingThenById(0, 3)));
+        assertEquals(expected.subList(3, 7), iterableToListTransactions(database.getPageOrderedByAmountDescendingThenById(3, 4)));
+        assertEquals(expected.subList(8, 10), iterableToListTransactions(database.getPageOrderedByAmountDescendingThenById(8, 20)));
+        assertTrue(iterableToListTransactions(database.getPageOrderedByAmountDescendingThenById(10, 5)).isEmpty());
+        assertTrue(iterableToListTransactions(database.getPageOrderedByAmountDescendingThenById(0, 0)).isEmpty());
+    }
+
+    @Test
+    public void testPagesShouldReadTheFullListingFromItsEnd() {
+        addTransactionsToDatabase();
+
+        List<Transaction> listing = iterableToListTransactions(database.getAllOrderedByAmountDescendingThenById());
+        Collections.reverse(listing);
+
+        assertEquals(listing.subList(2, 6), iterableToListTransactions(database.getPageOrderedByAmountDescendingThenById(2, 4)));
+    }
+
+    @Test
+    public void testPagesAfterCursorShouldWalkTheWholeLedger() {
+        List<Transaction> expected = addTransactionsToDatabase().values()
+                .stream()
+                .sorted(TransactionOrder.AMOUNT_THEN_ID)
+                .collect(Collectors.toList());
+
+        List<Transaction> actual = iterableToListTransactions(database.getPageOrderedByAmountDescendingThenById(0, 3));
+
+        while (actual.size() < expected.size()) {
+            Transaction last = actual.get(actual.size() - 1);
+            List<Transaction> page = iterableToListTransactions(
+                    database.getPageOrderedByAmountDescendingThenByIdAfter(last.getAmount(), last.getId(), 3));
+
+            assertFalse(page.isEmpty());
+            actual.addAll(page);
+        }
+
+        assertEquals(expected, actual);
+        assertTrue(iterableToListTransactions(database.getPageOrderedByAmountDescendingThenByIdAfter(10.00, 6, 3)).isEmpty());
+    }
+
+    @Test
+    public void testSenderPagesShouldFollowSenderOrder() {
+        addTransactionsToDatabase();
+
+        List<Transaction> expected = iterableToListTransactions(database.getBySenderOrderedByAmountDescending("Pike"));
+
+        assertEquals(expected.subList(1, 3), iterableToListTransactions(database.getPageBySenderOrderedByAmountDescending("Pike", 1, 5)));
+        assertEquals(expected.subList(2, 3), iterableToListTransactions(
+                database.getPageBySenderOrderedByAmountDescendingAfter("Pike", 123.00, 2, 5)));
+        assertEquals(expected.subList(1, 2), iterableToListTransactions(
+                database.getPageBySenderOrderedByAmountDescendingAfter("Pike", 150.00, 0, 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSenderPagesShouldThrowIfSenderIsMissing() {
+        addTransactionsToDatabase();
+
+        database.getPageBySenderOrderedByAmountDescendingAfter("Nobody", 100.00, 1, 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPagesShouldRejectNegativeOffset() {
+        addTransactionsToDatabase();
+
+        database.getPageOrderedByAmountDescendingThenById(-1, 5);
+    }
+
+    @Test
+    public void testSnapshotPagesShouldMatchTheLedger() {
+        addTransactionsToDatabase();
+        Chainblock snapshot = database.snapshot();
+
+        assertEquals(iterableToListTransactions(database.getPageOrderedByAmountDescendingThenById(2, 4)),
+                iterableToListTransactions(snapshot.getPageOrderedByAmountDescendingThenById(2, 4)));
+        assertEquals(iterableToListTransactions(database.getPageOrderedByAmountDescendingThenByIdAfter(123.00, 2, 4)),
+                iterableToListTransactions(snapshot.getPageOrderedByAmountDescendingThenByIdAfter(123.00, 2, 4)));
+        assertEquals(iterableToListTransactions(database.getPageBySenderOrderedByAmountDescendingAfter("Pike", 155.00, 3, 4)),
+                iterableToListTransactions(snapshot.getPageBySenderOrderedByAmountDescendingAfter("Pike", 155.00, 3, 4)));
+    }
+
     private List<Transaction> getFilteredTransactionsByStatus(TransactionStatus status) {
         return addTransactionsToDatabase().values()
                 .stream()
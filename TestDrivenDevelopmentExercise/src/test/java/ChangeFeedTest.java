@@ -0,0 +1,162 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class ChangeFeedTest {
+
+    private static class RecordingSubscriber implements Flow.Subscriber<List<ChangeEvent>> {
+
+        private final long initialRequest;
+        private final List<List<ChangeEvent>> batches = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch events;
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        RecordingSubscriber(long initialRequest, int expectedEvents) {
+            this.initialRequest = initialRequest;
+            this.events = new CountDownLatch(expectedEvents);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+
+            if(initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(List<ChangeEvent> batch) {
+            batches.add(batch);
+            batch.forEach(event -> events.countDown());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        List<ChangeEvent> events() {
+            List<ChangeEvent> all = new ArrayList<>();
+            batches.forEach(all::addAll);
+
+            return all;
+        }
+    }
+
+    private static Transaction transaction(int id) {
+        return new TransactionImpl(id, SUCCESSFUL, "Alex", "Mike", id);
+    }
+
+    @Test
+    public void testLedgerShouldPublishEveryMutationInOrder() throws InterruptedException {
+        Chainblock database = new ChainblockImpl();
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE, 5);
+
+        database.changes().subscribe(subscriber);
+        database.add(transaction(1));
+        database.add(transaction(2));
+        database.changeTransactionStatus(1, FAILED);
+        database.changeTransactionStatuses(new int[]{2}, ABORTED);
+        database.removeTransactionById(1);
+
+        assertTrue(subscriber.events.await(10, TimeUnit.SECONDS));
+
+        List<ChangeEvent> events = subscriber.events();
+
+        assertEquals(ChangeEvent.Type.ADDED, events.get(0).getType());
+        assertEquals(ChangeEvent.Type.ADDED, events.get(1).getType());
+        assertEquals(ChangeEvent.Type.STATUS_CHANGED, events.get(2).getType());
+        assertEquals(SUCCESSFUL, events.get(2).getPreviousStatus());
+        assertEquals(FAILED, events.get(2).getTransaction().getStatus());
+        assertEquals(ABORTED, events.get(3).getTransaction().getStatus());
+        assertEquals(ChangeEvent.Type.REMOVED, events.get(4).getType());
+        assertEquals(1, events.get(4).getTransaction().getId());
+
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i + 1, events.get(i).getSequence());
+        }
+    }
+
+    @Test
+    public void testSequenceShouldCountMutationsMadeBeforeSubscribing() throws InterruptedException {
+        Chainblock database = new ChainblockImpl();
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE, 1);
+
+        database.add(transaction(1));
+        database.changeTransactionStatus(1, FAILED);
+        database.changes().subscribe(subscriber);
+        database.add(transaction(2));
+
+        assertTrue(subscriber.events.await(10, TimeUnit.SECONDS));
+        assertEquals(3, subscriber.events().get(0).getSequence());
+    }
+
+    @Test
+    public void testDeliveryShouldHonourDemandInBatches() {
+        ChangeFeed feed = new ChangeFeed(Runnable::run, 100, 3);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0, 0);
+        feed.subscribe(subscriber);
+
+        for (int id = 0; id < 7; id++) {
+            feed.added(transaction(id));
+        }
+
+        assertTrue(subscriber.batches.isEmpty());
+
+        subscriber.subscription.request(1);
+
+        assertEquals(1, subscriber.batches.size());
+        assertEquals(3, subscriber.batches.get(0).size());
+
+        subscriber.subscription.request(5);
+
+        assertEquals(3, subscriber.batches.size());
+        assertEquals(1, subscriber.batches.get(2).size());
+        assertEquals(7, subscriber.events().size());
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void testOverflowShouldDropTheSubscriberWithAnError() {
+        ChangeFeed feed = new ChangeFeed(Runnable::run, 4, 2);
+        RecordingSubscriber slow = new RecordingSubscriber(0, 0);
+        RecordingSubscriber fast = new RecordingSubscriber(Long.MAX_VALUE, 0);
+        feed.subscribe(slow);
+        feed.subscribe(fast);
+
+        for (int id = 0; id < 10; id++) {
+            feed.added(transaction(id));
+        }
+
+        assertTrue(slow.error instanceof IllegalStateException);
+        assertTrue(slow.batches.isEmpty());
+        assertNull(fast.error);
+        assertEquals(10, fast.events().size());
+    }
+
+    @Test
+    public void testNonPositiveRequestShouldFailTheSubscriber() {
+        ChangeFeed feed = new ChangeFeed(Runnable::run, 4, 2);
+        RecordingSubscriber subscriber = new RecordingSubscriber(0, 0);
+        feed.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+}
@@ -0,0 +1,46 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class ColumnarChainblockTest extends ChainblockImplTest {
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new ColumnarChainblock();
+    }
+
+    @Override
+    @Test
+    public void testChangeTransactionStatusById() {
+        Chainblock database = createChainblock();
+        database.add(new TransactionImpl(101, SUCCESSFUL, "Alex", "Michelle", 7.00));
+
+        database.changeTransactionStatus(101, FAILED);
+
+        assertEquals(FAILED, database.getById(101).getStatus());
+    }
+
+    @Test
+    public void testRemoveShouldKeepRemainingRowsReachableAfterCompaction() {
+        Chainblock database = createChainblock();
+
+        for (int i = 0; i < 100; i++) {
+            database.add(new TransactionImpl(i, NONE, "Alex", "Mike", i));
+        }
+
+        for (int i = 0; i < 90; i++) {
+            database.removeTransactionById(i);
+        }
+
+        for (int i = 100; i < 200; i++) {
+            database.add(new TransactionImpl(i, NONE, "Alex", "Mike", i));
+        }
+
+        assertEquals(110, database.getCount());
+        assertFalse(database.contains(50));
+        assertEquals(95.0, database.getById(95).getAmount(), 0.0);
+        assertEquals(150.0, database.getById(150).getAmount(), 0.0);
+    }
+
+}
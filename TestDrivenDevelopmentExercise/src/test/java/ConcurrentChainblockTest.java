@@ -0,0 +1,200 @@
+import org.junit.Test;
+import status.TransactionStatus;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentChainblockTest extends ChainblockImplTest {
+
+    private static final String[] PARTIES = {"Alex", "Michelle", "Mike", "Pike", "Carol", "Rick", "Porky", "Mark"};
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private static final int WRITERS = 8;
+    private static final int IDS_PER_WRITER = 5000;
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new ConcurrentChainblock();
+    }
+
+    @Override
+    @Test
+    public void testIteratorShouldReturnAllTransactions() {
+        Chainblock database = createChainblock();
+        List<Transaction> expected = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            Transaction transaction = new TransactionImpl(i, STATUSES[i % STATUSES.length], "Alex", "Mike", i);
+            expected.add(transaction);
+            database.add(transaction);
+        }
+
+        Set<Transaction> actual = new HashSet<>();
+        database.iterator().forEachRemaining(actual::add);
+
+        assertEquals(new HashSet<>(expected), actual);
+    }
+
+    @Test
+    public void testConcurrentWritesShouldKeepIndexesConsistent() throws Exception {
+        writeWhileReading(1, IDS_PER_WRITER);
+    }
+
+    @Test
+    public void testConcurrentReadersShouldSeeConsistentResults() throws Exception {
+        writeWhileReading(4, IDS_PER_WRITER / 5);
+    }
+
+    private static void writeWhileReading(int readers, int idsPerWriter) throws Exception {
+        ConcurrentChainblock database = new ConcurrentChainblock();
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + readers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        List<Future<?>> writers = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            writers.add(pool.submit(() -> {
+                start.await();
+                write(database, writer, idsPerWriter);
+                return null;
+            }));
+        }
+
+        List<Future<?>> readerResults = new ArrayList<>();
+
+        for (int r = 0; r < readers; r++) {
+            readerResults.add(pool.submit(() -> {
+                start.await();
+
+                while (writing.get()) {
+                    assertConsistentRead(database);
+                }
+
+                return null;
+            }));
+        }
+
+        start.countDown();
+
+        try {
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+
+            writing.set(false);
+
+            for (Future<?> reader : readerResults) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } catch (ExecutionException e) {
+            throw (Exception) (e.getCause() instanceof Exception ? e.getCause() : e);
+        } finally {
+            writing.set(false);
+            pool.shutdownNow();
+        }
+
+        assertIndexesMatchStorage(database);
+    }
+
+    private static void write(Chainblock database, int writer, int idsPerWriter) {
+        Random random = new Random(writer);
+        int firstId = writer * idsPerWriter;
+
+        for (int i = 0; i < idsPerWriter; i++) {
+            database.add(new TransactionImpl(firstId + i,
+                    STATUSES[random.nextInt(STATUSES.length)],
+                    PARTIES[random.nextInt(PARTIES.length)],
+                    PARTIES[random.nextInt(PARTIES.length)],
+                    random.nextInt(1000) / 4.0));
+
+            int id = firstId + random.nextInt(i + 1);
+
+            if(!database.contains(id)) {
+                continue;
+            }
+
+            if(random.nextInt(4) == 0) {
+                database.removeTransactionById(id);
+            } else {
+                database.changeTransactionStatus(id, STATUSES[random.nextInt(STATUSES.length)]);
+            }
+        }
+    }
+
+    private static void assertConsistentRead(Chainblock database) {
+        for (TransactionStatus status : STATUSES) {
+            List<Transaction> byStatus = toList(database.getByTransactionStatusAndMaximumAmount(status, 100));
+
+            assertSorted(byStatus, TransactionOrder.AMOUNT_THEN_ID);
+            assertTrue(byStatus.stream().allMatch(t -> t.getAmount() <= 100));
+        }
+
+        List<Transaction> all = toList(database.getAllOrderedByAmountDescendingThenById());
+        Set<Integer> ids = all.stream().map(Transaction::getId).collect(Collectors.toSet());
+
+        assertEquals(all.size(), ids.size());
+        assertSorted(all, TransactionOrder.AMOUNT_THEN_ID.reversed());
+    }
+
+    private static void assertIndexesMatchStorage(Chainblock database) {
+        List<Transaction> stored = toList(database);
+        assertEquals(stored.size(), database.getCount());
+
+        List<Transaction> expectedAll = stored.stream()
+                .sorted(TransactionOrder.AMOUNT_THEN_ID)
+                .collect(Collectors.toList());
+
+        List<Transaction> inRange = toList(database.getAllInAmountRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+        inRange.sort(TransactionOrder.AMOUNT_THEN_ID);
+
+        assertEquals(expectedAll, inRange);
+
+        for (TransactionStatus status : STATUSES) {
+            List<Transaction> expected = expectedAll.stream()
+                    .filter(t -> t.getStatus() == status)
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, toList(database.getByTransactionStatusAndMaximumAmount(status, Double.POSITIVE_INFINITY)));
+            assertEquals(Aggregate.of(stored, t -> t.getStatus() == status), database.aggregateByTransactionStatus(status));
+        }
+
+        for (String party : PARTIES) {
+            List<Transaction> sent = expectedAll.stream()
+                    .filter(t -> t.getFrom().equals(party))
+                    .collect(Collectors.toList());
+            List<Transaction> received = expectedAll.stream()
+                    .filter(t -> t.getTo().equals(party))
+                    .collect(Collectors.toList());
+
+            assertEquals(sent, toList(database.getBySenderOrderedByAmountDescending(party)));
+            assertEquals(received, toList(database.getByReceiverOrderedByAmountThenById(party)));
+            assertEquals(Aggregate.of(stored, t -> t.getFrom().equals(party)), database.aggregateBySender(party));
+            assertEquals(Aggregate.of(stored, t -> t.getTo().equals(party)), database.aggregateByReceiver(party));
+
+            for (TransactionStatus status : STATUSES) {
+                assertEquals(Aggregate.of(stored, t -> t.getFrom().equals(party) && t.getStatus() == status),
+                        database.aggregateBySenderAndTransactionStatus(party, status));
+            }
+        }
+    }
+
+    private static void assertSorted(List<Transaction> transactions, Comparator<Transaction> comparator) {
+        for (int i = 1; i < transactions.size(); i++) {
+            assertTrue(comparator.compare(transactions.get(i - 1), transactions.get(i)) < 0);
+        }
+    }
+
+    private static List<Transaction> toList(Iterable<Transaction> iterable) {
+        List<Transaction> list = new ArrayList<>();
+        iterable.forEach(list::add);
+
+        return list;
+    }
+
+}
@@ -0,0 +1,131 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import status.TransactionStatus;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class DurableChainblockTest extends ChainblockImplTest {
+
+    private static final int WRITERS = 8;
+    private static final int IDS_PER_WRITER = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Override
+    protected Chainblock createChainblock() {
+        try {
+            return new DurableChainblock(folder.newFile().toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Transaction> contents(Chainblock database) {
+        List<Transaction> transactions = new ArrayList<>();
+        database.forEach(transactions::add);
+        transactions.sort(LedgerVersions.ID_COMPARATOR);
+
+        return transactions;
+    }
+
+    @Test
+    public void testReopeningShouldReplayEveryMutation() throws IOException {
+        Path path = folder.newFile().toPath();
+        List<Transaction> expected;
+
+        try (DurableChainblock database = new DurableChainblock(path)) {
+            database.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Michelle", 43.00));
+            database.add(new TransactionImpl(2, FAILED, "Pike", "Alex", 123.00));
+            database.addAll(Arrays.asList(
+                    new TransactionImpl(3, ABORTED, "Mike", "Alex", 155.00),
+                    new TransactionImpl(4, UNAUTHORIZED, "Rick", "Negan\u00e9", 23.00),
+                    new TransactionImpl(3, FAILED, "Mike", "Alex", 1.00)));
+            database.changeTransactionStatus(1, FAILED);
+            database.changeTransactionStatuses(new int[]{2, 3, 99}, SUCCESSFUL);
+            database.removeTransactionById(4);
+
+            expected = contents(database);
+        }
+
+        try (DurableChainblock database = new DurableChainblock(path)) {
+            assertEquals(expected, contents(database));
+            assertEquals(SUCCESSFUL, database.getById(3).getStatus());
+            assertFalse(database.contains(4));
+        }
+    }
+
+    @Test
+    public void testReopeningShouldDropTornTailAndKeepAppending() throws IOException {
+        Path path = folder.newFile().toPath();
+
+        try (DurableChainblock database = new DurableChainblock(path)) {
+            database.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Michelle", 43.00));
+            database.add(new TransactionImpl(2, FAILED, "Pike", "Alex", 123.00));
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (DurableChainblock database = new DurableChainblock(path)) {
+            assertEquals(1, database.getCount());
+            assertTrue(database.contains(1));
+
+            database.add(new TransactionImpl(5, ABORTED, "Mike", "Alex", 10.00));
+        }
+
+        try (DurableChainblock database = new DurableChainblock(path)) {
+            assertEquals(2, database.getCount());
+            assertTrue(database.contains(5));
+        }
+    }
+
+    @Test
+    public void testConcurrentWritersShouldAllBeDurable() throws Exception {
+        Path path = folder.newFile().toPath();
+        TransactionStatus[] statuses = TransactionStatus.values();
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+
+        try (DurableChainblock database = new DurableChainblock(path)) {
+            List<Future<?>> writers = new ArrayList<>();
+
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < IDS_PER_WRITER; i++) {
+                        int id = writer * IDS_PER_WRITER + i;
+
+                        database.add(new TransactionImpl(id, SUCCESSFUL, "Alex", "Mike", i));
+
+                        if(i % 3 == 0) {
+                            database.changeTransactionStatus(id, statuses[i % statuses.length]);
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        try (DurableChainblock database = new DurableChainblock(path)) {
+            assertEquals(WRITERS * IDS_PER_WRITER, database.getCount());
+            assertEquals(statuses[3 % statuses.length], database.getById(IDS_PER_WRITER + 3).getStatus());
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class FixedPointChainblockImplTest extends ChainblockImplTest {
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new ChainblockImpl(2);
+    }
+
+    private static List<Integer> ids(Iterable<Transaction> transactions) {
+        List<Integer> ids = new ArrayList<>();
+        transactions.forEach(t -> ids.add(t.getId()));
+
+        return ids;
+    }
+
+    @Override
+    @Test
+    public void testChangeTransactionStatusById() {
+        Transaction transaction = new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 43.00);
+        Chainblock database = createChainblock();
+        database.add(transaction);
+
+        database.changeTransactionStatus(1, FAILED);
+
+        assertEquals(FAILED, database.getById(1).getStatus());
+        assertEquals(SUCCESSFUL, transaction.getStatus());
+    }
+
+    @Test
+    public void testAmountsShouldBeStoredInMinorUnits() {
+        Chainblock database = createChainblock();
+        database.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 43.25));
+        database.addAll(Collections.singletonList(new TransactionImpl(2, FAILED, "Mike", "Alex", 0.1 + 0.2)));
+
+        FixedPointTransaction first = (FixedPointTransaction) database.getById(1);
+        FixedPointTransaction second = (FixedPointTransaction) database.getById(2);
+
+        assertEquals(4325, first.getMinorUnits());
+        assertEquals(30, second.getMinorUnits());
+        assertEquals(0.3, second.getAmount(), 0.0);
+        assertTrue(database.contains(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 43.25)));
+    }
+
+    @Test
+    public void testAmountBoundsShouldBeExactInMinorUnits() {
+        Chainblock fixedPoint = createChainblock();
+        Chainblock floatingPoint = new ChainblockImpl();
+
+        for (Chainblock database : new Chainblock[]{fixedPoint, floatingPoint}) {
+            database.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 0.3));
+            database.add(new TransactionImpl(2, SUCCESSFUL, "Alex", "Mike", 0.7));
+        }
+
+        double lo = 0.1 + 0.2;
+
+        assertEquals(Collections.singletonList(2), ids(floatingPoint.getAllInAmountRange(lo, 1.00)));
+        assertEquals(List.of(1, 2), ids(fixedPoint.getAllInAmountRange(lo, 1.00)));
+        assertEquals(List.of(2, 1), ids(fixedPoint.getByReceiverAndAmountRange("Mike", lo, 1.00)));
+        assertEquals(Collections.singletonList(1), ids(fixedPoint.getByTransactionStatusAndMaximumAmount(SUCCESSFUL, lo)));
+    }
+
+    @Test
+    public void testAmountBoundsBetweenMinorUnitsShouldRoundTowardsTheQuery() {
+        Chainblock database = createChainblock();
+        database.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 10.00));
+        database.add(new TransactionImpl(2, SUCCESSFUL, "Alex", "Mike", 10.01));
+
+        assertEquals(Collections.singletonList(1), ids(database.getByTransactionStatusAndMaximumAmount(SUCCESSFUL, 10.006)));
+        assertEquals(Collections.singletonList(2), ids(database.getBySenderAndMinimumAmountDescending("Alex", 10.006)));
+        assertEquals(Collections.singletonList(2), ids(database.getAllInAmountRange(10.004, 10.02)));
+        assertEquals(Collections.singletonList(1), ids(database.getAllInAmountRange(9.99, 10.006)));
+        assertEquals(Collections.singletonList(2), ids(database.getByReceiverAndAmountRange("Mike", 10.004, 10.02)));
+        assertEquals(Collections.singletonList(1), ids(database.getByReceiverAndAmountRange("Mike", 9.99, 10.006)));
+        assertEquals(Collections.singletonList(1), ids(database.getPageOrderedByAmountDescendingThenByIdAfter(10.006, 0, 10)));
+        assertEquals(Collections.singletonList(1), ids(database.getPageBySenderOrderedByAmountDescendingAfter("Alex", 10.006, 0, 10)));
+    }
+
+    @Test
+    public void testContainsShouldCompareTheStoredMinorUnits() {
+        Chainblock database = createChainblock();
+        database.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 0.1 + 0.2));
+
+        assertTrue(database.contains(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 0.3)));
+        assertFalse(database.contains(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 0.31)));
+        assertFalse(database.contains(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", Double.NaN)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorShouldThrowForTooManyFractionDigits() {
+        new ChainblockImpl(FixedPointTransaction.MAX_FRACTION_DIGITS + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddShouldThrowForAnAmountWithoutMinorUnits() {
+        createChainblock().add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", Double.NaN));
+    }
+
+    @Test
+    public void testRejectedAddShouldNotRegisterItsParties() {
+        Chainblock database = createChainblock();
+
+        try {
+            database.add(new TransactionImpl(1, SUCCESSFUL, "Ghost", "Shadow", Double.NaN));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertEquals(0, database.aggregateBySender("Ghost").getCount());
+
+        try {
+            database.getBySenderOrderedByAmountDescending("Ghost");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testRejectedAddAllShouldLeaveTheLedgerUnchanged() {
+        Chainblock database = createChainblock();
+        database.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 43.00));
+
+        try {
+            database.addAll(List.of(new TransactionImpl(2, SUCCESSFUL, "Alex", "Mike", 10.00),
+                    new TransactionImpl(3, FAILED, "Pike", "Alex", Double.NaN),
+                    new TransactionImpl(4, FAILED, "Rick", "Alex", 20.00)));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertEquals(1, database.getCount());
+        assertFalse(database.contains(2));
+        assertEquals(List.of(1), ids(database.getByTransactionStatus(SUCCESSFUL)));
+        assertEquals(List.of(1), ids(database.getAllInAmountRange(0, 100)));
+        assertEquals(1, database.aggregateBySender("Alex").getCount());
+        assertEquals(43.00, database.aggregateBySender("Alex").getSum(), 0);
+
+        assertEquals(2, database.addAll(List.of(new TransactionImpl(2, SUCCESSFUL, "Alex", "Mike", 10.00),
+                new TransactionImpl(4, FAILED, "Rick", "Alex", 20.00))));
+        database.removeTransactionById(2);
+
+        assertEquals(List.of(1, 4), ids(database.getAllInAmountRange(0, 100)));
+    }
+
+    @Test
+    public void testAddShouldShareOneCopyOfEachPartyName() {
+        Chainblock database = createChainblock();
+        database.add(new TransactionImpl(1, SUCCESSFUL, new String("Alex"), new String("Mike"), 43.00));
+        database.add(new TransactionImpl(2, FAILED, new String("Mike"), new String("Alex"), 123.00));
+        database.addAll(Collections.singletonList(new TransactionImpl(3, FAILED, new String("Alex"), new String("Mike"), 10.00)));
+
+        assertSame(database.getById(1).getFrom(), database.getById(2).getTo());
+        assertSame(database.getById(1).getFrom(), database.getById(3).getFrom());
+        assertSame(database.getById(1).getTo(), database.getById(2).getFrom());
+    }
+
+}
@@ -0,0 +1,60 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void testSmallValuesShouldBeExact() {
+        Histogram histogram = new Histogram();
+
+        for (int value = 1; value <= 20; value++) {
+            histogram.record(value);
+        }
+
+        Distribution distribution = histogram.snapshot();
+
+        assertEquals(20, distribution.getCount());
+        assertEquals(210, distribution.getTotal());
+        assertEquals(10, distribution.getP50());
+        assertEquals(20, distribution.getP99());
+        assertEquals(20, distribution.getMax());
+    }
+
+    @Test
+    public void testPercentilesShouldStayWithinTheBucketError() {
+        Histogram histogram = new Histogram();
+        Random random = new Random(5);
+        long[] values = new long[100_000];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 30);
+            histogram.record(values[i]);
+        }
+
+        Arrays.sort(values);
+        Distribution distribution = histogram.snapshot();
+
+        assertWithin(values[values.length / 2 - 1], distribution.getP50());
+        assertWithin(values[(int) Math.ceil(values.length * 0.99) - 1], distribution.getP99());
+        assertWithin(values[(int) Math.ceil(values.length * 0.999) - 1], distribution.getP999());
+        assertEquals(values[values.length - 1], distribution.getMax());
+    }
+
+    private static void assertWithin(long exact, long estimate) {
+        assertTrue(estimate + " should not be below " + exact, estimate >= exact);
+        assertTrue(estimate + " should be within 1/32 of " + exact, estimate <= exact + exact / 32);
+    }
+
+    @Test
+    public void testNegativeValuesShouldCountAsZero() {
+        Histogram histogram = new Histogram();
+        histogram.record(-7);
+
+        assertEquals(new Distribution(1, 0, 0, 0, 0, 0), histogram.snapshot());
+    }
+
+}
@@ -0,0 +1,118 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class InstrumentedChainblockTest extends ChainblockImplTest {
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new InstrumentedChainblock(new ChainblockImpl());
+    }
+
+    private static InstrumentedChainblock ledgerOf(Chainblock ledger, int transactions) {
+        for (int id = 0; id < transactions; id++) {
+            ledger.add(new TransactionImpl(id, id % 4 == 0 ? FAILED : SUCCESSFUL, "Alex", "Mike", id));
+        }
+
+        return new InstrumentedChainblock(ledger);
+    }
+
+    @Test
+    public void testStatisticsShouldCountCallsFailuresAndResultSizes() {
+        InstrumentedChainblock database = ledgerOf(new ChainblockImpl(), 100);
+
+        database.getByTransactionStatus(FAILED);
+        database.getByTransactionStatus(SUCCESSFUL);
+
+        try {
+            database.getByTransactionStatus(ABORTED);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        OperationStatistics statistics = database.statistics(InstrumentedChainblock.Operation.GET_BY_TRANSACTION_STATUS);
+
+        assertEquals("getByTransactionStatus", statistics.getOperation());
+        assertEquals(3, statistics.getCalls());
+        assertEquals(1, statistics.getFailures());
+        assertEquals(2, statistics.getResultSizes().getCount());
+        assertEquals(100, statistics.getResultSizes().getTotal());
+        assertEquals(75, statistics.getResultSizes().getMax());
+        assertEquals(3, statistics.getLatencyNanos().getCount());
+        assertTrue(statistics.getLatencyNanos().getP50() <= statistics.getLatencyNanos().getP999());
+        assertEquals(1, database.statistics().size());
+    }
+
+    @Test
+    public void testScannedShouldTellIndexSeeksFromFullScans() {
+        InstrumentedChainblock indexed = ledgerOf(new ChainblockImpl(), 1000);
+        InstrumentedChainblock columnar = ledgerOf(new ColumnarChainblock(), 1000);
+
+        indexed.getAllInAmountRange(10, 19);
+        columnar.getAllInAmountRange(10, 19);
+
+        InstrumentedChainblock.Operation operation = InstrumentedChainblock.Operation.GET_ALL_IN_AMOUNT_RANGE;
+
+        assertEquals(10, indexed.statistics(operation).getScanned().getTotal());
+        assertEquals(1000, columnar.statistics(operation).getScanned().getTotal());
+        assertEquals(10, columnar.statistics(operation).getResultSizes().getTotal());
+    }
+
+    @Test
+    public void testScannedShouldCountTheTransactionsAPageSkips() {
+        InstrumentedChainblock database = ledgerOf(new ChainblockImpl(), 100);
+
+        database.getPageOrderedByAmountDescendingThenById(20, 10);
+        database.getPageOrderedByAmountDescendingThenById(150, 10);
+
+        InstrumentedChainblock.Operation operation = InstrumentedChainblock.Operation.GET_PAGE_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID;
+
+        assertEquals(130, database.statistics(operation).getScanned().getTotal());
+    }
+
+    @Test
+    public void testScannedShouldOnlyCountALedgerWrappedDirectly() {
+        Chainblock ledger = new ChainblockImpl();
+        InstrumentedChainblock direct = ledgerOf(ledger, 100);
+        InstrumentedChainblock indirect = new InstrumentedChainblock(new CachingChainblock(ledger));
+
+        direct.getAllOrderedByAmountDescendingThenById();
+        indirect.getAllOrderedByAmountDescendingThenById();
+
+        InstrumentedChainblock.Operation operation = InstrumentedChainblock.Operation.GET_ALL_ORDERED_BY_AMOUNT_DESCENDING_THEN_BY_ID;
+
+        assertEquals(100, direct.statistics(operation).getScanned().getTotal());
+        assertEquals(0, indirect.statistics(operation).getScanned().getTotal());
+    }
+
+    @Test
+    public void testResetShouldClearTheStatistics() {
+        InstrumentedChainblock database = ledgerOf(new ChainblockImpl(), 10);
+        database.getById(3);
+
+        database.resetStatistics();
+
+        assertTrue(database.statistics().isEmpty());
+        assertEquals(Distribution.EMPTY, database.statistics(InstrumentedChainblock.Operation.GET_BY_ID).getLatencyNanos());
+    }
+
+    @Test
+    public void testExportsShouldListEveryCalledOperation() {
+        InstrumentedChainblock database = ledgerOf(new ChainblockImpl(), 10);
+        database.contains(3);
+        database.getAllOrderedByAmountDescendingThenById();
+
+        String[] lines = database.exportText().split(System.lineSeparator());
+        String json = database.exportJson();
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("contains(int) - calls: 1, failures: 0"));
+        assertTrue(lines[1].startsWith("getAllOrderedByAmountDescendingThenById - calls: 1"));
+        assertTrue(json.startsWith("[{\"operation\":\"contains(int)\",\"calls\":1,\"failures\":0,\"latencyNanos\":{\"count\":1,"));
+        assertTrue(json.contains("\"resultSizes\":{\"count\":1,\"total\":10,\"mean\":10.0,\"p50\":10,\"p99\":10,\"p999\":10,\"max\":10}"));
+        assertTrue(json.endsWith("}]"));
+        assertEquals(2, json.split("\"operation\"").length - 1);
+    }
+
+}
@@ -0,0 +1,160 @@
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import status.TransactionStatus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class MappedChainblockTest {
+
+    private static final String[] PARTIES = {"Alex", "Michelle", "Mike", "Pike", "Carol", "Rick", "Porky", "Mark"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Chainblock ledger;
+    private MappedChainblock mapped;
+
+    @Before
+    public void setUp() throws IOException {
+        ledger = new ChainblockImpl();
+        Random random = new Random(11);
+        TransactionStatus[] statuses = {FAILED, SUCCESSFUL, ABORTED, UNAUTHORIZED};
+
+        for (int i = 0; i < 2000; i++) {
+            ledger.add(new TransactionImpl(random.nextInt(100_000), statuses[random.nextInt(statuses.length)],
+                    PARTIES[random.nextInt(PARTIES.length)], PARTIES[random.nextInt(PARTIES.length - 1)], random.nextInt(500) / 4.0));
+        }
+
+        ledger.add(new TransactionImpl(-5, SUCCESSFUL, "Alex", "Nobody", 1.00));
+
+        Path path = folder.newFile().toPath();
+        MappedChainblock.write(ledger, path);
+        mapped = MappedChainblock.open(path);
+    }
+
+    private static List<Object> toList(Iterable<?> iterable) {
+        List<Object> list = new ArrayList<>();
+        iterable.forEach(list::add);
+
+        return list;
+    }
+
+    @Test
+    public void testPointLookupsShouldMatchTheLedger() {
+        assertEquals(ledger.getCount(), mapped.getCount());
+
+        for (Transaction transaction : ledger) {
+            assertTrue(mapped.contains(transaction.getId()));
+            assertTrue(mapped.contains(transaction));
+            assertEquals(transaction, mapped.getById(transaction.getId()));
+        }
+
+        assertFalse(mapped.contains(100_001));
+    }
+
+    @Test
+    public void testQueriesShouldMatchTheLedger() {
+        for (TransactionStatus status : new TransactionStatus[]{FAILED, SUCCESSFUL, ABORTED, UNAUTHORIZED}) {
+            assertEquals(toList(ledger.getByTransactionStatus(status)), toList(mapped.getByTransactionStatus(status)));
+            assertEquals(toList(ledger.getAllSendersWithTransactionStatus(status)), toList(mapped.getAllSendersWithTransactionStatus(status)));
+            assertEquals(toList(ledger.getAllReceiversWithTransactionStatus(status)), toList(mapped.getAllReceiversWithTransactionStatus(status)));
+            assertEquals(toList(ledger.getByTransactionStatusAndMaximumAmount(status, 60.25)),
+                    toList(mapped.getByTransactionStatusAndMaximumAmount(status, 60.25)));
+        }
+
+        assertEquals(toList(ledger.getAllOrderedByAmountDescendingThenById()), toList(mapped.getAllOrderedByAmountDescendingThenById()));
+
+        for (String party : PARTIES) {
+            assertEquals(toList(ledger.getBySenderOrderedByAmountDescending(party)), toList(mapped.getBySenderOrderedByAmountDescending(party)));
+            assertEquals(toList(ledger.getBySenderAndMinimumAmountDescending(party, 80.00)),
+                    toList(mapped.getBySenderAndMinimumAmountDescending(party, 80.00)));
+            assertEquals(toList(ledger.getPageBySenderOrderedByAmountDescending(party, 10, 25)),
+                    toList(mapped.getPageBySenderOrderedByAmountDescending(party, 10, 25)));
+            assertEquals(toList(ledger.getPageBySenderOrderedByAmountDescendingAfter(party, 50.00, 300, 25)),
+                    toList(mapped.getPageBySenderOrderedByAmountDescendingAfter(party, 50.00, 300, 25)));
+        }
+
+        for (String party : Arrays.copyOf(PARTIES, PARTIES.length - 1)) {
+            assertEquals(toList(ledger.getByReceiverOrderedByAmountThenById(party)), toList(mapped.getByReceiverOrderedByAmountThenById(party)));
+            assertEquals(toList(ledger.getByReceiverAndAmountRange(party, 20.00, 75.50)),
+                    toList(mapped.getByReceiverAndAmountRange(party, 20.00, 75.50)));
+        }
+
+        assertEquals(toList(ledger.getAllInAmountRange(20.00, 75.50)), toList(mapped.getAllInAmountRange(20.00, 75.50)));
+        assertEquals(toList(ledger.getAllInAmountRange(75.50, 20.00)), toList(mapped.getAllInAmountRange(75.50, 20.00)));
+        assertEquals(toList(ledger.getPageOrderedByAmountDescendingThenById(100, 40)), toList(mapped.getPageOrderedByAmountDescendingThenById(100, 40)));
+        assertEquals(toList(ledger.getPageOrderedByAmountDescendingThenByIdAfter(62.50, 500, 40)),
+                toList(mapped.getPageOrderedByAmountDescendingThenByIdAfter(62.50, 500, 40)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSenderQueryShouldThrowForPartyThatOnlyReceived() {
+        mapped.getBySenderOrderedByAmountDescending("Nobody");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testMappedLedgerShouldBeReadOnly() {
+        mapped.removeTransactionById(mapped.iterator().next().getId());
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenShouldRejectTruncatedFile() throws IOException {
+        Path path = folder.newFile().toPath();
+        MappedChainblock.write(ledger, path);
+
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+
+        MappedChainblock.open(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenShouldRejectCorruptedDictionary() throws IOException {
+        Path path = folder.newFile().toPath();
+        MappedChainblock.write(ledger, path);
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 2 * Long.BYTES - 1] ^= 1;
+        Files.write(path, bytes);
+
+        MappedChainblock.open(path);
+    }
+
+    @Test
+    public void testVerifyShouldRejectCorruptedRecords() throws IOException {
+        Path path = folder.newFile().toPath();
+        MappedChainblock.write(ledger, path);
+        MappedChainblock.open(path).verify();
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(path, bytes);
+
+        MappedChainblock corrupted = MappedChainblock.open(path);
+
+        try {
+            corrupted.verify();
+            fail("Corrupted records were not detected");
+        } catch (IOException expected) {
+            // The records no longer match their checksum.
+        }
+    }
+
+    @Test
+    public void testWriteShouldNotLeaveTemporaryFileBehind() throws IOException {
+        Path path = folder.newFile().toPath();
+        MappedChainblock.write(ledger, path);
+
+        assertFalse(Files.exists(path.resolveSibling(path.getFileName() + ".tmp")));
+        assertEquals(ledger.getCount(), MappedChainblock.open(path).getCount());
+    }
+
+}
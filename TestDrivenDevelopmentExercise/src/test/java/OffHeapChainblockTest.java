@@ -0,0 +1,87 @@
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class OffHeapChainblockTest extends ChainblockImplTest {
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new OffHeapChainblock();
+    }
+
+    @Override
+    @Test
+    public void testChangeTransactionStatusById() {
+        Chainblock database = createChainblock();
+        database.add(new TransactionImpl(101, SUCCESSFUL, "Alex", "Michelle", 7.00));
+
+        database.changeTransactionStatus(101, FAILED);
+
+        assertEquals(FAILED, database.getById(101).getStatus());
+    }
+
+    @Test
+    public void testViewsShouldReadThroughToTheirRecord() {
+        Chainblock database = createChainblock();
+        database.add(new TransactionImpl(101, SUCCESSFUL, "Alex", "Michelle", 7.00));
+
+        Transaction view = database.getById(101);
+        database.changeTransactionStatus(101, ABORTED);
+        assertEquals(ABORTED, view.getStatus());
+
+        view.setStatus(FAILED);
+        assertEquals(FAILED, database.getByTransactionStatus(FAILED).iterator().next().getStatus());
+        assertEquals(new TransactionImpl(101, FAILED, "Alex", "Michelle", 7.00), view);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testViewOfRemovedTransactionShouldThrow() {
+        Chainblock database = createChainblock();
+        database.add(new TransactionImpl(101, SUCCESSFUL, "Alex", "Michelle", 7.00));
+
+        Transaction view = database.getById(101);
+        database.removeTransactionById(101);
+        database.add(new TransactionImpl(102, SUCCESSFUL, "Mike", "Michelle", 9.00));
+
+        view.getAmount();
+    }
+
+    @Test
+    public void testRecordsShouldSpanChunksAndReuseRemovedSlots() {
+        Chainblock database = createChainblock();
+
+        for (int i = 0; i < 70_000; i++) {
+            database.add(new TransactionImpl(i, NONE, "Alex", "Mike", i));
+        }
+
+        for (int i = 0; i < 70_000; i += 2) {
+            database.removeTransactionById(i);
+        }
+
+        for (int i = 70_000; i < 80_000; i++) {
+            database.add(new TransactionImpl(i, SUCCESSFUL, "Mike", "Alex", i));
+        }
+
+        assertEquals(45_000, database.getCount());
+        assertFalse(database.contains(68_000));
+        assertEquals(69_999.0, database.getById(69_999).getAmount(), 0.0);
+        assertEquals("Mike", database.getById(75_000).getFrom());
+        assertEquals(79_999.0, database.getBySenderOrderedByAmountDescending("Mike").iterator().next().getAmount(), 0.0);
+    }
+
+    @Test
+    public void testAddShouldShareOneCopyOfEachPartyName() {
+        Chainblock database = createChainblock();
+        database.add(new TransactionImpl(1, SUCCESSFUL, new String("Alex"), new String("Mike"), 43.00));
+        database.add(new TransactionImpl(2, FAILED, new String("Mike"), new String("Alex"), 123.00));
+        database.addAll(Collections.singletonList(new TransactionImpl(3, FAILED, new String("Alex"), new String("Mike"), 10.00)));
+
+        assertSame(database.getById(1).getFrom(), database.getById(2).getTo());
+        assertSame(database.getById(1).getFrom(), database.getById(3).getFrom());
+        assertSame(database.getById(1).getTo(), database.getById(2).getFrom());
+    }
+
+}
@@ -0,0 +1,57 @@
+import org.junit.Test;
+import status.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class ParallelColumnarChainblockTest extends ColumnarChainblockTest {
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new ColumnarChainblock(ForkJoinPool.commonPool(), 1);
+    }
+
+    private static List<Object> toList(Iterable<?> iterable) {
+        List<Object> list = new ArrayList<>();
+        iterable.forEach(list::add);
+
+        return list;
+    }
+
+    @Test
+    public void testParallelScansShouldMatchTheIndexedLedger() {
+        Chainblock indexed = new ChainblockImpl();
+        Chainblock columnar = new ColumnarChainblock(ForkJoinPool.commonPool(), 1000);
+        Chainblock offHeap = new OffHeapChainblock(ForkJoinPool.commonPool(), 1000);
+        Random random = new Random(13);
+        String[] parties = {"Alex", "Mike", "Pike", "Carol", "Rick"};
+        TransactionStatus[] statuses = {FAILED, SUCCESSFUL, ABORTED, UNAUTHORIZED};
+
+        for (int i = 0; i < 20_000; i++) {
+            Transaction transaction = new TransactionImpl(random.nextInt(1_000_000), statuses[random.nextInt(statuses.length)],
+                    parties[random.nextInt(parties.length)], parties[random.nextInt(parties.length)], random.nextInt(2000) / 4.0);
+            indexed.add(transaction);
+            columnar.add(transaction);
+            offHeap.add(transaction);
+        }
+
+        for (Chainblock parallel : new Chainblock[]{columnar, offHeap}) {
+            assertEquals(toList(indexed.getAllOrderedByAmountDescendingThenById()), toList(parallel.getAllOrderedByAmountDescendingThenById()));
+            assertEquals(toList(indexed.getAllInAmountRange(100.00, 250.25)), toList(parallel.getAllInAmountRange(100.00, 250.25)));
+            assertEquals(toList(indexed.getByTransactionStatus(ABORTED)), toList(parallel.getByTransactionStatus(ABORTED)));
+            assertEquals(toList(indexed.getAllSendersWithTransactionStatus(FAILED)), toList(parallel.getAllSendersWithTransactionStatus(FAILED)));
+            assertEquals(toList(indexed.getBySenderAndMinimumAmountDescending("Pike", 300.00)),
+                    toList(parallel.getBySenderAndMinimumAmountDescending("Pike", 300.00)));
+            assertEquals(toList(indexed.getPageOrderedByAmountDescendingThenById(5000, 100)),
+                    toList(parallel.getPageOrderedByAmountDescendingThenById(5000, 100)));
+            assertEquals(toList(indexed.getPageBySenderOrderedByAmountDescendingAfter("Rick", 200.00, 500_000, 50)),
+                    toList(parallel.getPageBySenderOrderedByAmountDescendingAfter("Rick", 200.00, 500_000, 50)));
+        }
+    }
+
+}
@@ -0,0 +1,10 @@
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelOffHeapChainblockTest extends OffHeapChainblockTest {
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new OffHeapChainblock(ForkJoinPool.commonPool(), 1);
+    }
+
+}
@@ -0,0 +1,78 @@
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PersistentTreeTest {
+
+    private static List<Integer> toList(Iterator<Integer> iterator) {
+        List<Integer> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+
+        return list;
+    }
+
+    @Test
+    public void testUpdatesShouldMatchTreeSetAndLeaveOldVersionsIntact() {
+        Random random = new Random(7);
+        TreeSet<Integer> expected = new TreeSet<>();
+        PersistentTree<Integer> tree = PersistentTree.empty(Comparator.naturalOrder());
+
+        for (int i = 0; i < 5000; i++) {
+            int value = random.nextInt(1000);
+
+            if(random.nextInt(3) == 0) {
+                expected.remove(value);
+                tree = tree.remove(value);
+            } else {
+                expected.add(value);
+                tree = tree.insert(value);
+            }
+
+            if(i == 2500) {
+                List<Integer> frozen = new ArrayList<>(expected);
+                PersistentTree<Integer> version = tree;
+
+                tree = tree.remove(frozen.get(0)).insert(-1);
+
+                assertEquals(frozen, toList(version.iterator()));
+                tree = tree.remove(-1).insert(frozen.get(0));
+            }
+        }
+
+        assertEquals(expected.size(), tree.size());
+        assertEquals(new ArrayList<>(expected), toList(tree.iterator()));
+        assertEquals(new ArrayList<>(expected.descendingSet()), toList(tree.descendingIterator()));
+    }
+
+    @Test
+    public void testRangeShouldMatchSubSetForAllBoundKinds() {
+        List<Integer> values = new ArrayList<>();
+
+        for (int i = 0; i < 100; i += 2) {
+            values.add(i);
+        }
+
+        TreeSet<Integer> expected = new TreeSet<>(values);
+        PersistentTree<Integer> tree = PersistentTree.ofSorted(Comparator.naturalOrder(), values);
+
+        for (int from = -1; from < 101; from += 7) {
+            for (int to = from; to < 101; to += 5) {
+                for (boolean fromInclusive : new boolean[]{true, false}) {
+                    for (boolean toInclusive : new boolean[]{true, false}) {
+                        assertEquals(new ArrayList<>(expected.subSet(from, fromInclusive, to, toInclusive)),
+                                toList(tree.range(from, fromInclusive, to, toInclusive)));
+                    }
+                }
+            }
+
+            assertEquals(new ArrayList<>(expected.tailSet(from, true)), toList(tree.range(from, true, null, true)));
+        }
+
+        assertEquals(50, tree.size());
+        assertEquals(Integer.valueOf(42), tree.find(42));
+        assertNull(tree.find(43));
+    }
+
+}
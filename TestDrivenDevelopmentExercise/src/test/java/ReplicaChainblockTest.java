@@ -0,0 +1,259 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import status.TransactionStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class ReplicaChainblockTest {
+
+    private static final String[] PARTIES = {"Alex", "Mike", "Pike", "Carol", "Rick"};
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private Chainblock ledger;
+    private ReplicationPrimary primary;
+    private List<ReplicaChainblock> replicas;
+
+    @Before
+    public void setUp() throws IOException {
+        ledger = new ConcurrentChainblock();
+        primary = new ReplicationPrimary(ledger);
+        replicas = new ArrayList<>();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (ReplicaChainblock replica : replicas) {
+            replica.close();
+        }
+
+        primary.close();
+    }
+
+    /**
+     * Ledger that publishes its additions through a change feed with a
+     * small buffer, so a replica can be made to fall behind on purpose.
+     */
+    private static final class OverflowingLedger extends ConcurrentChainblock {
+
+        private final ChangeFeed feed;
+
+        OverflowingLedger(Executor executor, int bufferSize) {
+            this.feed = new ChangeFeed(executor, bufferSize, 1);
+        }
+
+        @Override
+        public Flow.Publisher<List<ChangeEvent>> changes() {
+            return feed;
+        }
+
+        @Override
+        public void add(Transaction transaction) {
+            super.add(transaction);
+            feed.added(transaction);
+        }
+    }
+
+    /**
+     * Holds every delivery until released, then runs them on the caller.
+     */
+    private static final class HeldExecutor implements Executor {
+
+        private final List<Runnable> held = new ArrayList<>();
+        private boolean holding = true;
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                if(holding) {
+                    held.add(task);
+                    return;
+                }
+            }
+
+            task.run();
+        }
+
+        void release() {
+            List<Runnable> tasks;
+
+            synchronized (this) {
+                holding = false;
+                tasks = new ArrayList<>(held);
+                held.clear();
+            }
+
+            tasks.forEach(Runnable::run);
+        }
+    }
+
+    private void replaceLedger(Chainblock overflowing) throws IOException {
+        primary.close();
+        ledger = overflowing;
+        primary = new ReplicationPrimary(ledger);
+    }
+
+    private ReplicaChainblock connect() throws IOException {
+        ReplicaChainblock replica = new ReplicaChainblock(primary.getAddress());
+        replicas.add(replica);
+
+        return replica;
+    }
+
+    private static List<Object> toList(Iterable<?> iterable) {
+        List<Object> list = new ArrayList<>();
+        iterable.forEach(list::add);
+
+        return list;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting for the replica", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitInSync(ReplicaChainblock replica) throws InterruptedException {
+        await(() -> toList(ledger.getAllOrderedByAmountDescendingThenById()).equals(toList(replica.getAllOrderedByAmountDescendingThenById())));
+    }
+
+    @Test
+    public void testReplicaShouldStartFromTheCurrentState() throws IOException {
+        ledger.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 43.00));
+        ledger.add(new TransactionImpl(2, FAILED, "Mike", "Alex", 123.00));
+
+        ReplicaChainblock replica = connect();
+
+        assertTrue(replica.isConnected());
+        assertEquals(2, replica.getCount());
+        assertEquals(ledger.getById(2), replica.getById(2));
+    }
+
+    @Test
+    public void testReplicaShouldFollowEveryMutation() throws Exception {
+        ReplicaChainblock replica = connect();
+
+        ledger.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 43.00));
+        ledger.add(new TransactionImpl(2, FAILED, "Mike", "Alex", 123.00));
+        ledger.add(new TransactionImpl(3, ABORTED, "Pike", "Alex", 10.00));
+        ledger.changeTransactionStatus(1, UNAUTHORIZED);
+        ledger.removeTransactionById(3);
+
+        awaitInSync(replica);
+
+        assertEquals(UNAUTHORIZED, replica.getById(1).getStatus());
+        assertFalse(replica.contains(3));
+        assertEquals(toList(ledger.getBySenderOrderedByAmountDescending("Mike")), toList(replica.getBySenderOrderedByAmountDescending("Mike")));
+        assertEquals(ledger.aggregateByReceiver("Alex"), replica.aggregateByReceiver("Alex"));
+    }
+
+    @Test
+    public void testReplicasShouldConvergeAfterABurstOfChanges() throws Exception {
+        ReplicaChainblock first = connect();
+        Random random = new Random(3);
+
+        for (int i = 0; i < 50_000; i++) {
+            int id = random.nextInt(20_000);
+
+            if(!ledger.contains(id)) {
+                ledger.add(new TransactionImpl(id, STATUSES[random.nextInt(STATUSES.length)],
+                        PARTIES[random.nextInt(PARTIES.length)], PARTIES[random.nextInt(PARTIES.length)], random.nextInt(2000) / 4.0));
+            } else if(random.nextBoolean()) {
+                ledger.changeTransactionStatus(id, STATUSES[random.nextInt(STATUSES.length)]);
+            } else {
+                ledger.removeTransactionById(id);
+            }
+
+            if(i == 25_000) {
+                connect();
+            }
+        }
+
+        for (ReplicaChainblock replica : replicas) {
+            awaitInSync(replica);
+            assertEquals(toList(ledger.getByTransactionStatus(ABORTED)), toList(replica.getByTransactionStatus(ABORTED)));
+        }
+
+        await(() -> primary.getMaxReplicaLag() == 0);
+        assertEquals(2, primary.getReplicaCount());
+        assertEquals(0, first.getLag());
+        assertTrue(first.getAppliedSequence() > 0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAddShouldThrowOnAReplica() throws IOException {
+        connect().add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 43.00));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveShouldThrowOnAReplica() throws IOException {
+        ledger.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 43.00));
+
+        connect().removeTransactionById(1);
+    }
+
+    @Test
+    public void testClosingThePrimaryShouldDisconnectReplicas() throws Exception {
+        ledger.add(new TransactionImpl(1, SUCCESSFUL, "Alex", "Mike", 43.00));
+        ReplicaChainblock replica = connect();
+
+        primary.close();
+
+        await(() -> !replica.isConnected());
+        assertEquals(1, replica.getCount());
+        assertEquals(0, primary.getReplicaCount());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPrimaryShouldRequireAChangeFeed() throws IOException {
+        new ReplicationPrimary(new ConcurrentChainblock().snapshot());
+    }
+
+    @Test
+    public void testReplicaShouldResyncAfterItsSubscriptionOverflows() throws Exception {
+        HeldExecutor executor = new HeldExecutor();
+        replaceLedger(new OverflowingLedger(executor, 4));
+        ReplicaChainblock replica = connect();
+
+        for (int id = 1; id <= 10; id++) {
+            ledger.add(new TransactionImpl(id, SUCCESSFUL, "Alex", "Mike", id));
+        }
+
+        executor.release();
+        ledger.add(new TransactionImpl(11, FAILED, "Mike", "Alex", 11));
+
+        awaitInSync(replica);
+
+        assertTrue(replica.isConnected());
+        assertEquals(11, replica.getCount());
+        assertEquals(1, primary.getReplicaCount());
+    }
+
+    @Test
+    public void testReplicaThatKeepsOverflowingShouldBeDisconnected() throws Exception {
+        replaceLedger(new OverflowingLedger(Runnable::run, 0));
+        ReplicaChainblock replica = connect();
+        long deadline = System.nanoTime() + 10_000_000_000L;
+
+        for (int id = 1; replica.isConnected(); id++) {
+            assertTrue("Timed out waiting for the primary to give up", System.nanoTime() < deadline);
+            ledger.add(new TransactionImpl(id, SUCCESSFUL, "Alex", "Mike", id));
+            Thread.sleep(1);
+        }
+
+        await(() -> primary.getReplicaCount() == 0);
+    }
+
+}
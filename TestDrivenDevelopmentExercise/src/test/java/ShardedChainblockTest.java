@@ -0,0 +1,177 @@
+import org.junit.Test;
+import status.TransactionStatus;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class ShardedChainblockTest extends ChainblockImplTest {
+
+    private static final String[] PARTIES = {"Alex", "Mike", "Pike", "Carol", "Rick"};
+    private static final TransactionStatus[] STATUSES = {FAILED, SUCCESSFUL, ABORTED, UNAUTHORIZED};
+
+    @Override
+    protected Chainblock createChainblock() {
+        return new ShardedChainblock(4);
+    }
+
+    private static List<Object> toList(Iterable<?> iterable) {
+        List<Object> list = new ArrayList<>();
+        iterable.forEach(list::add);
+
+        return list;
+    }
+
+    @Override
+    @Test
+    public void testIteratorShouldReturnAllTransactions() {
+        Chainblock database = createChainblock();
+        Set<Transaction> expected = new HashSet<>();
+
+        for (int i = 0; i < 10; i++) {
+            Transaction transaction = new TransactionImpl(i, STATUSES[i % STATUSES.length], "Alex", "Mike", i);
+            expected.add(transaction);
+            database.add(transaction);
+        }
+
+        Set<Transaction> actual = new HashSet<>();
+        database.iterator().forEachRemaining(actual::add);
+
+        assertEquals(expected, actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorShouldThrowWithoutShards() {
+        new ShardedChainblock(0);
+    }
+
+    @Test
+    public void testMergedQueriesShouldMatchASingleLedger() {
+        Chainblock single = new ChainblockImpl();
+        Chainblock sharded = new ShardedChainblock(7);
+        Random random = new Random(23);
+
+        for (int i = 0; i < 20_000; i++) {
+            int id = random.nextInt(1_000_000);
+            TransactionStatus status = STATUSES[random.nextInt(STATUSES.length)];
+            String from = PARTIES[random.nextInt(PARTIES.length)];
+            String to = PARTIES[random.nextInt(PARTIES.length)];
+            double amount = random.nextInt(2000) / 4.0;
+            single.add(new TransactionImpl(id, status, from, to, amount));
+            sharded.add(new TransactionImpl(id, status, from, to, amount));
+        }
+
+        int[] ids = random.ints(500, 0, 1_000_000).toArray();
+        assertEquals(single.changeTransactionStatuses(ids, ABORTED), sharded.changeTransactionStatuses(ids, ABORTED));
+
+        assertEquals(single.getCount(), sharded.getCount());
+        assertEquals(toList(single.getAllOrderedByAmountDescendingThenById()), toList(sharded.getAllOrderedByAmountDescendingThenById()));
+        assertEquals(toList(single.getAllInAmountRange(100.00, 250.25)), toList(sharded.getAllInAmountRange(100.00, 250.25)));
+        assertEquals(toList(single.getByTransactionStatus(ABORTED)), toList(sharded.getByTransactionStatus(ABORTED)));
+        assertEquals(toList(single.getAllReceiversWithTransactionStatus(FAILED)), toList(sharded.getAllReceiversWithTransactionStatus(FAILED)));
+        assertEquals(toList(single.getBySenderOrderedByAmountDescending("Pike")), toList(sharded.getBySenderOrderedByAmountDescending("Pike")));
+        assertEquals(toList(single.getByReceiverAndAmountRange("Carol", 50.00, 400.00)),
+                toList(sharded.getByReceiverAndAmountRange("Carol", 50.00, 400.00)));
+        assertEquals(toList(single.getPageOrderedByAmountDescendingThenById(5000, 100)),
+                toList(sharded.getPageOrderedByAmountDescendingThenById(5000, 100)));
+        assertEquals(toList(single.getPageBySenderOrderedByAmountDescendingAfter("Rick", 200.00, 500_000, 50)),
+                toList(sharded.getPageBySenderOrderedByAmountDescendingAfter("Rick", 200.00, 500_000, 50)));
+        assertEquals(single.aggregateBySenderAndTransactionStatus("Alex", SUCCESSFUL).getCount(),
+                sharded.aggregateBySenderAndTransactionStatus("Alex", SUCCESSFUL).getCount());
+        assertEquals(single.aggregateBySender("Mike").getSum(), sharded.aggregateBySender("Mike").getSum(), 1e-6);
+        assertEquals(toList(single.snapshot().getAllOrderedByAmountDescendingThenById()),
+                toList(sharded.snapshot().getAllOrderedByAmountDescendingThenById()));
+    }
+
+    @Test
+    public void testConcurrentWritesToDifferentShardsShouldAllApply() throws Exception {
+        Chainblock database = new ShardedChainblock(8);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+
+        for (int w = 0; w < 4; w++) {
+            int writer = w;
+            writers.add(pool.submit(() -> {
+                for (int id = writer; id < 40_000; id += 4) {
+                    database.add(new TransactionImpl(id, SUCCESSFUL, PARTIES[writer], "Mike", id % 100));
+
+                    if(id % 3 == 0) {
+                        database.changeTransactionStatus(id, FAILED);
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(40_000, database.getCount());
+        assertEquals(13_334, database.aggregateByTransactionStatus(FAILED).getCount());
+        assertEquals(40_000, toList(database.getByReceiverOrderedByAmountThenById("Mike")).size());
+    }
+
+    @Test
+    public void testQueriesShouldReadTheShardsInParallel() throws Exception {
+        CyclicBarrier allShardsReading = new CyclicBarrier(4);
+        Chainblock[] shards = new Chainblock[4];
+
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new ChainblockImpl() {
+                @Override
+                public Iterable<Transaction> getAllOrderedByAmountDescendingThenById() {
+                    try {
+                        allShardsReading.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                        throw new IllegalStateException("Shards were not read in parallel", e);
+                    }
+
+                    return super.getAllOrderedByAmountDescendingThenById();
+                }
+            };
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+
+        try {
+            Chainblock database = new ShardedChainblock(shards, pool);
+
+            for (int id = 0; id < 100; id++) {
+                database.add(new TransactionImpl(id, SUCCESSFUL, "Alex", "Mike", id));
+            }
+
+            List<Object> all = toList(database.getAllOrderedByAmountDescendingThenById());
+
+            assertEquals(100, all.size());
+            assertEquals(0, ((Transaction) all.get(0)).getId());
+            assertEquals(99, ((Transaction) all.get(99)).getId());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSequentialFanOutShouldMatchParallelFanOut() {
+        Chainblock parallel = new ShardedChainblock(5);
+        Chainblock sequential = new ShardedChainblock(5, null);
+        Random random = new Random(29);
+
+        for (int i = 0; i < 2_000; i++) {
+            Transaction transaction = new TransactionImpl(random.nextInt(10_000), STATUSES[random.nextInt(STATUSES.length)],
+                    PARTIES[random.nextInt(PARTIES.length)], PARTIES[random.nextInt(PARTIES.length)], random.nextInt(400) / 4.0);
+            parallel.add(transaction);
+            sequential.add(new TransactionImpl(transaction.getId(), transaction.getStatus(), transaction.getFrom(), transaction.getTo(), transaction.getAmount()));
+        }
+
+        assertEquals(toList(sequential.getAllInAmountRange(10, 60)), toList(parallel.getAllInAmountRange(10, 60)));
+        assertEquals(toList(sequential.getBySenderOrderedByAmountDescending("Pike")), toList(parallel.getBySenderOrderedByAmountDescending("Pike")));
+        assertEquals(toList(sequential.getPageOrderedByAmountDescendingThenById(100, 50)), toList(parallel.getPageOrderedByAmountDescendingThenById(100, 50)));
+    }
+
+}
@@ -0,0 +1,78 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class SharedModeLockTest {
+
+    private SharedModeLock lock;
+    private ExecutorService pool;
+
+    @Before
+    public void setUp() {
+        lock = new SharedModeLock();
+        pool = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private Future<?> holdWhile(int mode, CountDownLatch entered, CountDownLatch release) {
+        return pool.submit(() -> {
+            lock.lock(mode);
+            try {
+                entered.countDown();
+                release.await();
+            } finally {
+                lock.unlock(mode);
+            }
+
+            return null;
+        });
+    }
+
+    @Test
+    public void testQueriesShouldHoldTheLockTogether() throws Exception {
+        CountDownLatch entered = new CountDownLatch(3);
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < 3; i++) {
+            holdWhile(SharedModeLock.QUERYING, entered, release);
+        }
+
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    public void testWriterShouldWaitForQueriesAndQueriesForAWaitingWriter() throws Exception {
+        CountDownLatch queryEntered = new CountDownLatch(1);
+        CountDownLatch releaseQuery = new CountDownLatch(1);
+        Future<?> query = holdWhile(SharedModeLock.QUERYING, queryEntered, releaseQuery);
+        assertTrue(queryEntered.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch writerEntered = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        Future<?> writer = holdWhile(SharedModeLock.WRITING, writerEntered, releaseWriter);
+        assertFalse(writerEntered.await(200, TimeUnit.MILLISECONDS));
+
+        CountDownLatch lateQueryEntered = new CountDownLatch(1);
+        Future<?> lateQuery = holdWhile(SharedModeLock.QUERYING, lateQueryEntered, new CountDownLatch(0));
+        assertFalse(lateQueryEntered.await(200, TimeUnit.MILLISECONDS));
+
+        releaseQuery.countDown();
+        query.get(10, TimeUnit.SECONDS);
+        assertTrue(writerEntered.await(10, TimeUnit.SECONDS));
+        assertEquals(1, lateQueryEntered.getCount());
+
+        releaseWriter.countDown();
+        writer.get(10, TimeUnit.SECONDS);
+        lateQuery.get(10, TimeUnit.SECONDS);
+    }
+
+}
@@ -0,0 +1,87 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static status.TransactionStatus.*;
+
+public class TransactionStoreTest {
+
+    private TransactionStore store;
+
+    @Before
+    public void setUp() {
+        store = new TransactionStore();
+    }
+
+    @Test
+    public void testPutIfAbsentShouldKeepFirstTransactionWithSameId() {
+        Transaction first = new TransactionImpl(1, SUCCESSFUL, "Alex", "Michelle", 7.00);
+        Transaction second = new TransactionImpl(1, FAILED, "Mike", "Alex", 9.00);
+
+        assertNull(store.putIfAbsent(first));
+        assertSame(first, store.putIfAbsent(second));
+
+        assertEquals(1, store.size());
+        assertSame(first, store.get(1));
+    }
+
+    @Test
+    public void testRemoveShouldKeepCollidingIdsReachable() {
+        List<Integer> ids = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            ids.add(i * 1024);
+            store.putIfAbsent(new TransactionImpl(i * 1024, NONE, "Alex", "Mike", i));
+        }
+
+        for (int i = 0; i < 1000; i += 3) {
+            assertNotNull(store.remove(i * 1024));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 3 != 0, store.containsKey(i * 1024));
+        }
+
+        assertNull(store.remove(-1));
+        assertEquals(666, store.size());
+    }
+
+    @Test
+    public void testIteratorShouldFollowInsertionOrderAcrossRemovalsAndGrowth() {
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 5000; i++) {
+            int id = random.nextInt();
+
+            if(store.putIfAbsent(new TransactionImpl(id, NONE, "Alex", "Mike", i)) == null) {
+                expected.add(id);
+            }
+
+            if(i % 4 == 0) {
+                int removed = expected.remove(random.nextInt(expected.size()));
+                store.remove(removed);
+            }
+        }
+
+        List<Integer> actual = new ArrayList<>();
+        store.forEach(t -> actual.add(t.getId()));
+
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), store.size());
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIteratorShouldFailFastOnModification() {
+        store.putIfAbsent(new TransactionImpl(1, NONE, "Alex", "Mike", 1));
+        store.putIfAbsent(new TransactionImpl(2, NONE, "Alex", "Mike", 2));
+
+        Iterator<Transaction> iterator = store.iterator();
+        iterator.next();
+        store.remove(2);
+        iterator.next();
+    }
+
+}